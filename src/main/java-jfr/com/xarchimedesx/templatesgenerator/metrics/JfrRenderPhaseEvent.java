@@ -0,0 +1,46 @@
+package com.xarchimedesx.templatesgenerator.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event of a measured rendering phase. Its {@code jdk.jfr} API is not part of Java 8, so the class is compiled
+ * only by JDK 11+ (see {@code jfr} profile of the pom) and looked up reflectively by {@link RenderMetrics},
+ * so the rest of metrics works on JVMs without JFR and in builds without the class.
+ */
+@Name("com.xarchimedesx.templatesgenerator.RenderPhase")
+@Label("Render Phase")
+@Category("Templates Generator")
+@Description("Phase of templates rendering")
+class JfrRenderPhaseEvent extends Event {
+
+  @Label("Phase")
+  String phase;
+
+  @Label("Label")
+  String label;
+
+  @Label("Phase Duration")
+  @Timespan(Timespan.NANOSECONDS)
+  long phaseDuration;
+
+  @Label("Bytes")
+  @DataAmount
+  long bytes;
+
+  static void commit(RenderPhase phase, String label, long nanos, long bytes) {
+    JfrRenderPhaseEvent event = new JfrRenderPhaseEvent();
+    if (event.shouldCommit()) {
+      event.phase = phase.getName();
+      event.label = label;
+      event.phaseDuration = nanos;
+      event.bytes = bytes;
+      event.commit();
+    }
+  }
+}
@@ -0,0 +1,326 @@
+package com.xarchimedesx.templatesgenerator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.xarchimedesx.templatesgenerator.reader.VariablesFile;
+import com.xarchimedesx.templatesgenerator.shard.Shard;
+import org.apache.velocity.shaded.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Inputs and outputs of contexts rendered into an output tree, persisted between runs, so that a run renders only contexts
+ * whose inputs changed since the previous one.
+ * <p>
+ * A context, i.e. a variables file, or all of them in combined mode, is fingerprinted with the rendering fingerprint,
+ * its output path and contents of its variables files. The rendering fingerprint covers the main template, templates it
+ * transitively includes, tools configuration and options affecting outputs. A context is up to date if its fingerprint
+ * equals the recorded one and all files it saved still exist. Content hashes of local variables files are reused while
+ * their size and modification time stay the same, so unchanged files are not even read.
+ * <p>
+ * Templates included by references instead of string literals, or from classpath, are not covered by the fingerprint,
+ * just like they are not watched by {@link TemplatesWatcher}.
+ * <p>
+ * In a sharded run, records of variables files assigned to other shards are kept intact, so shards can take turns
+ * with the same cache without rendering or deleting each other's outputs.
+ */
+class BuildCache {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BuildCache.class);
+  private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+  private static final String HASH_ALGORITHM = "SHA-256";
+  private static final int FORMAT_VERSION = 1;
+  private final Path cachePath;
+  private final String renderingFingerprint;
+  private final Shard shard;
+  private final Map<String, FileState> previousFiles;
+  private final Map<String, ContextState> previousContexts;
+  private final Map<String, FileState> files = new ConcurrentHashMap<>();
+  private final Map<String, ContextState> contexts = new ConcurrentHashMap<>();
+  private final Map<String, String> outdatedFingerprints = new ConcurrentHashMap<>();
+
+  private BuildCache(Path cachePath, String renderingFingerprint, Shard shard, Map<String, FileState> previousFiles,
+                     Map<String, ContextState> previousContexts) {
+    this.cachePath = cachePath;
+    this.renderingFingerprint = renderingFingerprint;
+    this.shard = shard;
+    this.previousFiles = previousFiles;
+    this.previousContexts = previousContexts;
+  }
+
+  /**
+   * Reads the cache written by the previous run. A missing or unreadable cache is treated as an empty one,
+   * so every context is rendered.
+   *
+   * @param shard Shard of the run, or {@code null} if the run is not sharded.
+   */
+  static BuildCache open(Path cachePath, String renderingFingerprint, Shard shard) {
+    Map<String, FileState> previousFiles = new TreeMap<>();
+    Map<String, ContextState> previousContexts = new TreeMap<>();
+    if (Files.isRegularFile(cachePath)) {
+      try {
+        JsonNode cache = MAPPER.readTree(cachePath.toFile());
+        if (cache != null && cache.path("version").asInt() == FORMAT_VERSION) {
+          cache.path("files").fields().forEachRemaining(file -> previousFiles.put(file.getKey(), new FileState(
+              file.getValue().path("size").asLong(), file.getValue().path("lastModified").asLong(), file.getValue().path("hash").asText())));
+          cache.path("contexts").fields().forEachRemaining(context -> {
+            List<String> outputs = new ArrayList<>();
+            context.getValue().path("outputs").forEach(output -> outputs.add(output.asText()));
+            previousContexts.put(context.getKey(), new ContextState(context.getValue().path("fingerprint").asText(), outputs));
+          });
+        } else {
+          LOGGER.warn("Build cache {} is of unsupported version, all contexts are rendered.", cachePath);
+        }
+      } catch (IOException ioe) {
+        LOGGER.warn("Cannot read build cache {}, all contexts are rendered: {}", cachePath, ioe.getMessage());
+      }
+    }
+    return new BuildCache(cachePath, renderingFingerprint, shard, previousFiles, previousContexts);
+  }
+
+  /**
+   * @param templatePath      Velocity template path.
+   * @param toolsConfigPath   Path of tools configuration, in local file system or classpath.
+   * @param outputDirBasePath Output path.
+   * @param options           Options of the rendering, of which the ones affecting outputs are fingerprinted.
+   * @return Fingerprint of everything the outputs of a context depend on, apart from its variables files and output path.
+   */
+  static String fingerprintRendering(String templatePath, String toolsConfigPath, String outputDirBasePath, RenderOptions options)
+      throws IOException {
+    MessageDigest digest = newDigest();
+    Set<Path> templates = TemplateDependencies.resolve(templatePath);
+    if (templates.isEmpty()) {
+      // the main template is loaded from classpath
+      update(digest, "template", templatePath, hashResource(templatePath));
+    }
+    for (Path template : templates) {
+      update(digest, "template", template.toString(), hashContent(template));
+    }
+    update(digest, "tools", toolsConfigPath, Files.isRegularFile(Paths.get(toolsConfigPath))
+        ? hashContent(Paths.get(toolsConfigPath))
+        : hashResource(toolsConfigPath));
+    update(digest, "options", outputDirBasePath, String.valueOf(options.isCombined()), options.getMergeStrategy().name(),
+        String.valueOf(options.isRecords()), String.valueOf(options.getRecordsPath()), String.valueOf(options.getRecordKey()));
+    return toHex(digest.digest());
+  }
+
+  /**
+   * Fingerprints given context. If it is not up to date, its fingerprint is kept until the context is {@link #rendered}.
+   *
+   * @param contextKey     Key of the context, e.g. of its variables file.
+   * @param variablesFiles Variables files of the context.
+   * @param outputPath     Output path of the context.
+   * @return Whether the fingerprint of the context equals the recorded one and all files it saved exist.
+   */
+  boolean isUpToDate(String contextKey, List<VariablesFile> variablesFiles, String outputPath) throws IOException {
+    MessageDigest digest = newDigest();
+    update(digest, "rendering", renderingFingerprint);
+    update(digest, "output", outputPath);
+    for (VariablesFile variablesFile : variablesFiles) {
+      update(digest, "variables", Shard.getKey(variablesFile), hashVariablesFile(variablesFile));
+    }
+    String fingerprint = toHex(digest.digest());
+
+    ContextState previousContext = previousContexts.get(contextKey);
+    if (previousContext != null && previousContext.fingerprint.equals(fingerprint)
+        && previousContext.outputs.stream().allMatch(output -> Files.exists(Paths.get(output)))) {
+      contexts.put(contextKey, previousContext);
+      return true;
+    }
+    outdatedFingerprints.put(contextKey, fingerprint);
+    return false;
+  }
+
+  /**
+   * Records files saved by a context, which was not up to date, once it is successfully rendered.
+   */
+  void rendered(String contextKey, Collection<Path> outputFiles) {
+    String fingerprint = outdatedFingerprints.remove(contextKey);
+    if (fingerprint == null) {
+      throw new IllegalStateException("Context was not checked before rendering: " + contextKey);
+    }
+    List<String> outputs = new ArrayList<>();
+    outputFiles.forEach(outputFile -> outputs.add(FilenameUtils.normalize(outputFile.toString(), true)));
+    contexts.put(contextKey, new ContextState(fingerprint, outputs));
+  }
+
+  /**
+   * @return Files saved by contexts of this run, both rendered and up to date ones, with '/' separators.
+   */
+  Set<String> getOutputs() {
+    Set<String> outputs = new TreeSet<>();
+    contexts.values().forEach(context -> outputs.addAll(context.outputs));
+    return outputs;
+  }
+
+  /**
+   * Writes the cache for the next run.
+   *
+   * @param isCompleted            Whether the run rendered all contexts successfully. Otherwise, contexts which were not reached
+   *                               keep their previous records, while the failed ones are rendered again by the next run.
+   * @param isDeletingStaleOutputs Whether files saved by the previous run, but not by this one, are deleted.
+   *                               They are deleted only if the run is completed.
+   */
+  void save(boolean isCompleted, boolean isDeletingStaleOutputs) throws IOException {
+    Map<String, ContextState> savedContexts = new TreeMap<>(contexts);
+    Map<String, FileState> savedFiles = new TreeMap<>(files);
+    // records of other shards are carried over, so their outputs are not stale either
+    previousContexts.forEach((contextKey, context) -> {
+      if (isOfOtherShard(contextKey) || !isCompleted && !outdatedFingerprints.containsKey(contextKey)) {
+        savedContexts.putIfAbsent(contextKey, context);
+      }
+    });
+    previousFiles.forEach((fileKey, file) -> {
+      if (isOfOtherShard(fileKey) || !isCompleted) {
+        savedFiles.putIfAbsent(fileKey, file);
+      }
+    });
+
+    if (isCompleted && isDeletingStaleOutputs) {
+      Set<String> staleOutputs = new TreeSet<>();
+      previousContexts.values().forEach(context -> staleOutputs.addAll(context.outputs));
+      savedContexts.values().forEach(context -> staleOutputs.removeAll(context.outputs));
+      for (String staleOutput : staleOutputs) {
+        if (Files.deleteIfExists(Paths.get(staleOutput))) {
+          LOGGER.info("Deleted stale file: {}", staleOutput);
+        }
+      }
+    }
+
+    ObjectNode cache = MAPPER.createObjectNode();
+    cache.put("version", FORMAT_VERSION);
+    ObjectNode filesNode = cache.putObject("files");
+    savedFiles.forEach((fileKey, file) -> filesNode.putObject(fileKey)
+        .put("size", file.size)
+        .put("lastModified", file.lastModified)
+        .put("hash", file.hash));
+    ObjectNode contextsNode = cache.putObject("contexts");
+    savedContexts.forEach((contextKey, context) -> {
+      ObjectNode contextNode = contextsNode.putObject(contextKey).put("fingerprint", context.fingerprint);
+      context.outputs.forEach(contextNode.putArray("outputs")::add);
+    });
+    Path cacheDir = cachePath.toAbsolutePath().getParent();
+    Files.createDirectories(cacheDir);
+    // the cache is replaced atomically, so an interrupted write cannot leave it truncated
+    Path tempCache = Files.createTempFile(cacheDir, cachePath.getFileName().toString(), ".tmp");
+    MAPPER.writeValue(tempCache.toFile(), cache);
+    Files.move(tempCache, cachePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  // keys of contexts of single variables files are keys of the files, which sharding is based on
+  private boolean isOfOtherShard(String contextKey) {
+    return shard != null && !shard.isAssigned(contextKey);
+  }
+
+  private String hashVariablesFile(VariablesFile variablesFile) throws IOException {
+    Path path = variablesFile.getPath();
+    if (!variablesFile.getScheme().equals("file")) {
+      // entries of archives have no reliable modification time, so their content is always hashed
+      return hashContent(path);
+    }
+    String fileKey = Shard.getKey(variablesFile);
+    long size = Files.size(path);
+    long lastModified = Files.getLastModifiedTime(path).toMillis();
+    FileState previousFile = previousFiles.get(fileKey);
+    FileState file = previousFile != null && previousFile.size == size && previousFile.lastModified == lastModified
+        ? previousFile
+        : new FileState(size, lastModified, hashContent(path));
+    files.put(fileKey, file);
+    return file.hash;
+  }
+
+  private static String hashContent(Path file) throws IOException {
+    try (InputStream fileStream = Files.newInputStream(file)) {
+      return hashStream(fileStream);
+    }
+  }
+
+  private static String hashResource(String resourcePath) throws IOException {
+    try (InputStream resourceStream = BuildCache.class.getClassLoader().getResourceAsStream(FilenameUtils.separatorsToUnix(resourcePath))) {
+      return resourceStream == null ? "" : hashStream(resourceStream);
+    }
+  }
+
+  private static String hashStream(InputStream inputStream) throws IOException {
+    MessageDigest contentDigest = newDigest();
+    try (InputStream digestStream = new DigestInputStream(new BufferedInputStream(inputStream), contentDigest)) {
+      byte[] buffer = new byte[8192];
+      while (digestStream.read(buffer) != -1) {
+        // reading the whole stream just to update the digest
+      }
+    }
+    return toHex(contentDigest.digest());
+  }
+
+  // every value is prefixed with its length, so that different sequences of values cannot produce the same digest input
+  private static void update(MessageDigest digest, String... values) {
+    for (String value : values) {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      digest.update((bytes.length + ":").getBytes(StandardCharsets.UTF_8));
+      digest.update(bytes);
+    }
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance(HASH_ALGORITHM);
+    } catch (NoSuchAlgorithmException nsae) {
+      throw new IllegalStateException(nsae);
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      hex.append(String.format("%02x", b));
+    }
+    return hex.toString();
+  }
+
+  private static class FileState {
+
+    private final long size;
+    private final long lastModified;
+    private final String hash;
+
+    private FileState(long size, long lastModified, String hash) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.hash = hash;
+    }
+  }
+
+  private static class ContextState {
+
+    private final String fingerprint;
+    private final List<String> outputs;
+
+    private ContextState(String fingerprint, List<String> outputs) {
+      this.fingerprint = fingerprint;
+      this.outputs = Collections.unmodifiableList(outputs);
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package com.xarchimedesx.templatesgenerator;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.apache.logging.log4j.core.config.Property;
+import org.apache.logging.log4j.core.layout.PatternLayout;
+import org.slf4j.MDC;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Log4j appender forwarding log events of render daemon requests to their clients.
+ * The request is marked in SLF4J {@link MDC} of the thread serving it, which {@link TemplatesGenerator} hands over
+ * to its worker tasks, so neither long-lived pools nor the generator itself need to know about clients.
+ */
+class DaemonLogAppender extends AbstractAppender {
+
+  private static final String NAME = "RenderDaemonClient";
+  private static final String PATTERN = "[%-5level] %d{yyyy-MM-dd HH:mm:ss.SSS} %c{1} - %msg%n";
+  private static final String REQUEST_ID_KEY = "templates-generator.daemon-request";
+  private static final Map<String, PrintWriter> CLIENTS = new ConcurrentHashMap<>();
+  private static final AtomicLong REQUESTS_COUNT = new AtomicLong();
+  private static volatile boolean installed;
+
+  private DaemonLogAppender() {
+    super(NAME, null, PatternLayout.newBuilder().withPattern(PATTERN).build(), true, Property.EMPTY_ARRAY);
+  }
+
+  static synchronized void install() {
+    if (installed) {
+      return;
+    }
+    LoggerContext loggerContext = (LoggerContext) LogManager.getContext(false);
+    DaemonLogAppender appender = new DaemonLogAppender();
+    appender.start();
+    loggerContext.getConfiguration().getRootLogger().addAppender(appender, null, null);
+    loggerContext.updateLoggers();
+    installed = true;
+  }
+
+  static void attach(PrintWriter client) {
+    String requestId = String.valueOf(REQUESTS_COUNT.incrementAndGet());
+    CLIENTS.put(requestId, client);
+    MDC.put(REQUEST_ID_KEY, requestId);
+  }
+
+  static void detach() {
+    String requestId = MDC.get(REQUEST_ID_KEY);
+    if (requestId != null) {
+      CLIENTS.remove(requestId);
+      MDC.remove(REQUEST_ID_KEY);
+    }
+  }
+
+  @Override
+  public void append(LogEvent event) {
+    String requestId = event.getContextData().getValue(REQUEST_ID_KEY);
+    PrintWriter client = requestId == null ? null : CLIENTS.get(requestId);
+    if (client == null) {
+      return;
+    }
+    String formattedEvent = getLayout().toSerializable(event).toString();
+    synchronized (client) {
+      for (String line : formattedEvent.split("\\R")) {
+        client.println(RenderDaemon.LOG_PREFIX + line);
+      }
+    }
+  }
+}
@@ -0,0 +1,257 @@
+package com.xarchimedesx.templatesgenerator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xarchimedesx.templatesgenerator.cli.Parser;
+import org.apache.commons.cli.CommandLine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * Keeps single initialized {@link TemplatesGenerator} resident behind a loopback socket, so that consecutive renders
+ * reuse its engine, tools and cached templates instead of paying for JVM startup and initialization each time.
+ * <p>
+ * Each connection carries one request: a line with JSON object holding client's token, working directory and command-line
+ * arguments. Daemon answers with the log of the request, every line prefixed with {@value #LOG_PREFIX},
+ * and the final {@value #EXIT_PREFIX}line with exit status.
+ * <p>
+ * The token is generated randomly at startup and written to a file readable only by the user running the daemon,
+ * see {@link #getTokenPath(Path, int)}, so that other local users cannot render with daemon's permissions.
+ */
+class RenderDaemon implements Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RenderDaemon.class);
+  static final String LOG_PREFIX = "LOG ";
+  static final String EXIT_PREFIX = "EXIT ";
+  static final int EXIT_SUCCESS = 0;
+  static final int EXIT_FAILURE = 1;
+  static final int EXIT_INVALID_REQUEST = 2;
+  private static final int ACCEPT_TIMEOUT_MILLIS = 1000;
+  private static final int TOKEN_BYTES = 32;
+  static final Path DEFAULT_TOKENS_DIR = Paths.get(System.getProperty("user.home"), ".templates-generator");
+  private static final List<String> INPUT_PATH_OPTIONS = Arrays.asList("t", "template", "v", "variables", "merge-shard-manifests");
+  private static final List<String> OUTPUT_PATH_OPTIONS = Arrays.asList("o", "output", "archive", "metrics-report", "shard-manifest",
+      "build-cache", "profile");
+  // the engine and the variables reader are set up once, from the daemon command line
+  private static final List<String> ENGINE_OPTIONS = Arrays.asList("variables-cache", "variables-cache-size", "clear-variables-cache",
+      "lazy-json", "readers", "templates-check-interval", "templates-cache-size", "prewarm");
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private final TemplatesGenerator tg;
+  private final ServerSocket serverSocket;
+  private final Path tokenPath;
+  private final byte[] token;
+  private final long idleTimeoutMillis;
+  private final ExecutorService requestHandlers;
+  private final AtomicInteger activeRequestsCount = new AtomicInteger();
+  private volatile long lastActivityMillis;
+
+  RenderDaemon(TemplatesGenerator tg, int port, Duration idleTimeout) throws IOException {
+    this(tg, port, idleTimeout, DEFAULT_TOKENS_DIR);
+  }
+
+  /**
+   * @param tokensDir Directory where the token file of the daemon is written.
+   */
+  RenderDaemon(TemplatesGenerator tg, int port, Duration idleTimeout, Path tokensDir) throws IOException {
+    this.tg = tg;
+    this.idleTimeoutMillis = idleTimeout.toMillis();
+    this.serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+    this.serverSocket.setSoTimeout(ACCEPT_TIMEOUT_MILLIS);
+    byte[] randomBytes = new byte[TOKEN_BYTES];
+    new SecureRandom().nextBytes(randomBytes);
+    this.token = Base64.getUrlEncoder().withoutPadding().encode(randomBytes);
+    this.tokenPath = getTokenPath(tokensDir, getPort());
+    try {
+      writeToken(tokenPath, token);
+    } catch (IOException ioe) {
+      serverSocket.close();
+      throw ioe;
+    }
+    AtomicInteger handlersCount = new AtomicInteger();
+    this.requestHandlers = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "templates-generator-daemon-" + handlersCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /**
+   * @return Path of the file with the token of the daemon listening on given port.
+   */
+  static Path getTokenPath(Path tokensDir, int port) {
+    return tokensDir.resolve("daemon-" + port + ".token");
+  }
+
+  // the file is created with owner-only permissions where supported, instead of restricting them after it is written
+  private static void writeToken(Path tokenPath, byte[] token) throws IOException {
+    boolean isPosix = tokenPath.getFileSystem().supportedFileAttributeViews().contains("posix");
+    if (isPosix) {
+      Files.createDirectories(tokenPath.getParent(), PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+    } else {
+      Files.createDirectories(tokenPath.getParent());
+    }
+    Files.deleteIfExists(tokenPath);
+    if (isPosix) {
+      Files.createFile(tokenPath, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+    } else {
+      Files.createFile(tokenPath);
+    }
+    Files.write(tokenPath, token);
+  }
+
+  /**
+   * Serves requests until the daemon is closed or stays idle longer than idle timeout.
+   */
+  void serve() throws IOException {
+    DaemonLogAppender.install();
+    LOGGER.info("Render daemon is listening on port {}.", getPort());
+    lastActivityMillis = System.currentTimeMillis();
+    while (!serverSocket.isClosed()) {
+      try {
+        Socket socket = serverSocket.accept();
+        activeRequestsCount.incrementAndGet();
+        requestHandlers.execute(() -> handle(socket));
+      } catch (SocketTimeoutException ste) {
+        if (activeRequestsCount.get() == 0 && System.currentTimeMillis() - lastActivityMillis >= idleTimeoutMillis) {
+          LOGGER.info("Render daemon was idle for {} seconds, shutting down.", idleTimeoutMillis / 1000);
+          return;
+        }
+      } catch (SocketException se) {
+        if (!serverSocket.isClosed()) {
+          throw se;
+        }
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    requestHandlers.shutdown();
+    serverSocket.close();
+    Files.deleteIfExists(tokenPath);
+  }
+
+  private void handle(Socket socket) {
+    try (Socket s = socket;
+         BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+         PrintWriter out = new PrintWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8), true)) {
+      int exitStatus = execute(in.readLine(), out);
+      out.println(EXIT_PREFIX + exitStatus);
+    } catch (IOException ioe) {
+      LOGGER.error("Exception occurred while serving render request: {}", ioe.getMessage());
+    } finally {
+      lastActivityMillis = System.currentTimeMillis();
+      activeRequestsCount.decrementAndGet();
+    }
+  }
+
+  private int execute(String request, PrintWriter out) {
+    DaemonLogAppender.attach(out);
+    try {
+      if (request == null) {
+        LOGGER.error("Render request is empty.");
+        return EXIT_INVALID_REQUEST;
+      }
+      JsonNode requestNode = MAPPER.readTree(request);
+      byte[] requestToken = requestNode.path("token").asText("").getBytes(StandardCharsets.UTF_8);
+      if (!MessageDigest.isEqual(token, requestToken)) {
+        LOGGER.error("Render request has invalid token.");
+        return EXIT_INVALID_REQUEST;
+      }
+      Path workingDir = Paths.get(requestNode.path("workingDir").asText(""));
+      String[] args = StreamSupport.stream(requestNode.path("args").spliterator(), false)
+          .map(JsonNode::asText)
+          .toArray(String[]::new);
+      CommandLine cli = new Parser().parse(resolveArgs(args, workingDir));
+      if (cli.hasOption("daemon") || cli.hasOption("watch") || cli.hasOption("jobs")) {
+        LOGGER.error("Options --daemon, --watch and --jobs are not supported by render daemon.");
+        return EXIT_INVALID_REQUEST;
+      }
+      List<String> engineOptions = ENGINE_OPTIONS.stream().filter(cli::hasOption).collect(Collectors.toList());
+      if (!engineOptions.isEmpty()) {
+        LOGGER.error("Options {} configure the engine of render daemon, so they have to be passed when the daemon is started.",
+            engineOptions.stream().map(option -> "--" + option).collect(Collectors.joining(", ")));
+        return EXIT_INVALID_REQUEST;
+      }
+
+      TemplatesGenerator.render(tg, cli);
+      return EXIT_SUCCESS;
+    } catch (IOException | RuntimeException e) {
+      LOGGER.error("Render request failed: {}", e.toString());
+      return EXIT_FAILURE;
+    } finally {
+      DaemonLogAppender.detach();
+    }
+  }
+
+  /**
+   * Resolves relative paths in arguments against client's working directory, since daemon's one may differ.
+   * Input paths not existing there are left intact to be looked up on classpath.
+   */
+  // package-private for tests
+  static String[] resolveArgs(String[] args, Path workingDir) {
+    String[] resolvedArgs = args.clone();
+    for (int i = 0; i < resolvedArgs.length; i++) {
+      String arg = resolvedArgs[i];
+      if (!arg.startsWith("-")) {
+        continue;
+      }
+      int valueSeparatorIndex = arg.indexOf('=');
+      String name = (valueSeparatorIndex < 0 ? arg : arg.substring(0, valueSeparatorIndex)).replaceFirst("^-+", "");
+      boolean isInput = INPUT_PATH_OPTIONS.contains(name);
+      if (!isInput && !OUTPUT_PATH_OPTIONS.contains(name)) {
+        continue;
+      }
+      if (valueSeparatorIndex >= 0) {
+        resolvedArgs[i] = arg.substring(0, valueSeparatorIndex + 1)
+            + resolvePaths(arg.substring(valueSeparatorIndex + 1), workingDir, isInput);
+      } else if (i + 1 < resolvedArgs.length) {
+        resolvedArgs[i + 1] = resolvePaths(resolvedArgs[i + 1], workingDir, isInput);
+        i++;
+      }
+    }
+    return resolvedArgs;
+  }
+
+  private static String resolvePaths(String paths, Path workingDir, boolean isInput) {
+    return Arrays.stream(paths.split(TemplatesGenerator.VARIABLES_FILES_SEPARATOR))
+        .map(String::trim)
+        .map(path -> {
+          Path resolvedPath = workingDir.resolve(path);
+          return !isInput || Files.exists(resolvedPath) ? resolvedPath.toString() : path;
+        })
+        .collect(Collectors.joining(TemplatesGenerator.VARIABLES_FILES_SEPARATOR));
+  }
+}
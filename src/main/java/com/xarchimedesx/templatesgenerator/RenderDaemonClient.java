@@ -0,0 +1,83 @@
+package com.xarchimedesx.templatesgenerator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.OptionalInt;
+
+/**
+ * Thin client forwarding command-line arguments to {@link RenderDaemon} and streaming its log and exit status back.
+ * Requests are authenticated with the token the daemon wrote to a file of the user running it.
+ */
+class RenderDaemonClient {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private final int port;
+  private final Path tokensDir;
+
+  RenderDaemonClient(int port) {
+    this(port, RenderDaemon.DEFAULT_TOKENS_DIR);
+  }
+
+  RenderDaemonClient(int port, Path tokensDir) {
+    this.port = port;
+    this.tokensDir = tokensDir;
+  }
+
+  /**
+   * @param args       Command-line arguments to render with.
+   * @param workingDir Directory relative paths in arguments are resolved against.
+   * @param log        Stream to print daemon log to.
+   * @return Exit status of the request, or empty one if daemon is not running.
+   */
+  OptionalInt send(String[] args, Path workingDir, PrintStream log) throws IOException {
+    String token;
+    try {
+      token = new String(Files.readAllBytes(RenderDaemon.getTokenPath(tokensDir, port)), StandardCharsets.UTF_8).trim();
+    } catch (NoSuchFileException nsfe) {
+      return OptionalInt.empty();
+    }
+    ObjectNode request = MAPPER.createObjectNode();
+    request.put("token", token);
+    request.put("workingDir", workingDir.toAbsolutePath().toString());
+    ArrayNode argsNode = request.putArray("args");
+    for (String arg : args) {
+      argsNode.add(arg);
+    }
+
+    Socket socket;
+    try {
+      socket = new Socket(InetAddress.getLoopbackAddress(), port);
+    } catch (ConnectException ce) {
+      return OptionalInt.empty();
+    }
+    try (Socket s = socket;
+         BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+         PrintWriter out = new PrintWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8), true)) {
+      out.println(MAPPER.writeValueAsString(request));
+      String line;
+      while ((line = in.readLine()) != null) {
+        if (line.startsWith(RenderDaemon.LOG_PREFIX)) {
+          log.println(line.substring(RenderDaemon.LOG_PREFIX.length()));
+        } else if (line.startsWith(RenderDaemon.EXIT_PREFIX)) {
+          return OptionalInt.of(Integer.parseInt(line.substring(RenderDaemon.EXIT_PREFIX.length()).trim()));
+        }
+      }
+    }
+    throw new IOException("Render daemon closed connection without exit status.");
+  }
+}
@@ -0,0 +1,213 @@
+package com.xarchimedesx.templatesgenerator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Factories of executors running renderings started by {@link TemplatesGenerator#renderAsync}.
+ */
+public final class RenderExecutors {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RenderExecutors.class);
+  private static final long IDLE_THREAD_KEEP_ALIVE_SECONDS = 60;
+  private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findNewVirtualThreadPerTaskExecutor();
+
+  private RenderExecutors() {
+  }
+
+  /**
+   * @param threadsCount  Number of renderings running concurrently. Threads are started on demand and stopped when idle.
+   * @param queueCapacity Number of renderings waiting for a free thread. Renderings above it are rejected.
+   * @return Pool of daemon threads with a bounded queue.
+   */
+  public static ExecutorService bounded(int threadsCount, int queueCapacity) {
+    if (threadsCount < 1 || queueCapacity < 1) {
+      throw new IllegalArgumentException(String.format(
+          "Threads count and queue capacity must be positive numbers, but were: %d, %d", threadsCount, queueCapacity));
+    }
+    AtomicInteger threadNumber = new AtomicInteger();
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threadsCount, threadsCount, IDLE_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(queueCapacity), runnable -> {
+      Thread thread = new Thread(runnable, "templates-generator-render-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * @param maxConcurrentRenderings Number of renderings running concurrently. Other ones wait for a permit in their own
+   *                                virtual threads, which are cheap to block.
+   * @param queueCapacity           Number of renderings waiting for a permit. Renderings above it are rejected.
+   * @return Executor starting a virtual thread per rendering if the JVM supports them (Java 21+),
+   * or {@link #bounded(int, int)} pool of {@code maxConcurrentRenderings} threads otherwise.
+   */
+  public static ExecutorService virtualThreads(int maxConcurrentRenderings, int queueCapacity) {
+    if (maxConcurrentRenderings < 1 || queueCapacity < 1) {
+      throw new IllegalArgumentException(String.format(
+          "Max concurrent renderings and queue capacity must be positive numbers, but were: %d, %d", maxConcurrentRenderings, queueCapacity));
+    }
+    if (!isVirtualThreadsSupported()) {
+      LOGGER.warn("Virtual threads are not supported by the JVM, renderings run in a pool of {} platform threads.", maxConcurrentRenderings);
+      return bounded(maxConcurrentRenderings, queueCapacity);
+    }
+    try {
+      return new PermitsExecutorService((ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null), maxConcurrentRenderings,
+          queueCapacity);
+    } catch (IllegalAccessException | InvocationTargetException ex) {
+      throw new IllegalStateException("Cannot create virtual threads executor!", ex);
+    }
+  }
+
+  public static boolean isVirtualThreadsSupported() {
+    return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+  }
+
+  /**
+   * @return Task running with the SLF4J {@link MDC} of the calling thread, e.g. to keep logs of a rendering marked
+   * the same way in its worker threads. Pool threads do not inherit the context, as they may outlive the caller.
+   */
+  static Runnable withCallerContext(Runnable task) {
+    Map<String, String> callerContext = MDC.getCopyOfContextMap();
+    if (callerContext == null || callerContext.isEmpty()) {
+      return task;
+    }
+    return () -> {
+      Map<String, String> previousContext = MDC.getCopyOfContextMap();
+      MDC.setContextMap(callerContext);
+      try {
+        task.run();
+      } finally {
+        restoreContext(previousContext);
+      }
+    };
+  }
+
+  static <T> Callable<T> withCallerContext(Callable<T> task) {
+    Map<String, String> callerContext = MDC.getCopyOfContextMap();
+    if (callerContext == null || callerContext.isEmpty()) {
+      return task;
+    }
+    return () -> {
+      Map<String, String> previousContext = MDC.getCopyOfContextMap();
+      MDC.setContextMap(callerContext);
+      try {
+        return task.call();
+      } finally {
+        restoreContext(previousContext);
+      }
+    };
+  }
+
+  private static void restoreContext(Map<String, String> context) {
+    if (context == null) {
+      MDC.clear();
+    } else {
+      MDC.setContextMap(context);
+    }
+  }
+
+  // looked up reflectively, as the project is compiled for Java 8
+  private static Method findNewVirtualThreadPerTaskExecutor() {
+    try {
+      return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    } catch (NoSuchMethodException nsme) {
+      return null;
+    }
+  }
+
+  /**
+   * Executor running every task of the delegate only after acquiring one of a limited number of permits.
+   * Tasks above the permits and the queue capacity are rejected instead of waiting for a permit.
+   */
+  static class PermitsExecutorService extends AbstractExecutorService {
+
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+    private final Semaphore admissions;
+
+    PermitsExecutorService(ExecutorService delegate, int permitsCount, int queueCapacity) {
+      this.delegate = delegate;
+      this.permits = new Semaphore(permitsCount);
+      this.admissions = new Semaphore(permitsCount + queueCapacity);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      if (!admissions.tryAcquire()) {
+        throw new RejectedExecutionException("Queue of tasks waiting for a permit is full!");
+      }
+      try {
+        delegate.execute(() -> {
+          try {
+            runWithPermit(command);
+          } finally {
+            admissions.release();
+          }
+        });
+      } catch (RejectedExecutionException ree) {
+        admissions.release();
+        throw ree;
+      }
+    }
+
+    // a task interrupted while waiting, e.g. by shutdownNow, still runs with the interrupt status set, so it can fail
+    // and complete whoever waits for it, instead of being silently dropped
+    private void runWithPermit(Runnable command) {
+      try {
+        permits.acquire();
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        command.run();
+        return;
+      }
+      try {
+        command.run();
+      } finally {
+        permits.release();
+      }
+    }
+
+    @Override
+    public void shutdown() {
+      delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+      return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+      return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+      return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+      return delegate.awaitTermination(timeout, unit);
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package com.xarchimedesx.templatesgenerator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
+import org.apache.velocity.shaded.commons.io.FilenameUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * Single rendering described in jobs manifest passed via --jobs.
+ * <p>
+ * Manifest is a .json or .yaml/.yml file with a list of jobs, either as the root element or under "jobs" key.
+ * Every job has "template", "variables" (comma-separated string or list) and "output" keys, and optional "combine"
+ * and "workers" ones overriding corresponding command-line options.
+ */
+class RenderJob {
+
+  private final int number;
+  private final String templatePath;
+  private final String variablesPaths;
+  private final String outputDirBasePath;
+  private final Boolean isCombined;
+  private final Integer workersCount;
+
+  RenderJob(int number, String templatePath, String variablesPaths, String outputDirBasePath, Boolean isCombined, Integer workersCount) {
+    this.number = number;
+    this.templatePath = templatePath;
+    this.variablesPaths = variablesPaths;
+    this.outputDirBasePath = outputDirBasePath;
+    this.isCombined = isCombined;
+    this.workersCount = workersCount;
+  }
+
+  static List<RenderJob> readManifest(Path manifestPath) throws IOException {
+    ObjectMapper mapper = FilenameUtils.getExtension(manifestPath.toString()).equalsIgnoreCase("json")
+        ? new ObjectMapper()
+        : new YAMLMapper();
+    JsonNode manifest = mapper.readTree(manifestPath.toFile());
+    JsonNode jobsNode = manifest != null && manifest.isObject() ? manifest.path("jobs") : manifest;
+    if (jobsNode == null || !jobsNode.isArray()) {
+      throw new IllegalArgumentException("Jobs manifest " + manifestPath + " does not contain a list of jobs.");
+    }
+
+    List<RenderJob> jobs = new ArrayList<>();
+    for (JsonNode jobNode : jobsNode) {
+      int number = jobs.size() + 1;
+      jobs.add(new RenderJob(number,
+          getRequiredText(jobNode, "template", number),
+          getRequiredText(jobNode, "variables", number),
+          getRequiredText(jobNode, "output", number),
+          jobNode.hasNonNull("combine") ? jobNode.get("combine").asBoolean() : null,
+          jobNode.hasNonNull("workers") ? jobNode.get("workers").asInt() : null));
+    }
+    return jobs;
+  }
+
+  private static String getRequiredText(JsonNode jobNode, String key, int number) {
+    JsonNode valueNode = jobNode.path(key);
+    if (valueNode.isArray()) {
+      return StreamSupport.stream(valueNode.spliterator(), false)
+          .map(JsonNode::asText)
+          .collect(Collectors.joining(TemplatesGenerator.VARIABLES_FILES_SEPARATOR));
+    } else if (valueNode.isValueNode() && !valueNode.isNull()) {
+      return valueNode.asText();
+    }
+    throw new IllegalArgumentException("Job #" + number + " of jobs manifest has no \"" + key + "\" value.");
+  }
+
+  /**
+   * @param options Options built from command line, which are overridden by ones set for the job.
+   */
+  RenderOptions applyTo(RenderOptions options) {
+    if (isCombined != null) {
+      options.withCombined(isCombined);
+    }
+    if (workersCount != null) {
+      options.withWorkersCount(workersCount);
+    }
+    return options;
+  }
+
+  int getNumber() {
+    return number;
+  }
+
+  String getTemplatePath() {
+    return templatePath;
+  }
+
+  String getVariablesPaths() {
+    return variablesPaths;
+  }
+
+  String getOutputDirBasePath() {
+    return outputDirBasePath;
+  }
+
+  @Override
+  public String toString() {
+    return "#" + number + " " + templatePath + " -> " + outputDirBasePath;
+  }
+}
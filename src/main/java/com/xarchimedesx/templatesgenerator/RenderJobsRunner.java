@@ -0,0 +1,121 @@
+package com.xarchimedesx.templatesgenerator;
+
+import com.xarchimedesx.templatesgenerator.exception.RenderingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Runs jobs of a manifest with single {@link TemplatesGenerator}, so its engine, tools, cached templates and
+ * memoized variables are shared by all of them, and logs per-job timing summary at the end.
+ */
+class RenderJobsRunner {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RenderJobsRunner.class);
+  private final TemplatesGenerator tg;
+  private final int parallelism;
+
+  /**
+   * @param parallelism Number of jobs rendered concurrently. '1' renders jobs one by one in manifest order.
+   */
+  RenderJobsRunner(TemplatesGenerator tg, int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Jobs parallelism must be a positive number, but was: " + parallelism);
+    }
+    this.tg = tg;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * @param jobs           Jobs to be rendered.
+   * @param optionsFactory Creates options for output path of a job, which are then overridden by the job's ones.
+   */
+  void run(List<RenderJob> jobs, Function<String, RenderOptions> optionsFactory) {
+    long startNanos = System.nanoTime();
+    List<JobResult> results = new ArrayList<>();
+    if (parallelism == 1 || jobs.size() < 2) {
+      jobs.forEach(job -> results.add(runJob(job, optionsFactory)));
+    } else {
+      runInParallel(jobs, optionsFactory, results);
+    }
+    logSummary(results, System.nanoTime() - startNanos);
+
+    List<Throwable> failures = new ArrayList<>();
+    results.stream()
+        .filter(result -> result.failure != null)
+        .forEach(result -> failures.add(result.failure));
+    if (!failures.isEmpty()) {
+      RenderingException re = new RenderingException(
+          String.format("Rendering failed for %d of %d jobs!", failures.size(), jobs.size()));
+      failures.forEach(re::addSuppressed);
+      throw re;
+    }
+  }
+
+  private void runInParallel(List<RenderJob> jobs, Function<String, RenderOptions> optionsFactory, List<JobResult> results) {
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, jobs.size()));
+    try {
+      List<Future<JobResult>> futures = new ArrayList<>();
+      for (RenderJob job : jobs) {
+        futures.add(executor.submit(() -> runJob(job, optionsFactory)));
+      }
+      for (Future<JobResult> future : futures) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new RenderingException("Rendering was interrupted!");
+    } catch (ExecutionException ee) {
+      // runJob catches rendering failures itself, so only errors may get here
+      throw new RuntimeException(ee.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private JobResult runJob(RenderJob job, Function<String, RenderOptions> optionsFactory) {
+    LOGGER.info("Starting job {}", job);
+    long startNanos = System.nanoTime();
+    RuntimeException failure = null;
+    try {
+      tg.render(job.getTemplatePath(), job.getVariablesPaths(), job.getOutputDirBasePath(),
+          job.applyTo(optionsFactory.apply(job.getOutputDirBasePath())));
+    } catch (RuntimeException re) {
+      LOGGER.error("Job {} failed: {}", job, re.toString());
+      failure = re;
+    }
+    return new JobResult(job, System.nanoTime() - startNanos, failure);
+  }
+
+  private void logSummary(List<JobResult> results, long totalNanos) {
+    StringBuilder summary = new StringBuilder("Jobs summary:");
+    for (JobResult result : results) {
+      summary.append(String.format("%n    %s: %d ms, %s", result.job, TimeUnit.NANOSECONDS.toMillis(result.durationNanos),
+          result.failure == null ? "succeeded" : "failed"));
+    }
+    long failedCount = results.stream().filter(result -> result.failure != null).count();
+    summary.append(String.format("%n    Total: %d jobs, %d failed, %d ms%n    Templates cache: %s",
+        results.size(), failedCount, TimeUnit.NANOSECONDS.toMillis(totalNanos), tg.getTemplatesCache()));
+    LOGGER.info(summary.toString());
+  }
+
+  private static class JobResult {
+    private final RenderJob job;
+    private final long durationNanos;
+    private final RuntimeException failure;
+
+    private JobResult(RenderJob job, long durationNanos, RuntimeException failure) {
+      this.job = job;
+      this.durationNanos = durationNanos;
+      this.failure = failure;
+    }
+  }
+}
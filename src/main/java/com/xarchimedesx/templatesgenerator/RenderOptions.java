@@ -0,0 +1,258 @@
+package com.xarchimedesx.templatesgenerator;
+
+import com.xarchimedesx.templatesgenerator.metrics.RenderMetrics;
+import com.xarchimedesx.templatesgenerator.output.OutputSink;
+import com.xarchimedesx.templatesgenerator.profile.TemplateProfiler;
+import com.xarchimedesx.templatesgenerator.reader.MergeStrategy;
+import com.xarchimedesx.templatesgenerator.shard.Shard;
+
+import java.nio.file.Path;
+import java.util.function.Supplier;
+
+/**
+ * Optional settings of a single {@link TemplatesGenerator#render(String, String, String, RenderOptions)} call.
+ */
+public class RenderOptions {
+
+  private boolean isCombined;
+  private MergeStrategy mergeStrategy = MergeStrategy.NESTED;
+  private int workersCount = 1;
+  private boolean isSkipUnchanged;
+  private int writeBehindQueueCapacity;
+  private int writeBehindWritersCount = 1;
+  private boolean isSyncOnFlush;
+  private Supplier<? extends OutputSink> outputSinkFactory;
+  private RenderMetrics metrics;
+  private TemplateProfiler profiler;
+  private Shard shard;
+  private Path shardManifestPath;
+  private boolean isRecords;
+  private String recordsPath;
+  private String recordKey;
+  private Path buildCachePath;
+  private boolean isDeletingStaleOutputs;
+
+  /**
+   * @param isCombined Whether to combine multiple variables files' content inside single context
+   *                   or to render output per input file. 'False' by default.
+   */
+  public RenderOptions withCombined(boolean isCombined) {
+    this.isCombined = isCombined;
+    return this;
+  }
+
+  /**
+   * @param mergeStrategy How values of the same keys in different variables files are merged in combined mode.
+   *                      {@link MergeStrategy#NESTED} by default.
+   */
+  public RenderOptions withMergeStrategy(MergeStrategy mergeStrategy) {
+    this.mergeStrategy = mergeStrategy;
+    return this;
+  }
+
+  /**
+   * @param workersCount Number of worker threads rendering variables files in non-combined mode.
+   *                     '1' by default, which renders files sequentially in the calling thread.
+   */
+  public RenderOptions withWorkersCount(int workersCount) {
+    if (workersCount < 1) {
+      throw new IllegalArgumentException("Workers count must be a positive number, but was: " + workersCount);
+    }
+    this.workersCount = workersCount;
+    return this;
+  }
+
+  /**
+   * @param isSkipUnchanged Whether to leave existing files untouched when their content equals the rendered one.
+   *                        'False' by default.
+   */
+  public RenderOptions withSkipUnchanged(boolean isSkipUnchanged) {
+    this.isSkipUnchanged = isSkipUnchanged;
+    return this;
+  }
+
+  /**
+   * @param queueCapacity Maximal number of rendered files, which are kept in memory waiting to be written by background writers.
+   *                      Rendering threads wait while the queue is full. '0' by default, which disables write-behind.
+   * @param writersCount  Number of background writer threads.
+   */
+  public RenderOptions withWriteBehind(int queueCapacity, int writersCount) {
+    if (queueCapacity < 0 || writersCount < 1) {
+      throw new IllegalArgumentException(String.format(
+          "Write-behind queue capacity must not be negative and writers count must be positive, but were: %d, %d",
+          queueCapacity, writersCount));
+    }
+    this.writeBehindQueueCapacity = queueCapacity;
+    this.writeBehindWritersCount = writersCount;
+    return this;
+  }
+
+  /**
+   * @param isSyncOnFlush Whether to sync all saved files to the storage device in one batch at the end of rendering.
+   *                      'False' by default.
+   */
+  public RenderOptions withSyncOnFlush(boolean isSyncOnFlush) {
+    this.isSyncOnFlush = isSyncOnFlush;
+    return this;
+  }
+
+  /**
+   * @param outputSinkFactory Creates a destination of rendered files for every rendering run, as a sink serves a single run.
+   *                          By default files are saved to the local file system according to skip-unchanged and write-behind
+   *                          settings, which are ignored when a factory is given.
+   */
+  public RenderOptions withOutputSink(Supplier<? extends OutputSink> outputSinkFactory) {
+    this.outputSinkFactory = outputSinkFactory;
+    return this;
+  }
+
+  /**
+   * @param metrics Collector of counts, bytes and latencies of rendering phases. It may be shared by many renderings,
+   *                e.g. to report them together. With metrics collected, saved files are logged at debug level only.
+   *                Not collected by default.
+   */
+  public RenderOptions withMetrics(RenderMetrics metrics) {
+    this.metrics = metrics;
+    return this;
+  }
+
+  /**
+   * @param profiler Collector of wall time and invocation counts of templates, macros and directives. It may be shared
+   *                 by many renderings. Not collected by default.
+   */
+  public RenderOptions withProfiler(TemplateProfiler profiler) {
+    this.profiler = profiler;
+    return this;
+  }
+
+  /**
+   * @param shardIndex  Zero-based index of the shard of variables files to be rendered, see {@link Shard}.
+   * @param shardsCount Number of shards the rendering is split into. Not supported in combined mode.
+   *                    Outputs are saved to the same paths as without sharding, so all shards render into the same output tree.
+   */
+  public RenderOptions withShard(int shardIndex, int shardsCount) {
+    this.shard = new Shard(shardIndex, shardsCount);
+    return this;
+  }
+
+  /**
+   * @param shardManifestPath Path where the manifest of rendered variables files and saved files is written after rendering,
+   *                          to be merged with manifests of other shards by {@link com.xarchimedesx.templatesgenerator.shard.ShardManifest#merge}.
+   *                          Not written by default.
+   */
+  public RenderOptions withShardManifest(Path shardManifestPath) {
+    this.shardManifestPath = shardManifestPath;
+    return this;
+  }
+
+  /**
+   * Enables records mode, in which every record of variables files is rendered with its own context
+   * into {@code <outputDirBasePath>/<record name>}, instead of every file. Records are streamed one by one,
+   * so memory does not depend on the size of files. Not supported in combined mode.
+   *
+   * @param recordsPath Dot-separated keys leading to the array of records in .json and .yaml/.yml files,
+   *                    {@code null} or empty if the root element is the array. Every root-level object of .ndjson/.jsonl files
+   *                    is a record anyway.
+   * @param recordKey   Key of records, which value names the record and so its output directory. If it is {@code null}
+   *                    or a record lacks it, the record is named by the base name of the file and its 1-based number.
+   */
+  public RenderOptions withRecords(String recordsPath, String recordKey) {
+    this.isRecords = true;
+    this.recordsPath = recordsPath;
+    this.recordKey = recordKey;
+    return this;
+  }
+
+  /**
+   * Enables the build cache, with which contexts whose template, included templates, tools configuration, variables files
+   * and options are the same as in the previous run, and whose saved files still exist, are not rendered again.
+   * Ignored with a custom output sink, as files it saved cannot be checked.
+   *
+   * @param buildCachePath         Path of the cache of inputs and outputs of rendered contexts, read before and written
+   *                               after rendering. It should be distinct for every template and output path, e.g. for every shard.
+   * @param isDeletingStaleOutputs Whether files saved by the previous run, but not by this one, are deleted,
+   *                               e.g. outputs of removed variables files.
+   */
+  public RenderOptions withBuildCache(Path buildCachePath, boolean isDeletingStaleOutputs) {
+    this.buildCachePath = buildCachePath;
+    this.isDeletingStaleOutputs = isDeletingStaleOutputs;
+    return this;
+  }
+
+  public boolean isCombined() {
+    return isCombined;
+  }
+
+  public MergeStrategy getMergeStrategy() {
+    return mergeStrategy;
+  }
+
+  public int getWorkersCount() {
+    return workersCount;
+  }
+
+  public boolean isSkipUnchanged() {
+    return isSkipUnchanged;
+  }
+
+  public int getWriteBehindQueueCapacity() {
+    return writeBehindQueueCapacity;
+  }
+
+  public int getWriteBehindWritersCount() {
+    return writeBehindWritersCount;
+  }
+
+  public boolean isSyncOnFlush() {
+    return isSyncOnFlush;
+  }
+
+  public Supplier<? extends OutputSink> getOutputSinkFactory() {
+    return outputSinkFactory;
+  }
+
+  public RenderMetrics getMetrics() {
+    return metrics;
+  }
+
+  public TemplateProfiler getProfiler() {
+    return profiler;
+  }
+
+  public Shard getShard() {
+    return shard;
+  }
+
+  public Path getShardManifestPath() {
+    return shardManifestPath;
+  }
+
+  public boolean isRecords() {
+    return isRecords;
+  }
+
+  public String getRecordsPath() {
+    return recordsPath;
+  }
+
+  public String getRecordKey() {
+    return recordKey;
+  }
+
+  public Path getBuildCachePath() {
+    return buildCachePath;
+  }
+
+  public boolean isDeletingStaleOutputs() {
+    return isDeletingStaleOutputs;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("combined=%s, mergeStrategy=%s, workers=%d, skipUnchanged=%s, writeBehindQueueCapacity=%d, writeBehindWriters=%d, syncOnFlush=%s, outputSink=%s, metrics=%s, profiler=%s, shard=%s, records=%s, buildCache=%s",
+        isCombined, mergeStrategy, workersCount, isSkipUnchanged, writeBehindQueueCapacity, writeBehindWritersCount, isSyncOnFlush,
+        outputSinkFactory == null ? "file system" : "custom", metrics != null, profiler != null, shard == null ? "none" : shard,
+        isRecords ? String.format("path '%s', key '%s'", recordsPath == null ? "" : recordsPath, recordKey == null ? "" : recordKey) : "none",
+        buildCachePath == null ? "none" : buildCachePath + (isDeletingStaleOutputs ? " (deleting stale outputs)" : ""));
+  }
+}
@@ -0,0 +1,87 @@
+package com.xarchimedesx.templatesgenerator;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a rendering started by {@link TemplatesGenerator#renderAsync(String, String, String, RenderOptions)}.
+ */
+public class RenderResult {
+
+  private final String templatePath;
+  private final String outputDirBasePath;
+  private final List<Path> outputFiles;
+  private final long queueNanos;
+  private final long durationNanos;
+  private final RuntimeException failure;
+
+  RenderResult(String templatePath, String outputDirBasePath, List<Path> outputFiles, long queueNanos, long durationNanos,
+               RuntimeException failure) {
+    this.templatePath = templatePath;
+    this.outputDirBasePath = outputDirBasePath;
+    this.outputFiles = Collections.unmodifiableList(outputFiles);
+    this.queueNanos = queueNanos;
+    this.durationNanos = durationNanos;
+    this.failure = failure;
+  }
+
+  public String getTemplatePath() {
+    return templatePath;
+  }
+
+  public String getOutputDirBasePath() {
+    return outputDirBasePath;
+  }
+
+  /**
+   * @return Paths of saved files, in the order they were saved. A failed rendering lists files saved before the failure.
+   */
+  public List<Path> getOutputFiles() {
+    return outputFiles;
+  }
+
+  /**
+   * @return Time the rendering waited for a free thread of the executor.
+   */
+  public Duration getQueueDuration() {
+    return Duration.ofNanos(queueNanos);
+  }
+
+  /**
+   * @return Time of the rendering itself, including saving of files.
+   */
+  public Duration getDuration() {
+    return Duration.ofNanos(durationNanos);
+  }
+
+  public boolean isSucceeded() {
+    return failure == null;
+  }
+
+  /**
+   * @return Failure of the rendering, or {@code null} if it succeeded.
+   */
+  public RuntimeException getFailure() {
+    return failure;
+  }
+
+  /**
+   * @return Failures of single variables files or records if the rendering failed for some of them,
+   * the failure of the whole rendering otherwise, or an empty list if it succeeded.
+   */
+  public List<Throwable> getErrors() {
+    if (failure == null) {
+      return Collections.emptyList();
+    }
+    return failure.getSuppressed().length > 0 ? Arrays.asList(failure.getSuppressed()) : Collections.singletonList(failure);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s -> %s: %s, %d files saved in %d ms after %d ms in queue", templatePath, outputDirBasePath,
+        failure == null ? "succeeded" : "failed", outputFiles.size(), getDuration().toMillis(), getQueueDuration().toMillis());
+  }
+}
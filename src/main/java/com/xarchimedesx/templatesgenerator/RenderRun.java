@@ -0,0 +1,131 @@
+package com.xarchimedesx.templatesgenerator;
+
+import com.xarchimedesx.templatesgenerator.metrics.RenderMetrics;
+import com.xarchimedesx.templatesgenerator.metrics.RenderPhase;
+import com.xarchimedesx.templatesgenerator.output.FileSystemOutputSink;
+import com.xarchimedesx.templatesgenerator.output.OutputSink;
+import com.xarchimedesx.templatesgenerator.output.RecordingOutputSink;
+import org.apache.velocity.Template;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * State shared by all Velocity contexts rendered within a single rendering run.
+ */
+class RenderRun {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RenderRun.class);
+
+  private final Template template;
+  private final String outputDirBasePath;
+  private final RenderOptions options;
+  private final OutputSink outputSink;
+  private final AtomicBoolean cancellation;
+
+  RenderRun(Template template, String outputDirBasePath, RenderOptions options) {
+    this(template, outputDirBasePath, options, options.getShardManifestPath() != null, null);
+  }
+
+  /**
+   * @param isRecordingOutputs Whether paths of saved files are recorded, e.g. for shard manifest or result of an async rendering.
+   * @param cancellation       Flag set when the run is cancelled. May be {@code null} if the run cannot be cancelled.
+   */
+  RenderRun(Template template, String outputDirBasePath, RenderOptions options, boolean isRecordingOutputs, AtomicBoolean cancellation) {
+    this.template = template;
+    this.outputDirBasePath = outputDirBasePath;
+    this.options = options;
+    OutputSink sink = options.getOutputSinkFactory() != null
+        ? options.getOutputSinkFactory().get()
+        // with metrics collected, saved files are summarized instead of being logged one by one
+        : new FileSystemOutputSink(options.isSkipUnchanged(), options.getWriteBehindQueueCapacity(),
+        options.getWriteBehindWritersCount(), options.isSyncOnFlush(), options.getMetrics() == null);
+    this.outputSink = isRecordingOutputs ? new RecordingOutputSink(sink) : sink;
+    this.cancellation = cancellation;
+  }
+
+  Template getTemplate() {
+    return template;
+  }
+
+  String getOutputDirBasePath() {
+    return outputDirBasePath;
+  }
+
+  RenderOptions getOptions() {
+    return options;
+  }
+
+  OutputSink getOutputSink() {
+    return outputSink;
+  }
+
+  /**
+   * @return Paths of files saved so far, or an empty list if they are not recorded.
+   */
+  List<Path> getOutputFiles() {
+    return outputSink instanceof RecordingOutputSink ? ((RecordingOutputSink) outputSink).getCommittedFiles() : Collections.emptyList();
+  }
+
+  /**
+   * Stops the run between variables files or records once it is cancelled. Files being rendered are still saved.
+   *
+   * @throws CancellationException if the run is cancelled.
+   */
+  void checkCancelled() {
+    if (cancellation != null && cancellation.get()) {
+      throw new CancellationException("Rendering was cancelled!");
+    }
+  }
+
+  /**
+   * @return Metrics of the run, or {@code null} if they are not collected.
+   */
+  RenderMetrics getMetrics() {
+    return options.getMetrics();
+  }
+
+  /**
+   * Runs given action, recording its latency in the given phase if metrics are collected.
+   */
+  <T> T measure(RenderPhase phase, String label, Supplier<T> action) {
+    RenderMetrics metrics = options.getMetrics();
+    if (metrics == null) {
+      return action.get();
+    }
+    long startNanos = System.nanoTime();
+    T result = action.get();
+    metrics.record(phase, label, System.nanoTime() - startNanos);
+    return result;
+  }
+
+  /**
+   * Waits until all rendered files are saved.
+   */
+  void complete() {
+    try {
+      outputSink.flush();
+    } catch (IOException ioe) {
+      LOGGER.error("Exception occurred while saving rendered files: {}", ioe.getMessage());
+      throw new RuntimeException(ioe);
+    }
+  }
+
+  /**
+   * Waits until files rendered before the failure are saved. Problems with saving them are attached to the failure.
+   */
+  void completeAfterFailure(RuntimeException failure) {
+    try {
+      outputSink.flush();
+    } catch (IOException ioe) {
+      failure.addSuppressed(ioe);
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package com.xarchimedesx.templatesgenerator;
+
+import org.apache.velocity.shaded.commons.io.FilenameUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves local template files, which the main template depends on through {@code #parse} and {@code #include} directives.
+ * Included paths are resolved the same way as {@link org.apache.velocity.app.event.implement.IncludeRelativePath} does it:
+ * relatively to the including template, unless they start with a slash.
+ * Only string literal arguments can be resolved, directives with references as arguments are skipped.
+ */
+class TemplateDependencies {
+
+  private static final Pattern INCLUDE_DIRECTIVE = Pattern.compile("#\\{?(?:parse|include)}?\\s*\\(\\s*([\"'])([^\"']+)\\1");
+
+  private TemplateDependencies() {
+  }
+
+  /**
+   * @param templatePath Velocity template path.
+   * @return Absolute paths of the template itself and of all templates it transitively includes,
+   * which exist in local file system. Templates loaded from classpath are skipped.
+   */
+  static Set<Path> resolve(String templatePath) throws IOException {
+    Set<Path> dependencies = new LinkedHashSet<>();
+    Deque<String> templatesToInspect = new ArrayDeque<>();
+    templatesToInspect.add(FilenameUtils.separatorsToUnix(templatePath));
+
+    while (!templatesToInspect.isEmpty()) {
+      String resourcePath = templatesToInspect.poll();
+      Path templateFile = Paths.get(resourcePath).toAbsolutePath().normalize();
+      if (!Files.isRegularFile(templateFile) || !dependencies.add(templateFile)) {
+        continue;
+      }
+
+      Matcher matcher = INCLUDE_DIRECTIVE.matcher(new String(Files.readAllBytes(templateFile), StandardCharsets.UTF_8));
+      while (matcher.find()) {
+        templatesToInspect.add(resolveIncludedPath(resourcePath, matcher.group(2)));
+      }
+    }
+
+    return dependencies;
+  }
+
+  private static String resolveIncludedPath(String currentResourcePath, String includedResourcePath) {
+    if (includedResourcePath.startsWith("/") || includedResourcePath.startsWith("\\")) {
+      return includedResourcePath;
+    }
+    int lastSlash = currentResourcePath.lastIndexOf('/');
+    return lastSlash == -1
+        ? includedResourcePath
+        : currentResourcePath.substring(0, lastSlash + 1) + includedResourcePath;
+  }
+}
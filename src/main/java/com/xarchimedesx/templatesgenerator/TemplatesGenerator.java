@@ -1,8 +1,29 @@
 package com.xarchimedesx.templatesgenerator;
 
 import com.xarchimedesx.templatesgenerator.cli.Parser;
+import com.xarchimedesx.templatesgenerator.directive.ProfilingEvaluateDirective;
+import com.xarchimedesx.templatesgenerator.directive.ProfilingForeachDirective;
+import com.xarchimedesx.templatesgenerator.directive.ProfilingIncludeDirective;
+import com.xarchimedesx.templatesgenerator.directive.ProfilingParseDirective;
 import com.xarchimedesx.templatesgenerator.directive.SaveFileDirective;
+import com.xarchimedesx.templatesgenerator.exception.RenderingException;
+import com.xarchimedesx.templatesgenerator.introspection.VariablesUberspector;
+import com.xarchimedesx.templatesgenerator.metrics.RenderMetrics;
+import com.xarchimedesx.templatesgenerator.metrics.RenderPhase;
+import com.xarchimedesx.templatesgenerator.output.ArchiveOutputSink;
+import com.xarchimedesx.templatesgenerator.output.DiscardOutputSink;
+import com.xarchimedesx.templatesgenerator.output.OutputSink;
+import com.xarchimedesx.templatesgenerator.output.RecordingOutputSink;
+import com.xarchimedesx.templatesgenerator.profile.ProfilingVelocityContext;
+import com.xarchimedesx.templatesgenerator.profile.TemplateProfiler;
 import com.xarchimedesx.templatesgenerator.reader.ContextVariablesReader;
+import com.xarchimedesx.templatesgenerator.reader.MergeStrategy;
+import com.xarchimedesx.templatesgenerator.reader.VariablesFile;
+import com.xarchimedesx.templatesgenerator.reader.VariablesParsers;
+import com.xarchimedesx.templatesgenerator.reader.VariablesSnapshotCache;
+import com.xarchimedesx.templatesgenerator.shard.Shard;
+import com.xarchimedesx.templatesgenerator.shard.ShardManifest;
+import com.xarchimedesx.templatesgenerator.template.TemplatesCache;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.velocity.Template;
@@ -19,25 +40,70 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.OptionalInt;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * Renders Velocity templates with contexts of variables files.
+ * <p>
+ * A generator is thread-safe, so a single instance, with its engine, tools, cached templates and reader, can serve
+ * concurrent {@code render} and {@code renderAsync} calls. Every call gets its own output sink and every Velocity context
+ * gets its own tool context, so only application-scoped tools, which are stateless, are shared between calls.
+ */
 public class TemplatesGenerator {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(TemplatesGenerator.class);
   private static final String RESOURCE_LOADERS_NAMES = "file,classpath";
   private static final String FILE_RESOURCE_LOADER = "resource.loader.file.class";
   private static final String CLASSPATH_RESOURCE_LOADER = "resource.loader.classpath.class";
-  private static final String TOOLS_CONFIG_FILE = "toolsConfiguration.xml";
+  private static final String FILE_RESOURCE_LOADER_CACHE = "resource.loader.file.cache";
+  private static final String FILE_RESOURCE_LOADER_CHECK_INTERVAL = "resource.loader.file.modification_check_interval";
+  private static final String CLASSPATH_RESOURCE_LOADER_CACHE = "resource.loader.classpath.cache";
+  private static final String TEMPLATES_EXTENSION = "vm";
+  private static final int PROFILE_SUMMARY_FRAMES_COUNT = 10;
   private static final String OUTPUT_DIR_BASE_PATH_REFERENCE_NAME = "outputDirBasePath";
+  private static final String DEFAULT_VARIABLES_CACHE_SIZE_MB = "512";
+  private static final String DEFAULT_DAEMON_PORT = "7654";
+  private static final String DEFAULT_DAEMON_IDLE_TIMEOUT_SECONDS = "1800";
+  private static final int DEFAULT_ASYNC_QUEUE_CAPACITY = 1024;
+  private static final String COMBINED_CONTEXT_KEY = "COMBINED";
   static final String VARIABLES_FILES_SEPARATOR = ",";
+  static final String TOOLS_CONFIG_FILE = "toolsConfiguration.xml";
   private final ContextVariablesReader reader;
-  private final Context toolContext;
+  private final ToolManager toolManager;
   private final VelocityEngine engine;
+  private final Executor asyncExecutor;
 
   /**
    * CLI entrypoint. Parses input array of strings using Apache CLI.
@@ -48,24 +114,223 @@ public class TemplatesGenerator {
    *             .json, .yaml/.yml extensions are supported.<br>
    *             --output (-o) - Output path.<br>
    *             --combine (-c) - No args. Whether to combine multiple variables files' content inside single context
-   *             or to render output per input file. Optional. 'False' if not set.
+   *             or to render output per input file. Optional. 'False' if not set.<br>
+   *             --merge-strategy - How values of the same keys in different variables files are merged in combined mode:
+   *             nested, deep, concat, last-wins or first-wins. Optional. 'nested' if not set.<br>
+   *             --records - No args. Whether to render every record of .ndjson/.jsonl files or of arrays in .json and .yaml/.yml
+   *             files with its own context into a subdirectory named after the record, instead of every variables file.
+   *             Records are streamed one by one. Optional.<br>
+   *             --records-path - Dot-separated keys leading to the array of records in .json and .yaml/.yml files.
+   *             Implies --records. Optional. The root element if not set.<br>
+   *             --record-key - Key of records, which value names the output subdirectory of the record. Implies --records.
+   *             Optional. Base name of the file and 1-based number of the record if not set.<br>
+   *             --workers (-w) - Number of worker threads used to render variables files in non-combined mode.
+   *             Optional. '1' if not set.<br>
+   *             --readers - Number of threads walking variables directories and parsing variables files ahead of rendering.
+   *             Optional. '1' if not set.<br>
+   *             --variables-cache - Directory where binary snapshots of parsed variables files are cached.
+   *             Optional. Caching is disabled if not set.<br>
+   *             --variables-cache-size - Maximal size of variables snapshots cache in megabytes. Optional. '512' if not set.<br>
+   *             --lazy-json - Minimal size in megabytes of .json variables files, which are memory-mapped and read lazily,
+   *             as template dereferences their top-level keys. Optional. Lazy reading is disabled if not set.<br>
+   *             --clear-variables-cache - No args. Whether to clear variables snapshots cache before rendering. Optional.<br>
+   *             --watch - No args. Whether to keep running and re-render outputs affected by changes of the template,
+   *             templates it includes or variables files. Optional.<br>
+   *             --skip-unchanged - No args. Whether to leave existing files untouched when their content equals the rendered one.
+   *             Optional.<br>
+   *             --write-behind - Capacity of the queue of rendered files waiting to be written by background writers.
+   *             Optional. Write-behind is disabled if not set.<br>
+   *             --write-behind-writers - Number of background writer threads. Optional. '1' if not set.<br>
+   *             --fsync - No args. Whether to sync all saved files to the storage device at the end of rendering. Optional.<br>
+   *             --archive - Path of .zip or .tar.gz archive to save rendered files to, instead of separate files. Optional.<br>
+   *             --discard - No args. Whether to discard rendered files instead of saving them. Optional.<br>
+   *             --daemon - No args. Whether to start render daemon keeping initialized engine resident. Optional.<br>
+   *             --daemon-port - Local port of render daemon. Optional. '7654' if not set.<br>
+   *             --daemon-idle-timeout - Number of seconds render daemon waits for requests before shutting down.
+   *             Optional. '1800' if not set.<br>
+   *             --use-daemon - No args. Whether to forward rendering to running render daemon. Optional.<br>
+   *             --jobs - Path of .json or .yaml/.yml manifest with a list of renderings to be run instead of the one
+   *             given by --template, --variables and --output. Optional.<br>
+   *             --jobs-parallelism - Number of jobs of the manifest rendered concurrently. Optional. '1' if not set.<br>
+   *             --templates-check-interval - Interval of checking cached templates for modifications, in milliseconds.
+   *             Negative value disables checks. Optional. '0' if not set, which checks on every use of a template.<br>
+   *             --templates-cache-size - Maximal number of cached templates, least recently used ones are evicted above it.
+   *             Optional. '0' if not set, which caches all templates.<br>
+   *             --prewarm - Directory with .vm templates to be parsed in parallel before rendering. Optional.<br>
+   *             --metrics - No args. Whether to collect counts, bytes and latencies of rendering phases and log their summary
+   *             instead of every saved file. Optional.<br>
+   *             --metrics-report - Path of the metrics report, in JSON format for .json files and in Prometheus text format
+   *             otherwise. Implies --metrics. Optional.<br>
+   *             --profile - Path of collapsed stacks file with wall time spent in templates, macros and directives,
+   *             to be turned into a flame graph. Optional.<br>
+   *             --shard - Zero-based index and count of shards in {@code <index>/<count>} form, e.g. '0/4'. Only variables files
+   *             assigned to the shard by a stable hash of their paths are rendered, into the same output tree. Optional.<br>
+   *             --shard-manifest - Path of the manifest of rendered variables files and saved files. With --merge-shard-manifests
+   *             it is the path of the merged manifest. Optional.<br>
+   *             --merge-shard-manifests - Comma-separated list of manifests of all shards to be merged, checking that every shard
+   *             was rendered and no file was saved by more than one shard, instead of rendering. Optional.<br>
+   *             --build-cache - Path of the cache of inputs and outputs of rendered contexts. Contexts whose template, included
+   *             templates, tools configuration, variables files and options did not change since the previous run, and whose
+   *             saved files still exist, are not rendered again. Optional. Every context is rendered if not set.<br>
+   *             --delete-stale-outputs - No args. Whether to delete files saved by the previous run with the same build cache,
+   *             but not by this one. Requires --build-cache. Optional.
    */
   public static void main(String[] args) {
     CommandLine cli = new Parser().parse(args);
 
+    if (cli.hasOption("daemon")) {
+      runDaemon(cli);
+    } else if (cli.hasOption("merge-shard-manifests")) {
+      mergeShardManifests(Arrays.stream(cli.getOptionValue("merge-shard-manifests").split(VARIABLES_FILES_SEPARATOR))
+              .map(String::trim)
+              .map(Paths::get)
+              .collect(Collectors.toList()),
+          cli.hasOption("shard-manifest") ? Paths.get(cli.getOptionValue("shard-manifest")) : null);
+    } else if (cli.hasOption("jobs")) {
+      // jobs share a single generator in this process anyway, so they are not forwarded to the daemon
+      renderJobs(cli);
+    } else if (cli.hasOption("use-daemon")) {
+      renderUsingDaemon(args, cli);
+    } else {
+      render(initializeAndGetGenerator(cli, false), cli);
+    }
+  }
+
+  // package-private for RenderDaemon
+  static void render(TemplatesGenerator tg, CommandLine cli) {
     String templatePath = cli.getOptionValue("template");
     String variablesPaths = cli.getOptionValue("variables");
     String outputDirBasePath = cli.getOptionValue("output");
-    boolean isCombined = cli.hasOption("combine");
+    RenderMetrics metrics = initializeAndGetMetrics(cli);
+    TemplateProfiler profiler = initializeAndGetProfiler(cli);
+    RenderOptions options = initializeAndGetRenderOptions(cli, outputDirBasePath, metrics, profiler);
+
+    try {
+      if (cli.hasOption("watch")) {
+        try (TemplatesWatcher watcher = new TemplatesWatcher(tg, templatePath, variablesPaths, outputDirBasePath, options)) {
+          watcher.watch();
+        } catch (IOException ioe) {
+          LOGGER.error("Exception occurred while watching for changes: {}", ioe.getMessage());
+          throw new RuntimeException(ioe);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+        }
+      } else {
+        tg.render(templatePath, variablesPaths, outputDirBasePath, options);
+      }
+    } finally {
+      report(cli, metrics, profiler);
+    }
+  }
+
+  private static void renderJobs(CommandLine cli) {
+    List<RenderJob> jobs;
+    try {
+      jobs = RenderJob.readManifest(Paths.get(cli.getOptionValue("jobs")));
+    } catch (IOException ioe) {
+      LOGGER.error("Exception occurred while reading jobs manifest: {}", ioe.getMessage());
+      throw new RuntimeException(ioe);
+    }
+
+    // jobs referencing the same templates and variables files parse them only once
+    TemplatesGenerator tg = initializeAndGetGenerator(cli, true);
+    // metrics and profile of all jobs are collected together
+    RenderMetrics metrics = initializeAndGetMetrics(cli);
+    TemplateProfiler profiler = initializeAndGetProfiler(cli);
+    try {
+      new RenderJobsRunner(tg, Integer.parseInt(cli.getOptionValue("jobs-parallelism", "1")))
+          .run(jobs, outputDirBasePath -> initializeAndGetRenderOptions(cli, outputDirBasePath, metrics, profiler));
+    } finally {
+      report(cli, metrics, profiler);
+    }
+  }
 
-    TemplatesGenerator tg = new TemplatesGenerator();
-    tg.render(templatePath, variablesPaths, outputDirBasePath, isCombined);
+  private static RenderMetrics initializeAndGetMetrics(CommandLine cli) {
+    return cli.hasOption("metrics") || cli.hasOption("metrics-report") ? new RenderMetrics() : null;
+  }
+
+  private static TemplateProfiler initializeAndGetProfiler(CommandLine cli) {
+    return cli.hasOption("profile") ? new TemplateProfiler() : null;
+  }
+
+  private static void report(CommandLine cli, RenderMetrics metrics, TemplateProfiler profiler) {
+    if (metrics != null) {
+      metrics.logSummary();
+      if (cli.hasOption("metrics-report")) {
+        metrics.writeReport(Paths.get(cli.getOptionValue("metrics-report")));
+      }
+    }
+    if (profiler != null) {
+      profiler.logSummary(PROFILE_SUMMARY_FRAMES_COUNT);
+      profiler.writeCollapsedStacks(Paths.get(cli.getOptionValue("profile")));
+    }
+  }
+
+  private static RenderOptions initializeAndGetRenderOptions(CommandLine cli, String outputDirBasePath, RenderMetrics metrics,
+                                                             TemplateProfiler profiler) {
+    RenderOptions options = new RenderOptions()
+        .withCombined(cli.hasOption("combine"))
+        .withMergeStrategy(MergeStrategy.fromName(cli.getOptionValue("merge-strategy", MergeStrategy.NESTED.name())))
+        .withWorkersCount(Integer.parseInt(cli.getOptionValue("workers", "1")))
+        .withSkipUnchanged(cli.hasOption("skip-unchanged"))
+        .withWriteBehind(Integer.parseInt(cli.getOptionValue("write-behind", "0")),
+            Integer.parseInt(cli.getOptionValue("write-behind-writers", "1")))
+        .withSyncOnFlush(cli.hasOption("fsync"))
+        .withMetrics(metrics)
+        .withProfiler(profiler);
+    if (cli.hasOption("records") || cli.hasOption("records-path") || cli.hasOption("record-key")) {
+      options.withRecords(cli.getOptionValue("records-path"), cli.getOptionValue("record-key"));
+    }
+    if (cli.hasOption("shard")) {
+      Shard shard = Shard.parse(cli.getOptionValue("shard"));
+      options.withShard(shard.getIndex(), shard.getCount());
+    }
+    if (cli.hasOption("shard-manifest")) {
+      options.withShardManifest(Paths.get(cli.getOptionValue("shard-manifest")));
+    }
+    if (cli.hasOption("build-cache")) {
+      options.withBuildCache(Paths.get(cli.getOptionValue("build-cache")), cli.hasOption("delete-stale-outputs"));
+    }
+    if (cli.hasOption("archive")) {
+      Path archivePath = Paths.get(cli.getOptionValue("archive"));
+      options.withOutputSink(() -> initializeAndGetArchiveOutputSink(archivePath, outputDirBasePath));
+    } else if (cli.hasOption("discard")) {
+      options.withOutputSink(DiscardOutputSink::new);
+    }
+    return options;
   }
 
   public TemplatesGenerator() {
-    this.engine = initializeAndGetVelocityEngine();
-    this.toolContext = initializeAndGetToolContext();
-    this.reader = new ContextVariablesReader();
+    this(new ContextVariablesReader());
+  }
+
+  /**
+   * @param reader Variables reader to be used, e.g. one with additional parsers registered for custom variables files formats.
+   */
+  public TemplatesGenerator(ContextVariablesReader reader) {
+    this(reader, new Properties());
+  }
+
+  /**
+   * @param reader           Variables reader to be used.
+   * @param engineProperties Additional Velocity engine properties, e.g. ones enabling templates caching.
+   */
+  public TemplatesGenerator(ContextVariablesReader reader, Properties engineProperties) {
+    this(reader, engineProperties, RenderExecutors.bounded(Runtime.getRuntime().availableProcessors(), DEFAULT_ASYNC_QUEUE_CAPACITY));
+  }
+
+  /**
+   * @param reader           Variables reader to be used.
+   * @param engineProperties Additional Velocity engine properties, e.g. ones enabling templates caching.
+   * @param asyncExecutor    Executor running renderings started by {@code renderAsync}, e.g. one created by {@link RenderExecutors}.
+   *                         It is owned by the caller. By default it is a pool of as many daemon threads as there are processors
+   *                         with a queue of 1024 renderings.
+   */
+  public TemplatesGenerator(ContextVariablesReader reader, Properties engineProperties, Executor asyncExecutor) {
+    this.engine = initializeAndGetVelocityEngine(engineProperties);
+    this.toolManager = initializeAndGetToolManager();
+    this.reader = reader;
+    this.asyncExecutor = asyncExecutor;
   }
 
   /**
@@ -79,54 +344,720 @@ public class TemplatesGenerator {
    *                          or to render output per input file.
    */
   public void render(String templatePath, String variablesPaths, String outputDirBasePath, boolean isCombined) {
+    render(templatePath, variablesPaths, outputDirBasePath, new RenderOptions().withCombined(isCombined));
+  }
+
+  /**
+   * Entrypoint when using Templates-Generator as a library with parallel rendering.
+   *
+   * @param templatePath      Velocity template path.
+   * @param variablesPaths    Comma-separated list of paths to files/directories with variables.
+   *                          .json, .yaml/.yml extensions are supported.<br>
+   * @param outputDirBasePath Output path.
+   * @param isCombined        Whether to combine multiple variables files' content inside single context
+   *                          or to render output per input file.
+   * @param workersCount      Number of worker threads. {@code 1} renders files sequentially in the calling thread.
+   */
+  public void render(String templatePath, String variablesPaths, String outputDirBasePath, boolean isCombined, int workersCount) {
+    render(templatePath, variablesPaths, outputDirBasePath, new RenderOptions().withCombined(isCombined).withWorkersCount(workersCount));
+  }
+
+  /**
+   * Entrypoint when using Templates-Generator as a library with optional settings.
+   * With more than one worker, in non-combined mode every variables file is rendered by one of worker threads.
+   * A failure of a single file does not stop the others: all failures are logged per file
+   * and reported together once every file has been processed.
+   *
+   * @param templatePath      Velocity template path.
+   * @param variablesPaths    Comma-separated list of paths to files/directories with variables.
+   *                          .json, .yaml/.yml extensions are supported.<br>
+   * @param outputDirBasePath Output path.
+   * @param options           Optional settings of the rendering.
+   */
+  public void render(String templatePath, String variablesPaths, String outputDirBasePath, RenderOptions options) {
     List<String> parsedVariablesPaths = preprocessVariablesPaths(variablesPaths);
-    templatePath = FilenameUtils.normalize(templatePath);
-    outputDirBasePath = FilenameUtils.normalize(outputDirBasePath);
+    validateRendering(templatePath, parsedVariablesPaths, outputDirBasePath, options);
+    // the template is parsed once here and then only read by every merge, so it can be shared between workers
+    render(startRun(templatePath, outputDirBasePath, options), parsedVariablesPaths);
+  }
 
-    LOGGER.info("Running rendering with\n    Velocity template path: {}\n    Variables files paths: {}\n    Output path: {}\n    Is combined: {}",
-        templatePath, parsedVariablesPaths, outputDirBasePath, isCombined);
+  /**
+   * Asynchronous entrypoint when using Templates-Generator as a library, e.g. in a service rendering on behalf of
+   * many request threads. The rendering runs on the executor of the generator, which is bounded, so renderings above
+   * its capacity fail with {@link java.util.concurrent.RejectedExecutionException} instead of piling up.
+   *
+   * @param templatePath      Velocity template path.
+   * @param variablesPaths    Comma-separated list of paths to files/directories with variables.
+   * @param outputDirBasePath Output path.
+   * @param options           Optional settings of the rendering.
+   * @return Future of the result, which is completed with a failed result if rendering fails.
+   * Cancelling the future stops the rendering before the next variables file or record.
+   */
+  public CompletableFuture<RenderResult> renderAsync(String templatePath, String variablesPaths, String outputDirBasePath,
+                                                     RenderOptions options) {
+    return renderAsync(templatePath, variablesPaths, outputDirBasePath, options, asyncExecutor);
+  }
 
-    Template template = engine.getTemplate(templatePath);
-    List<Pair<String, Map<String, Object>>> variables = reader.getVariables(parsedVariablesPaths, isCombined);
-    int filesToBeSaved = variables.size();
+  /**
+   * Same as {@link #renderAsync(String, String, String, RenderOptions)}, but running on given executor,
+   * e.g. one created by {@link RenderExecutors}.
+   */
+  public CompletableFuture<RenderResult> renderAsync(String templatePath, String variablesPaths, String outputDirBasePath,
+                                                     RenderOptions options, Executor executor) {
+    AtomicBoolean cancellation = new AtomicBoolean();
+    CompletableFuture<RenderResult> future = new CompletableFuture<RenderResult>() {
+      @Override
+      public boolean cancel(boolean mayInterruptIfRunning) {
+        // threads are not interrupted, as that could leave files half-written, the run stops between variables files instead
+        cancellation.set(true);
+        return super.cancel(mayInterruptIfRunning);
+      }
+    };
+    long submittedNanos = System.nanoTime();
+    try {
+      executor.execute(RenderExecutors.withCallerContext(() -> {
+        if (Thread.currentThread().isInterrupted()) {
+          // e.g. the executor was shut down while the rendering waited for its turn
+          future.completeExceptionally(new RenderingException("Rendering was interrupted before it started!"));
+        } else if (!future.isDone()) {
+          completeRendering(future, templatePath, variablesPaths, outputDirBasePath, options, cancellation, submittedNanos);
+        }
+      }));
+    } catch (RejectedExecutionException ree) {
+      future.completeExceptionally(ree);
+    }
+    return future;
+  }
 
-    for (Pair<String, Map<String, Object>> var : variables) {
-      String outputPath = formOutputPath(filesToBeSaved, outputDirBasePath, var.getKey());
-      Context velocityContext = initializeAndGetVelocityContext(var.getValue(), outputPath);
-      mergeTemplateAndVelocityContext(template, velocityContext);
+  /**
+   * Merges manifests written by all shards of a rendering and checks that every shard was rendered once
+   * and no file was saved by more than one shard.
+   *
+   * @param shardManifestPaths  Manifests of all shards.
+   * @param mergedManifestPath  Path where the merged manifest is written. May be {@code null}.
+   * @return Merged manifest.
+   */
+  public static ShardManifest mergeShardManifests(List<Path> shardManifestPaths, Path mergedManifestPath) {
+    try {
+      List<ShardManifest> manifests = new ArrayList<>();
+      for (Path shardManifestPath : shardManifestPaths) {
+        manifests.add(ShardManifest.read(shardManifestPath));
+      }
+      ShardManifest mergedManifest = ShardManifest.merge(manifests);
+      LOGGER.info("Merged manifests of {} shards: {} variables files rendered, {} files saved.", mergedManifest.getShards().size(),
+          mergedManifest.getVariablesFiles().size(), mergedManifest.getOutputFiles().size());
+      if (mergedManifestPath != null) {
+        mergedManifest.write(mergedManifestPath);
+      }
+      return mergedManifest;
+    } catch (IOException ioe) {
+      LOGGER.error("Exception occurred while merging shard manifests: {}", ioe.getMessage());
+      throw new RuntimeException(ioe);
     }
   }
 
-  private VelocityEngine initializeAndGetVelocityEngine() {
+  /**
+   * Resolves local template files a rendering depends on, e.g. for up-to-date checks of build tools.
+   * Only {@code #parse} and {@code #include} directives with string literal paths are followed.
+   *
+   * @param templatePath Velocity template path.
+   * @return Absolute paths of the template itself and of all templates it transitively includes, which exist in local file system.
+   */
+  public static Set<Path> getTemplateDependencies(String templatePath) throws IOException {
+    return TemplateDependencies.resolve(FilenameUtils.normalize(templatePath));
+  }
+
+  /**
+   * Parses every .vm template under given directory in parallel and puts it to templates cache, so that renderings
+   * do not pay for parsing them. Templates are cached by their paths, so the directory should be given in the same form,
+   * relative or absolute, as template paths passed to {@code render}.
+   *
+   * @param templatesDirPath Directory with templates.
+   * @param threadsCount     Number of threads parsing templates.
+   * @return Number of successfully parsed templates.
+   */
+  public int prewarm(String templatesDirPath, int threadsCount) {
+    List<String> templatePaths;
+    try (Stream<Path> paths = Files.walk(Paths.get(FilenameUtils.normalize(templatesDirPath)))) {
+      templatePaths = paths.filter(Files::isRegularFile)
+          .map(Path::toString)
+          .filter(path -> FilenameUtils.isExtension(path, TEMPLATES_EXTENSION))
+          .sorted()
+          .collect(Collectors.toList());
+    } catch (IOException ioe) {
+      LOGGER.error("Exception occurred while looking for templates to prewarm: {}", ioe.getMessage());
+      throw new RuntimeException(ioe);
+    }
+
+    long startMillis = System.currentTimeMillis();
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threadsCount, templatePaths.size())));
+    int parsedCount = 0;
+    try {
+      List<Pair<String, Future<Template>>> parsings = new ArrayList<>();
+      for (String templatePath : templatePaths) {
+        parsings.add(Pair.of(templatePath, executor.submit(RenderExecutors.withCallerContext(() -> engine.getTemplate(templatePath)))));
+      }
+      for (Pair<String, Future<Template>> parsing : parsings) {
+        try {
+          parsing.getValue().get();
+          parsedCount++;
+        } catch (ExecutionException ee) {
+          // a template failing to parse may be unused, so it fails only renderings using it
+          LOGGER.warn("Cannot prewarm template {}: {}", parsing.getKey(), ee.getCause().getMessage());
+        }
+      }
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new RenderingException("Prewarming templates was interrupted!");
+    } finally {
+      executor.shutdownNow();
+    }
+
+    LOGGER.info("Prewarmed {} of {} templates in {} ms.", parsedCount, templatePaths.size(), System.currentTimeMillis() - startMillis);
+    return parsedCount;
+  }
+
+  /**
+   * @return Cache of parsed templates with hits and misses counters.
+   */
+  public TemplatesCache getTemplatesCache() {
+    return (TemplatesCache) engine.getApplicationAttribute(TemplatesCache.APPLICATION_ATTRIBUTE);
+  }
+
+  // package-private for TemplatesWatcher
+  RenderRun startRun(String templatePath, String outputDirBasePath, RenderOptions options) {
+    return new RenderRun(engine.getTemplate(FilenameUtils.normalize(templatePath)), FilenameUtils.normalize(outputDirBasePath), options);
+  }
+
+  // package-private for TemplatesWatcher
+  List<VariablesFile> discoverVariablesFiles(List<String> parsedVariablesPaths, RenderOptions options) {
+    return options.isRecords()
+        ? reader.discoverRecordsFiles(parsedVariablesPaths)
+        : reader.discoverVariablesFiles(parsedVariablesPaths);
+  }
+
+  // package-private for TemplatesWatcher
+  void renderVariablesFile(RenderRun run, VariablesFile variablesFile, int filesToBeSaved) {
+    renderVariablesFile(run, variablesFile, filesToBeSaved, null);
+  }
+
+  private void completeRendering(CompletableFuture<RenderResult> future, String templatePath, String variablesPaths,
+                                 String outputDirBasePath, RenderOptions options, AtomicBoolean cancellation, long submittedNanos) {
+    long startNanos = System.nanoTime();
+    RenderRun run = null;
+    RuntimeException failure = null;
+    try {
+      List<String> parsedVariablesPaths = preprocessVariablesPaths(variablesPaths);
+      validateRendering(templatePath, parsedVariablesPaths, outputDirBasePath, options);
+      run = new RenderRun(engine.getTemplate(FilenameUtils.normalize(templatePath)), FilenameUtils.normalize(outputDirBasePath),
+          options, true, cancellation);
+      render(run, parsedVariablesPaths);
+    } catch (CancellationException ce) {
+      // the future has already been cancelled
+      return;
+    } catch (RuntimeException re) {
+      failure = re;
+    } catch (Error e) {
+      future.completeExceptionally(e);
+      throw e;
+    }
+    future.complete(new RenderResult(templatePath, outputDirBasePath, run == null ? Collections.emptyList() : run.getOutputFiles(),
+        startNanos - submittedNanos, System.nanoTime() - startNanos, failure));
+  }
+
+  private void validateRendering(String templatePath, List<String> parsedVariablesPaths, String outputDirBasePath, RenderOptions options) {
+    LOGGER.info("Running rendering with\n    Velocity template path: {}\n    Variables files paths: {}\n    Output path: {}\n    Options: {}",
+        FilenameUtils.normalize(templatePath), parsedVariablesPaths, FilenameUtils.normalize(outputDirBasePath), options);
+
+    if (options.isCombined() && options.getShard() != null) {
+      throw new IllegalArgumentException("Sharding is not supported in combined mode, which renders all variables files together!");
+    }
+    if (options.isCombined() && options.isRecords()) {
+      throw new IllegalArgumentException("Records mode is not supported in combined mode, which renders all variables files together!");
+    }
+  }
+
+  private void render(RenderRun run, List<String> parsedVariablesPaths) {
+    RenderOptions options = run.getOptions();
+    Shard shard = options.getShard();
+    BuildCache buildCache = openBuildCache(run);
+    List<VariablesFile> renderedVariablesFiles;
+    try {
+      List<VariablesFile> variablesFiles = run.measure(RenderPhase.DISCOVERY, "",
+          () -> discoverVariablesFiles(parsedVariablesPaths, options));
+      if (options.isCombined()) {
+        renderedVariablesFiles = variablesFiles;
+        if (isUpToDate(buildCache, COMBINED_CONTEXT_KEY, variablesFiles, run.getOutputDirBasePath())) {
+          LOGGER.info("Combined variables files are up to date.");
+        } else {
+          Stream<Pair<String, Map<String, Object>>> variables =
+              reader.streamVariables(variablesFiles, variablesFile -> readVariablesFile(run, variablesFile));
+          Map<String, Object> combinedVariables = reader.combineVariables(variables, options.getMergeStrategy()).getValue();
+          renderContext(run, buildCache, COMBINED_CONTEXT_KEY,
+              outputSink -> renderVariables(run, combinedVariables, run.getOutputDirBasePath(), outputSink));
+        }
+      } else {
+        // output paths depend on the number of all files, so that every shard saves files where a single run would
+        int filesToBeSaved = variablesFiles.size();
+        renderedVariablesFiles = shard != null ? shard.select(variablesFiles) : variablesFiles;
+        if (shard != null) {
+          LOGGER.info("Shard {} renders {} of {} variables files.", shard, renderedVariablesFiles.size(), filesToBeSaved);
+        }
+        List<VariablesFile> outdatedVariablesFiles = selectOutdatedVariablesFiles(run, buildCache, renderedVariablesFiles, filesToBeSaved);
+        if (options.isRecords()) {
+          renderRecords(run, outdatedVariablesFiles, buildCache);
+        } else if (options.getWorkersCount() > 1 && outdatedVariablesFiles.size() > 1) {
+          renderInParallel(run, outdatedVariablesFiles, filesToBeSaved, buildCache);
+        } else {
+          renderSequentially(run, outdatedVariablesFiles, filesToBeSaved, buildCache);
+        }
+      }
+    } catch (RuntimeException re) {
+      run.completeAfterFailure(re);
+      if (buildCache != null) {
+        // contexts rendered before the failure are not rendered again by the next run
+        try {
+          buildCache.save(false, false);
+        } catch (IOException ioe) {
+          re.addSuppressed(ioe);
+        }
+      }
+      throw re;
+    }
+    run.complete();
+    if (buildCache != null) {
+      try {
+        buildCache.save(true, options.isDeletingStaleOutputs());
+      } catch (IOException ioe) {
+        LOGGER.error("Exception occurred while writing build cache: {}", ioe.getMessage());
+        throw new RuntimeException(ioe);
+      }
+    }
+    if (options.getShardManifestPath() != null) {
+      writeShardManifest(run, renderedVariablesFiles, buildCache);
+    }
+    LOGGER.debug("Templates cache: {}", getTemplatesCache());
+  }
+
+  private BuildCache openBuildCache(RenderRun run) {
+    RenderOptions options = run.getOptions();
+    if (options.getBuildCachePath() == null) {
+      return null;
+    }
+    if (options.getOutputSinkFactory() != null) {
+      LOGGER.warn("Build cache is ignored, as files saved by a custom output sink cannot be checked.");
+      return null;
+    }
+    try {
+      return BuildCache.open(options.getBuildCachePath(),
+          BuildCache.fingerprintRendering(run.getTemplate().getName(), TOOLS_CONFIG_FILE, run.getOutputDirBasePath(), options),
+          options.getShard());
+    } catch (IOException ioe) {
+      LOGGER.error("Exception occurred while fingerprinting templates: {}", ioe.getMessage());
+      throw new RuntimeException(ioe);
+    }
+  }
+
+  private static boolean isUpToDate(BuildCache buildCache, String contextKey, List<VariablesFile> variablesFiles, String outputPath) {
+    if (buildCache == null) {
+      return false;
+    }
+    try {
+      return buildCache.isUpToDate(contextKey, variablesFiles, outputPath);
+    } catch (IOException ioe) {
+      LOGGER.error("Exception occurred while fingerprinting variables files: {}", ioe.getMessage());
+      throw new RuntimeException(ioe);
+    }
+  }
+
+  private List<VariablesFile> selectOutdatedVariablesFiles(RenderRun run, BuildCache buildCache, List<VariablesFile> variablesFiles,
+                                                           int filesToBeSaved) {
+    if (buildCache == null) {
+      return variablesFiles;
+    }
+    List<VariablesFile> outdatedVariablesFiles = new ArrayList<>();
+    for (VariablesFile variablesFile : variablesFiles) {
+      // records of a file are rendered into subdirectories of the output path regardless of the number of files
+      String outputPath = run.getOptions().isRecords()
+          ? run.getOutputDirBasePath()
+          : formOutputPath(filesToBeSaved, run.getOutputDirBasePath(), variablesFile.getName());
+      if (!isUpToDate(buildCache, Shard.getKey(variablesFile), Collections.singletonList(variablesFile), outputPath)) {
+        outdatedVariablesFiles.add(variablesFile);
+      }
+    }
+    LOGGER.info("{} of {} variables files are up to date.", variablesFiles.size() - outdatedVariablesFiles.size(), variablesFiles.size());
+    return outdatedVariablesFiles;
+  }
+
+  // with the build cache, files saved by the context are recorded, so that the next run can check they still exist
+  private static void renderContext(RenderRun run, BuildCache buildCache, String contextKey, Consumer<OutputSink> rendering) {
+    if (buildCache == null) {
+      rendering.accept(run.getOutputSink());
+      return;
+    }
+    RecordingOutputSink contextOutputSink = new RecordingOutputSink(run.getOutputSink());
+    rendering.accept(contextOutputSink);
+    buildCache.rendered(contextKey, contextOutputSink.getCommittedFiles());
+  }
+
+  private Pair<String, Map<String, Object>> readVariablesFile(RenderRun run, VariablesFile variablesFile) {
+    RenderMetrics metrics = run.getMetrics();
+    if (metrics == null) {
+      return reader.readVariablesFile(variablesFile);
+    }
+    long startNanos = System.nanoTime();
+    Pair<String, Map<String, Object>> variables = reader.readVariablesFile(variablesFile);
+    long elapsedNanos = System.nanoTime() - startNanos;
+    long sizeBytes;
+    try {
+      sizeBytes = Files.size(variablesFile.getPath());
+    } catch (IOException ioe) {
+      sizeBytes = 0;
+    }
+    metrics.record(RenderPhase.PARSE, FilenameUtils.getExtension(variablesFile.getPath().toString()), elapsedNanos, sizeBytes);
+    return variables;
+  }
+
+  private void writeShardManifest(RenderRun run, List<VariablesFile> renderedVariablesFiles, BuildCache buildCache) {
+    Shard shard = run.getOptions().getShard() != null ? run.getOptions().getShard() : new Shard(0, 1);
+    Set<String> savedFiles = run.getOutputFiles().stream()
+        .map(path -> FilenameUtils.normalize(path.toString(), true))
+        .collect(Collectors.toCollection(TreeSet::new));
+    if (buildCache != null) {
+      // files of up to date contexts are not saved again, but still belong to the shard
+      savedFiles.addAll(buildCache.getOutputs());
+    }
+    List<String> outputFiles = new ArrayList<>(savedFiles);
+    List<String> variablesFiles = renderedVariablesFiles.stream()
+        .map(Shard::getKey)
+        .collect(Collectors.toList());
+    try {
+      new ShardManifest(shard.getCount(), Collections.singleton(shard.getIndex()), variablesFiles, outputFiles)
+          .write(run.getOptions().getShardManifestPath());
+    } catch (IOException ioe) {
+      LOGGER.error("Exception occurred while writing shard manifest: {}", ioe.getMessage());
+      throw new RuntimeException(ioe);
+    }
+  }
+
+  private void renderSequentially(RenderRun run, List<VariablesFile> variablesFiles, int filesToBeSaved, BuildCache buildCache) {
+    // files are read lazily, so each one is parsed (at most a few files ahead by reader's pool), rendered and released
+    reader.streamVariables(variablesFiles, variablesFile -> Pair.of(variablesFile, readVariablesFile(run, variablesFile)))
+        .forEach(var -> {
+          run.checkCancelled();
+          renderVariables(run, var.getKey(), var.getValue(), filesToBeSaved, buildCache);
+        });
+  }
+
+  private void renderInParallel(RenderRun run, List<VariablesFile> variablesFiles, int filesToBeSaved, BuildCache buildCache) {
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(run.getOptions().getWorkersCount(), variablesFiles.size()));
+    List<Throwable> failures = new ArrayList<>();
+    try {
+      List<Pair<VariablesFile, Future<?>>> renderings = new ArrayList<>();
+      for (VariablesFile variablesFile : variablesFiles) {
+        renderings.add(Pair.of(variablesFile, executor.submit(RenderExecutors.withCallerContext(() -> {
+          run.checkCancelled();
+          renderVariablesFile(run, variablesFile, filesToBeSaved, buildCache);
+        }))));
+      }
+      for (Pair<VariablesFile, Future<?>> rendering : renderings) {
+        try {
+          rendering.getValue().get();
+        } catch (ExecutionException ee) {
+          if (ee.getCause() instanceof CancellationException) {
+            continue;
+          }
+          LOGGER.error("Rendering failed for variables file: {}", rendering.getKey(), ee.getCause());
+          failures.add(ee.getCause());
+        }
+      }
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new RenderingException("Rendering was interrupted!");
+    } finally {
+      executor.shutdownNow();
+    }
+
+    run.checkCancelled();
+    if (!failures.isEmpty()) {
+      RenderingException re = new RenderingException(
+          String.format("Rendering failed for %d of %d variables files!", failures.size(), variablesFiles.size()));
+      failures.forEach(re::addSuppressed);
+      throw re;
+    }
+  }
+
+  /**
+   * Streams records of variables files and renders every record with its own context into a subdirectory named after it.
+   * The number of records is not known in advance, so unlike files, a single record is not rendered into the output path itself.
+   * With more than one worker records are handed over to workers through a bounded window, so memory does not depend
+   * on the number of records either, apart from their names kept to detect duplicates, which would overwrite each other.
+   * Failures of records are collected and reported together once all records are rendered, with any number of workers.
+   */
+  private void renderRecords(RenderRun run, List<VariablesFile> variablesFiles, BuildCache buildCache) {
+    RenderOptions options = run.getOptions();
+    ExecutorService executor = options.getWorkersCount() > 1 ? Executors.newFixedThreadPool(options.getWorkersCount()) : null;
+    Semaphore recordsInProgress = new Semaphore(2 * options.getWorkersCount());
+    Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+    // records of a file may still be rendered by workers when the next file is read, so files are recorded once all are rendered
+    List<Pair<VariablesFile, RecordingOutputSink>> fileOutputSinks = new ArrayList<>();
+    Set<String> recordNames = new HashSet<>();
+    long recordsCount = 0;
+    try {
+      for (VariablesFile variablesFile : variablesFiles) {
+        OutputSink outputSink = run.getOutputSink();
+        if (buildCache != null) {
+          RecordingOutputSink fileOutputSink = new RecordingOutputSink(outputSink);
+          fileOutputSinks.add(Pair.of(variablesFile, fileOutputSink));
+          outputSink = fileOutputSink;
+        }
+        OutputSink recordOutputSink = outputSink;
+        String extension = FilenameUtils.getExtension(variablesFile.getPath().toString());
+        try (Stream<Pair<String, Map<String, Object>>> records =
+                 reader.streamRecords(variablesFile, options.getRecordsPath(), options.getRecordKey())) {
+          Iterator<Pair<String, Map<String, Object>>> iterator = records.iterator();
+          Pair<String, Map<String, Object>> record;
+          while ((record = run.measure(RenderPhase.PARSE, extension, () -> iterator.hasNext() ? iterator.next() : null)) != null) {
+            run.checkCancelled();
+            recordsCount++;
+            String outputPath;
+            try {
+              if (!recordNames.add(record.getKey())) {
+                throw new RenderingException("Record name is not unique, so its output directory would be overwritten: " + record.getKey());
+              }
+              outputPath = formRecordOutputPath(run.getOutputDirBasePath(), record.getKey());
+            } catch (RenderingException re) {
+              LOGGER.error(re.getMessage());
+              failures.add(re);
+              continue;
+            }
+            if (executor == null) {
+              renderRecord(run, record, outputPath, recordOutputSink, failures);
+              continue;
+            }
+            // the reading thread waits here while all workers are busy and a few records are already waiting for them
+            recordsInProgress.acquire();
+            Pair<String, Map<String, Object>> renderedRecord = record;
+            executor.execute(RenderExecutors.withCallerContext(() -> {
+              try {
+                renderRecord(run, renderedRecord, outputPath, recordOutputSink, failures);
+              } finally {
+                recordsInProgress.release();
+              }
+            }));
+          }
+        }
+      }
+      if (executor != null) {
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      }
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new RenderingException("Rendering was interrupted!");
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+    }
+
+    if (!failures.isEmpty()) {
+      RenderingException re = new RenderingException(
+          String.format("Rendering failed for %d of %d records!", failures.size(), recordsCount));
+      failures.forEach(re::addSuppressed);
+      throw re;
+    }
+    fileOutputSinks.forEach(fileOutputSink ->
+        buildCache.rendered(Shard.getKey(fileOutputSink.getKey()), fileOutputSink.getValue().getCommittedFiles()));
+    LOGGER.info("Rendered {} records of {} variables files.", recordsCount, variablesFiles.size());
+  }
+
+  private void renderRecord(RenderRun run, Pair<String, Map<String, Object>> record, String outputPath, OutputSink outputSink,
+                            Queue<Throwable> failures) {
+    try {
+      renderVariables(run, record.getValue(), outputPath, outputSink);
+    } catch (RuntimeException re) {
+      LOGGER.error("Rendering failed for record: {}", record.getKey(), re);
+      failures.add(re);
+    }
+  }
+
+  // record names come from variables, so they are not allowed to lead outputs out of the output directory
+  private static String formRecordOutputPath(String outputDirBasePath, String recordName) {
+    boolean isValid = !recordName.isEmpty() && !recordName.contains("/") && !recordName.contains("\\")
+        && !".".equals(recordName) && !"..".equals(recordName);
+    if (isValid) {
+      try {
+        Path basePath = Paths.get(outputDirBasePath).toAbsolutePath().normalize();
+        isValid = basePath.equals(basePath.resolve(recordName).normalize().getParent());
+      } catch (InvalidPathException ipe) {
+        isValid = false;
+      }
+    }
+    if (!isValid) {
+      throw new RenderingException("Record name cannot be used as the name of its output directory: " + recordName);
+    }
+    return String.join("/", outputDirBasePath, recordName);
+  }
+
+  private void renderVariablesFile(RenderRun run, VariablesFile variablesFile, int filesToBeSaved, BuildCache buildCache) {
+    if (run.getOptions().isRecords()) {
+      renderRecords(run, Collections.singletonList(variablesFile), buildCache);
+    } else {
+      renderVariables(run, variablesFile, readVariablesFile(run, variablesFile), filesToBeSaved, buildCache);
+    }
+  }
+
+  private void renderVariables(RenderRun run, VariablesFile variablesFile, Pair<String, Map<String, Object>> var, int filesToBeSaved,
+                               BuildCache buildCache) {
+    String outputPath = formOutputPath(filesToBeSaved, run.getOutputDirBasePath(), var.getKey());
+    renderContext(run, buildCache, Shard.getKey(variablesFile),
+        outputSink -> renderVariables(run, var.getValue(), outputPath, outputSink));
+  }
+
+  private void renderVariables(RenderRun run, Map<String, Object> variables, String outputPath, OutputSink outputSink) {
+    String templateName = run.getTemplate().getName();
+    Context velocityContext = run.measure(RenderPhase.CONTEXT, templateName,
+        () -> initializeAndGetVelocityContext(variables, outputPath, run, outputSink));
+    run.measure(RenderPhase.MERGE, templateName, () -> {
+      mergeTemplateAndVelocityContext(run.getTemplate(), velocityContext, outputSink);
+      return null;
+    });
+  }
+
+  private static ContextVariablesReader initializeAndGetReader(CommandLine cli, boolean isMemoizing) {
+    long lazyJsonMinSizeBytes = cli.hasOption("lazy-json")
+        ? Long.parseLong(cli.getOptionValue("lazy-json")) * 1024 * 1024
+        : -1;
+    int readersCount = Integer.parseInt(cli.getOptionValue("readers", "1"));
+    if (!cli.hasOption("variables-cache")) {
+      return new ContextVariablesReader(VariablesParsers.defaults(), null, isMemoizing, lazyJsonMinSizeBytes, readersCount);
+    }
+
+    long cacheSizeBytes = Long.parseLong(cli.getOptionValue("variables-cache-size", DEFAULT_VARIABLES_CACHE_SIZE_MB)) * 1024 * 1024;
+    VariablesSnapshotCache snapshotCache = new VariablesSnapshotCache(Paths.get(cli.getOptionValue("variables-cache")), cacheSizeBytes);
+    if (cli.hasOption("clear-variables-cache")) {
+      try {
+        snapshotCache.clear();
+      } catch (IOException ioe) {
+        LOGGER.error("Exception occurred while clearing variables cache: {}", ioe.getMessage());
+        throw new RuntimeException(ioe);
+      }
+    }
+    return new ContextVariablesReader(VariablesParsers.defaults(), snapshotCache, isMemoizing, lazyJsonMinSizeBytes, readersCount);
+  }
+
+  private static TemplatesGenerator initializeAndGetGenerator(CommandLine cli, boolean isMemoizing) {
+    Properties engineProperties = new Properties();
+    if (cli.hasOption("templates-check-interval")) {
+      engineProperties.setProperty(TemplatesCache.CHECK_INTERVAL_PROPERTY, cli.getOptionValue("templates-check-interval"));
+    }
+    if (cli.hasOption("templates-cache-size")) {
+      engineProperties.setProperty(RuntimeConstants.RESOURCE_MANAGER_DEFAULTCACHE_SIZE, cli.getOptionValue("templates-cache-size"));
+    }
+    TemplatesGenerator tg = new TemplatesGenerator(initializeAndGetReader(cli, isMemoizing), engineProperties);
+    if (cli.hasOption("prewarm")) {
+      tg.prewarm(cli.getOptionValue("prewarm"), Runtime.getRuntime().availableProcessors());
+    }
+    return tg;
+  }
+
+  private static void runDaemon(CommandLine cli) {
+    TemplatesGenerator tg = initializeAndGetGenerator(cli, false);
+
+    int port = Integer.parseInt(cli.getOptionValue("daemon-port", DEFAULT_DAEMON_PORT));
+    Duration idleTimeout = Duration.ofSeconds(Long.parseLong(cli.getOptionValue("daemon-idle-timeout", DEFAULT_DAEMON_IDLE_TIMEOUT_SECONDS)));
+    try (RenderDaemon daemon = new RenderDaemon(tg, port, idleTimeout)) {
+      daemon.serve();
+    } catch (IOException ioe) {
+      LOGGER.error("Exception occurred while running render daemon: {}", ioe.getMessage());
+      throw new RuntimeException(ioe);
+    }
+  }
+
+  private static void renderUsingDaemon(String[] args, CommandLine cli) {
+    int port = Integer.parseInt(cli.getOptionValue("daemon-port", DEFAULT_DAEMON_PORT));
+    String[] forwardedArgs = Arrays.stream(args)
+        .filter(arg -> !"--use-daemon".equals(arg))
+        .toArray(String[]::new);
+    OptionalInt exitStatus;
+    try {
+      exitStatus = new RenderDaemonClient(port).send(forwardedArgs, Paths.get("").toAbsolutePath(), System.out);
+    } catch (IOException ioe) {
+      LOGGER.error("Exception occurred while communicating with render daemon: {}", ioe.getMessage());
+      throw new RuntimeException(ioe);
+    }
+
+    if (!exitStatus.isPresent()) {
+      LOGGER.warn("Render daemon is not reachable on port {}, rendering in current process.", port);
+      render(initializeAndGetGenerator(cli, false), cli);
+    } else if (exitStatus.getAsInt() != 0) {
+      throw new RenderingException("Render daemon failed to render with exit status " + exitStatus.getAsInt());
+    }
+  }
+
+  private static OutputSink initializeAndGetArchiveOutputSink(Path archivePath, String outputDirBasePath) {
+    try {
+      return new ArchiveOutputSink(archivePath, Paths.get(FilenameUtils.normalize(outputDirBasePath)));
+    } catch (IOException ioe) {
+      LOGGER.error("Exception occurred while creating archive: {}", ioe.getMessage());
+      throw new RuntimeException(ioe);
+    }
+  }
+
+  private VelocityEngine initializeAndGetVelocityEngine(Properties engineProperties) {
     VelocityEngine engine = new VelocityEngine();
-    engine.setProperty(RuntimeConstants.CUSTOM_DIRECTIVES, SaveFileDirective.class.getName());
+    // built-in directives are replaced by ones recording their rendering when a context is profiled
+    engine.setProperty(RuntimeConstants.CUSTOM_DIRECTIVES, Stream.of(SaveFileDirective.class, ProfilingForeachDirective.class,
+            ProfilingParseDirective.class, ProfilingIncludeDirective.class, ProfilingEvaluateDirective.class)
+        .map(Class::getName)
+        .collect(Collectors.joining(",")));
+    // keys and indexes of parsed variables are resolved directly instead of by reflective introspection
+    engine.setProperty(RuntimeConstants.UBERSPECT_CLASSNAME, VariablesUberspector.class.getName());
     engine.setProperty(RuntimeConstants.RESOURCE_LOADERS, RESOURCE_LOADERS_NAMES);
     engine.setProperty(RuntimeConstants.FILE_RESOURCE_LOADER_PATH, "");
     engine.setProperty(RuntimeConstants.EVENTHANDLER_INCLUDE, IncludeRelativePath.class.getName());
     engine.setProperty(FILE_RESOURCE_LOADER, FileResourceLoader.class.getName());
     engine.setProperty(CLASSPATH_RESOURCE_LOADER, ClasspathResourceLoader.class.getName());
+    // parsed templates are kept by TemplatesCache, which also decides when to check them for modifications
+    engine.setProperty(RuntimeConstants.RESOURCE_MANAGER_CACHE_CLASS, TemplatesCache.class.getName());
+    // unbounded unless set by engine properties, as Velocity's default of 89 templates would silently evict larger template sets
+    engine.setProperty(RuntimeConstants.RESOURCE_MANAGER_DEFAULTCACHE_SIZE, 0);
+    engine.setProperty(FILE_RESOURCE_LOADER_CACHE, true);
+    engine.setProperty(FILE_RESOURCE_LOADER_CHECK_INTERVAL, 0);
+    engine.setProperty(CLASSPATH_RESOURCE_LOADER_CACHE, true);
+    engineProperties.forEach((key, value) -> engine.setProperty(key.toString(), value));
     engine.init();
 
     return engine;
   }
 
-  private Context initializeAndGetToolContext() {
+  private ToolManager initializeAndGetToolManager() {
     ToolManager toolManager = new ToolManager(false, true);
     toolManager.configure(TOOLS_CONFIG_FILE);
     toolManager.setVelocityEngine(engine);
 
-    return toolManager.createContext();
+    return toolManager;
   }
 
-  private Context initializeAndGetVelocityContext(Map<String, Object> variables, String outputDirBasePath) {
-    Context velocityContext = new VelocityContext(variables, toolContext);
+  private Context initializeAndGetVelocityContext(Map<String, Object> variables, String outputDirBasePath, RenderRun run,
+                                                  OutputSink outputSink) {
+    // tool context lazily instantiates and caches request-scoped tools, so every velocity context gets its own one
+    TemplateProfiler profiler = run.getOptions().getProfiler();
+    Context velocityContext = profiler == null
+        ? new VelocityContext(variables, toolManager.createContext())
+        : new ProfilingVelocityContext(variables, toolManager.createContext(), profiler);
     velocityContext.put(OUTPUT_DIR_BASE_PATH_REFERENCE_NAME, outputDirBasePath);
+    velocityContext.put(OutputSink.CONTEXT_KEY, outputSink);
+    if (run.getMetrics() != null) {
+      velocityContext.put(RenderMetrics.CONTEXT_KEY, run.getMetrics());
+    }
 
     return velocityContext;
   }
 
-  private void mergeTemplateAndVelocityContext(Template template, Context velocityContext) {
-    try (Writer writer = new StringWriter()) {
+  private void mergeTemplateAndVelocityContext(Template template, Context velocityContext, OutputSink outputSink) {
+    try (Writer writer = outputSink.openMainWriter()) {
       template.merge(velocityContext, writer);
     } catch (IOException ioe) {
       LOGGER.error("Exception occurred while merging template and context: {}", ioe.getMessage());
@@ -134,7 +1065,8 @@ public class TemplatesGenerator {
     }
   }
 
-  private List<String> preprocessVariablesPaths(String variablesPaths) {
+  // package-private for TemplatesWatcher
+  static List<String> preprocessVariablesPaths(String variablesPaths) {
     return Arrays.stream(variablesPaths.split(VARIABLES_FILES_SEPARATOR))
         .map(String::trim)
         .map(FilenameUtils::normalize)
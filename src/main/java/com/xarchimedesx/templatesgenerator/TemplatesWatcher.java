@@ -0,0 +1,209 @@
+package com.xarchimedesx.templatesgenerator;
+
+import com.xarchimedesx.templatesgenerator.reader.VariablesFile;
+import com.xarchimedesx.templatesgenerator.shard.Shard;
+import org.apache.velocity.shaded.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the {@link TemplatesGenerator} with its warm Velocity engine running and re-renders outputs on changes of the inputs.
+ * A change of the main template or any template it includes re-renders every output.
+ * A change of a single variables file in non-combined mode re-renders only the output of that file.
+ * Appearance or removal of variables files, as well as any change in combined mode, re-renders every output.
+ * With sharding only the variables files of the shard are re-rendered.
+ */
+class TemplatesWatcher implements Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TemplatesWatcher.class);
+  // editors usually produce several events per save, so they are collected for a while before re-rendering
+  private static final long EVENTS_DEBOUNCE_MILLIS = 200;
+
+  private final TemplatesGenerator generator;
+  private final String templatePath;
+  private final String variablesPaths;
+  private final String outputDirBasePath;
+  private final RenderOptions options;
+  private final WatchService watchService;
+  private final Set<Path> watchedDirs = new HashSet<>();
+  private Set<Path> templateDependencies = Collections.emptySet();
+  private Map<Path, VariablesFile> variablesFiles = Collections.emptyMap();
+
+  TemplatesWatcher(TemplatesGenerator generator, String templatePath, String variablesPaths, String outputDirBasePath,
+                   RenderOptions options) throws IOException {
+    this.generator = generator;
+    this.templatePath = FilenameUtils.normalize(templatePath);
+    this.variablesPaths = variablesPaths;
+    this.outputDirBasePath = FilenameUtils.normalize(outputDirBasePath);
+    this.options = options;
+    this.watchService = FileSystems.getDefault().newWatchService();
+  }
+
+  /**
+   * Renders all outputs and then blocks, re-rendering affected outputs on every change, until the watcher is closed.
+   */
+  void watch() throws IOException, InterruptedException {
+    renderAll();
+    LOGGER.info("Watching for changes of {} templates and {} variables files...", templateDependencies.size(), variablesFiles.size());
+
+    try {
+      while (true) {
+        Map<Path, WatchEvent.Kind<?>> changes = new LinkedHashMap<>();
+        WatchKey key = watchService.take();
+        do {
+          collectChanges(key, changes);
+          key = watchService.poll(EVENTS_DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+        } while (key != null);
+        processChanges(changes);
+      }
+    } catch (ClosedWatchServiceException cwse) {
+      LOGGER.info("Watching for changes was stopped.");
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    watchService.close();
+  }
+
+  private void collectChanges(WatchKey key, Map<Path, WatchEvent.Kind<?>> changes) {
+    Path dir = (Path) key.watchable();
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+        // some events were lost, so the directory itself is treated as changed
+        changes.put(dir, StandardWatchEventKinds.OVERFLOW);
+      } else {
+        changes.merge(dir.resolve((Path) event.context()).toAbsolutePath().normalize(), event.kind(),
+            (previous, current) -> previous == StandardWatchEventKinds.ENTRY_MODIFY ? current : previous);
+      }
+    }
+    key.reset();
+  }
+
+  // package-private for tests
+  void processChanges(Map<Path, WatchEvent.Kind<?>> changes) throws IOException {
+    if (changes.keySet().stream().anyMatch(templateDependencies::contains)) {
+      LOGGER.info("Template changed, re-rendering all outputs.");
+      renderAll();
+      return;
+    }
+
+    // a custom sink, e.g. an archive, is recreated on every run, so it has to receive all outputs each time
+    boolean isFullRenderingRequired = options.isCombined() || options.getOutputSinkFactory() != null;
+    if (isVariablesFilesSetChanged(changes) || isFullRenderingRequired && changes.keySet().stream().anyMatch(variablesFiles::containsKey)) {
+      LOGGER.info("Variables changed, re-rendering all outputs.");
+      renderAll();
+      return;
+    }
+
+    Shard shard = options.getShard();
+    Set<VariablesFile> changedVariablesFiles = changes.keySet().stream()
+        .map(variablesFiles::get)
+        .filter(variablesFile -> variablesFile != null && (shard == null || shard.isAssigned(variablesFile)))
+        .collect(Collectors.toCollection(LinkedHashSet::new));
+    if (!changedVariablesFiles.isEmpty()) {
+      renderChanged(changedVariablesFiles);
+    }
+  }
+
+  private boolean isVariablesFilesSetChanged(Map<Path, WatchEvent.Kind<?>> changes) {
+    if (changes.containsValue(StandardWatchEventKinds.OVERFLOW)) {
+      return true;
+    }
+    boolean isAnyFileCreatedOrDeleted = changes.containsValue(StandardWatchEventKinds.ENTRY_CREATE)
+        || changes.containsValue(StandardWatchEventKinds.ENTRY_DELETE);
+    return isAnyFileCreatedOrDeleted && !discoverVariablesFiles().keySet().equals(variablesFiles.keySet());
+  }
+
+  // package-private for tests
+  void renderAll() throws IOException {
+    templateDependencies = TemplateDependencies.resolve(templatePath);
+    variablesFiles = discoverVariablesFiles();
+    registerWatchedDirs();
+
+    try {
+      generator.render(templatePath, variablesPaths, outputDirBasePath, options);
+    } catch (RuntimeException re) {
+      LOGGER.error("Rendering failed, waiting for the next change.", re);
+    }
+  }
+
+  private void renderChanged(Set<VariablesFile> changedVariablesFiles) {
+    RenderRun run;
+    try {
+      run = generator.startRun(templatePath, outputDirBasePath, options);
+    } catch (RuntimeException re) {
+      LOGGER.error("Rendering failed, waiting for the next change.", re);
+      return;
+    }
+
+    try {
+      for (VariablesFile variablesFile : changedVariablesFiles) {
+        LOGGER.info("Variables file changed, re-rendering: {}", variablesFile);
+        generator.renderVariablesFile(run, variablesFile, variablesFiles.size());
+      }
+      run.complete();
+    } catch (RuntimeException re) {
+      run.completeAfterFailure(re);
+      LOGGER.error("Rendering failed, waiting for the next change.", re);
+    }
+  }
+
+  private Map<Path, VariablesFile> discoverVariablesFiles() {
+    try {
+      return generator.discoverVariablesFiles(TemplatesGenerator.preprocessVariablesPaths(variablesPaths), options).stream()
+          .filter(variablesFile -> variablesFile.getScheme().equals("file"))
+          .collect(Collectors.toMap(variablesFile -> variablesFile.getPath().toAbsolutePath().normalize(), variablesFile -> variablesFile,
+              (first, second) -> first, LinkedHashMap::new));
+    } catch (RuntimeException re) {
+      LOGGER.error("Cannot discover variables files, waiting for the next change.", re);
+      return Collections.emptyMap();
+    }
+  }
+
+  private void registerWatchedDirs() throws IOException {
+    for (Path template : templateDependencies) {
+      registerWatchedDir(template.getParent());
+    }
+    for (String variablesPath : TemplatesGenerator.preprocessVariablesPaths(variablesPaths)) {
+      Path path = Paths.get(variablesPath).toAbsolutePath().normalize();
+      if (Files.isDirectory(path)) {
+        try (Stream<Path> dirs = Files.walk(path)) {
+          for (Path dir : dirs.filter(Files::isDirectory).collect(Collectors.toList())) {
+            registerWatchedDir(dir);
+          }
+        }
+      } else if (Files.exists(path)) {
+        registerWatchedDir(path.getParent());
+      }
+    }
+  }
+
+  private void registerWatchedDir(Path dir) throws IOException {
+    if (watchedDirs.add(dir)) {
+      dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+          StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+  }
+}
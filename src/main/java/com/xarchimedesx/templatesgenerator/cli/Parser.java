@@ -3,30 +3,107 @@ package com.xarchimedesx.templatesgenerator.cli;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.MissingOptionException;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
 public class Parser {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(Parser.class);
+  private static final List<String> RENDER_REQUIRED_OPTIONS = Arrays.asList("template", "variables", "output");
 
   public CommandLine parse(String... args) {
 
     Options options = new Options();
-    options.addRequiredOption("t", "template", true, "Velocity template path.");
-    options.addRequiredOption("v", "variables", true, "Comma-separated list of paths to files/directories with variables. " +
+    options.addOption("t", "template", true, "Velocity template path.");
+    options.addOption("v", "variables", true, "Comma-separated list of paths to files/directories with variables. " +
         ".json, .yaml/.yml extensions are supported.");
-    options.addRequiredOption("o", "output", true, "Output path.");
+    options.addOption("o", "output", true, "Output path.");
     options.addOption("c", "combine", false, "Whether to combine multiple variables files' content inside single context");
+    options.addOption(null, "merge-strategy", true, "How values of the same keys in different variables files are merged in combined mode: " +
+        "nested, deep, concat, last-wins or first-wins. nested if not set.");
+    options.addOption(null, "records", false, "Whether to render every record of .ndjson/.jsonl files or of arrays in .json and .yaml/.yml files " +
+        "with its own context, instead of every variables file.");
+    options.addOption(null, "records-path", true, "Dot-separated keys leading to the array of records in .json and .yaml/.yml files. " +
+        "The root element if not set. Implies --records.");
+    options.addOption(null, "record-key", true, "Key of records, which value names the output subdirectory of the record. " +
+        "File name and record number if not set. Implies --records.");
+    options.addOption("w", "workers", true, "Number of worker threads used to render variables files in non-combined mode.");
+    options.addOption(null, "readers", true, "Number of threads walking variables directories and parsing variables files. 1 if not set.");
+    options.addOption(null, "variables-cache", true, "Directory where binary snapshots of parsed variables files are cached.");
+    options.addOption(null, "variables-cache-size", true, "Maximal size of variables snapshots cache in megabytes. 512 if not set.");
+    options.addOption(null, "lazy-json", true, "Minimal size in megabytes of .json variables files, which are memory-mapped and read lazily.");
+    options.addOption(null, "clear-variables-cache", false, "Whether to clear variables snapshots cache before rendering.");
+    options.addOption(null, "skip-unchanged", false, "Whether to leave existing files untouched when their content equals the rendered one.");
+    options.addOption(null, "write-behind", true, "Capacity of the queue of rendered files waiting to be written by background writers.");
+    options.addOption(null, "write-behind-writers", true, "Number of background writer threads. 1 if not set.");
+    options.addOption(null, "fsync", false, "Whether to sync all saved files to the storage device at the end of rendering.");
+    options.addOption(null, "archive", true, "Path of .zip or .tar.gz archive to save rendered files to, instead of separate files.");
+    options.addOption(null, "discard", false, "Whether to discard rendered files instead of saving them.");
+    options.addOption(null, "watch", false, "Whether to keep running and re-render outputs on changes of templates or variables files.");
+    options.addOption(null, "daemon", false, "Whether to start render daemon keeping initialized engine resident.");
+    options.addOption(null, "daemon-port", true, "Local port of render daemon. 7654 if not set.");
+    options.addOption(null, "daemon-idle-timeout", true, "Number of seconds render daemon waits for requests before shutting down. 1800 if not set.");
+    options.addOption(null, "use-daemon", false, "Whether to forward rendering to running render daemon.");
+    options.addOption(null, "jobs", true, "Path of .json or .yaml/.yml manifest with a list of renderings to be run.");
+    options.addOption(null, "jobs-parallelism", true, "Number of jobs of the manifest rendered concurrently. 1 if not set.");
+    options.addOption(null, "templates-check-interval", true, "Interval of checking cached templates for modifications, in milliseconds. " +
+        "0 if not set, negative value disables checks.");
+    options.addOption(null, "templates-cache-size", true, "Maximal number of cached templates, least recently used ones are evicted above it. " +
+        "0 if not set, which caches all templates.");
+    options.addOption(null, "prewarm", true, "Directory with .vm templates to be parsed in parallel before rendering.");
+    options.addOption(null, "metrics", false, "Whether to collect counts, bytes and latencies of rendering phases and log their summary " +
+        "instead of every saved file.");
+    options.addOption(null, "metrics-report", true, "Path of metrics report, in JSON format for .json files and in Prometheus text format otherwise.");
+    options.addOption(null, "shard", true, "Zero-based index and count of shards in <index>/<count> form, e.g. 0/4. " +
+        "Only variables files assigned to the shard are rendered.");
+    options.addOption(null, "shard-manifest", true, "Path of the manifest of rendered variables files and saved files, or of the merged manifest.");
+    options.addOption(null, "merge-shard-manifests", true, "Comma-separated list of manifests of all shards to be merged and checked for collisions.");
+    options.addOption(null, "build-cache", true, "Path of the cache of inputs and outputs of rendered contexts. " +
+        "Contexts whose inputs did not change since the previous run are not rendered again.");
+    options.addOption(null, "delete-stale-outputs", false, "Whether to delete files saved by the previous run with the same build cache, " +
+        "but not by this one.");
+    options.addOption(null, "profile", true, "Path of collapsed stacks file with time spent in templates, macros and directives.");
 
     try {
-      return new DefaultParser().parse(options, args);
+      CommandLine cli = new DefaultParser().parse(options, args);
+      validateRequiredOptions(cli);
+      return cli;
     } catch (ParseException pe) {
       new HelpFormatter().printHelp("java -jar templates-generator.jar", options, true);
       LOGGER.error("An error occurred while parsing command-line arguments: {}", pe.getMessage());
       throw new RuntimeException(pe);
     }
   }
+
+  // template, variables and output are required by everything but starting the daemon, running jobs manifest and merging shards
+  private void validateRequiredOptions(CommandLine cli) throws ParseException {
+    if (cli.hasOption("jobs") && cli.hasOption("archive")) {
+      throw new ParseException("Option --archive cannot be used with --jobs, as all jobs would write the same archive.");
+    }
+    if (cli.hasOption("jobs") && cli.hasOption("shard-manifest")) {
+      throw new ParseException("Option --shard-manifest cannot be used with --jobs, as all jobs would write the same manifest.");
+    }
+    if (cli.hasOption("jobs") && cli.hasOption("build-cache")) {
+      throw new ParseException("Option --build-cache cannot be used with --jobs, as all jobs would write the same build cache.");
+    }
+    if (cli.hasOption("delete-stale-outputs") && !cli.hasOption("build-cache")) {
+      throw new ParseException("Option --delete-stale-outputs requires --build-cache, which records files saved by the previous run.");
+    }
+    if (cli.hasOption("daemon") || cli.hasOption("jobs") || cli.hasOption("merge-shard-manifests")) {
+      return;
+    }
+    List<String> missingOptions = RENDER_REQUIRED_OPTIONS.stream()
+        .filter(option -> !cli.hasOption(option))
+        .collect(Collectors.toList());
+    if (!missingOptions.isEmpty()) {
+      throw new MissingOptionException(missingOptions);
+    }
+  }
 }
@@ -0,0 +1,29 @@
+package com.xarchimedesx.templatesgenerator.directive;
+
+import com.xarchimedesx.templatesgenerator.profile.ProfilingVelocityContext;
+import org.apache.velocity.context.InternalContextAdapter;
+import org.apache.velocity.runtime.directive.Include;
+import org.apache.velocity.runtime.parser.node.Node;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Built-in #include directive, which records its rendering when the context is profiled.
+ */
+public class ProfilingIncludeDirective extends Include {
+
+  @Override
+  public boolean render(InternalContextAdapter context, Writer writer, Node node) throws IOException {
+    ProfilingVelocityContext profilingContext = ProfilingVelocityContext.of(context);
+    if (profilingContext == null) {
+      return super.render(context, writer, node);
+    }
+    profilingContext.enter(this);
+    try {
+      return super.render(context, writer, node);
+    } finally {
+      profilingContext.exit();
+    }
+  }
+}
@@ -1,23 +1,27 @@
 package com.xarchimedesx.templatesgenerator.directive;
 
 import com.xarchimedesx.templatesgenerator.exception.RenderingException;
+import com.xarchimedesx.templatesgenerator.metrics.RenderMetrics;
+import com.xarchimedesx.templatesgenerator.metrics.RenderPhase;
+import com.xarchimedesx.templatesgenerator.metrics.Utf8CountingWriter;
+import com.xarchimedesx.templatesgenerator.output.FileSystemOutputSink;
+import com.xarchimedesx.templatesgenerator.output.OutputFile;
+import com.xarchimedesx.templatesgenerator.output.OutputSink;
+import com.xarchimedesx.templatesgenerator.profile.ProfilingVelocityContext;
 import org.apache.velocity.context.InternalContextAdapter;
 import org.apache.velocity.runtime.directive.Directive;
 import org.apache.velocity.runtime.parser.node.ASTBlock;
 import org.apache.velocity.runtime.parser.node.Node;
 
 import java.io.IOException;
-import java.io.StringWriter;
 import java.io.Writer;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 
 public class SaveFileDirective extends Directive {
 
   private static final String DIRECTIVE_NAME = "saveFile";
+  private static final OutputSink DEFAULT_OUTPUT_SINK = new FileSystemOutputSink(false);
 
   @Override
   public String getName() {
@@ -31,32 +35,53 @@ public class SaveFileDirective extends Directive {
 
   @Override
   public boolean render(InternalContextAdapter context, Writer writer, Node node) {
-    try (StringWriter blockContent = new StringWriter()) {
-      /*
-       Checking whether the node object has two children and the second one is a directive block content.
-       Then the first child is the path for file to be saved to.
-       The second one (block content) is rendered to actual file content.
-      */
-      if (node.jjtGetNumChildren() == 2 && node.jjtGetChild(1) instanceof ASTBlock) {
-        Path outputFilePath = Paths.get(String.valueOf(node.jjtGetChild(0).value(context)));
-        node.jjtGetChild(1).render(context, blockContent);
-        saveFileContent(blockContent.toString(), outputFilePath);
+    /*
+     Checking whether the node object has two children and the second one is a directive block content.
+     Then the first child is the path for file to be saved to.
+     The second one (block content) is rendered directly into the file.
+    */
+    if (node.jjtGetNumChildren() != 2 || !(node.jjtGetChild(1) instanceof ASTBlock)) {
+      throw new RenderingException("The #saveFile directive requires one argument - outputFilePath!");
+    }
+
+    ProfilingVelocityContext profilingContext = ProfilingVelocityContext.of(context);
+    if (profilingContext == null) {
+      return save(context, node);
+    }
+    profilingContext.enter(this);
+    try {
+      return save(context, node);
+    } finally {
+      profilingContext.exit();
+    }
+  }
+
+  private boolean save(InternalContextAdapter context, Node node) {
+    Path outputFilePath = Paths.get(String.valueOf(node.jjtGetChild(0).value(context)));
+    OutputSink outputSink = getOutputSink(context);
+    Object metrics = context.get(RenderMetrics.CONTEXT_KEY);
+    try (OutputFile outputFile = outputSink.open(outputFilePath)) {
+      if (!(metrics instanceof RenderMetrics)) {
+        node.jjtGetChild(1).render(context, outputFile.getWriter());
+        outputFile.commit();
         return true;
-      } else {
-        throw new RenderingException("The #saveFile directive requires one argument - outputFilePath!");
       }
+      Utf8CountingWriter countingWriter = new Utf8CountingWriter(outputFile.getWriter());
+      node.jjtGetChild(1).render(context, countingWriter);
+      long startNanos = System.nanoTime();
+      outputFile.commit();
+      ((RenderMetrics) metrics).record(RenderPhase.WRITE, outputSink.getClass().getSimpleName(),
+          System.nanoTime() - startNanos, countingWriter.getBytesCount());
+      return true;
     } catch (IOException ioe) {
       log.error("A problem occurred while saving rendered file!", ioe);
       return false;
     }
   }
 
-  private void saveFileContent(String fileContent, Path outputFilePath) throws IOException {
-    log.info("Saving rendered file: {}", outputFilePath);
-    if (!outputFilePath.toFile().exists()) {
-      Files.createDirectories(outputFilePath);
-    }
-    Files.deleteIfExists(outputFilePath);
-    Files.write(outputFilePath, fileContent.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE);
+  private OutputSink getOutputSink(InternalContextAdapter context) {
+    Object outputSink = context.get(OutputSink.CONTEXT_KEY);
+    // the directive may also be registered in an engine which is not driven by TemplatesGenerator
+    return outputSink instanceof OutputSink ? (OutputSink) outputSink : DEFAULT_OUTPUT_SINK;
   }
 }
@@ -0,0 +1,106 @@
+package com.xarchimedesx.templatesgenerator.introspection;
+
+import org.apache.velocity.util.introspection.VelMethod;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Methods of maps and lists invoked by {@link VariablesUberspector} directly instead of reflectively.
+ * The reflected {@link Method} is only exposed to Velocity for return type checks and event handlers.
+ */
+enum DirectMethod implements VelMethod {
+
+  MAP_GET(Map.class, "get", Object.class) {
+    @Override
+    Object call(Object o, Object[] params) {
+      return ((Map<?, ?>) o).get(params[0]);
+    }
+  },
+  MAP_CONTAINS_KEY(Map.class, "containsKey", Object.class) {
+    @Override
+    Object call(Object o, Object[] params) {
+      return ((Map<?, ?>) o).containsKey(params[0]);
+    }
+  },
+  MAP_SIZE(Map.class, "size") {
+    @Override
+    Object call(Object o, Object[] params) {
+      return ((Map<?, ?>) o).size();
+    }
+  },
+  MAP_IS_EMPTY(Map.class, "isEmpty") {
+    @Override
+    Object call(Object o, Object[] params) {
+      return ((Map<?, ?>) o).isEmpty();
+    }
+  },
+  LIST_GET(List.class, "get", int.class) {
+    @Override
+    Object call(Object o, Object[] params) {
+      return ((List<?>) o).get((Integer) params[0]);
+    }
+  },
+  LIST_CONTAINS(List.class, "contains", Object.class) {
+    @Override
+    Object call(Object o, Object[] params) {
+      return ((List<?>) o).contains(params[0]);
+    }
+  },
+  LIST_SIZE(List.class, "size") {
+    @Override
+    Object call(Object o, Object[] params) {
+      return ((List<?>) o).size();
+    }
+  },
+  LIST_IS_EMPTY(List.class, "isEmpty") {
+    @Override
+    Object call(Object o, Object[] params) {
+      return ((List<?>) o).isEmpty();
+    }
+  };
+
+  private final Method method;
+
+  DirectMethod(Class<?> declaringClass, String name, Class<?>... parameterTypes) {
+    try {
+      this.method = declaringClass.getMethod(name, parameterTypes);
+    } catch (NoSuchMethodException nsme) {
+      throw new IllegalStateException(nsme);
+    }
+  }
+
+  abstract Object call(Object o, Object[] params);
+
+  @Override
+  public Object invoke(Object o, Object[] params) throws InvocationTargetException {
+    try {
+      return call(o, params);
+    } catch (RuntimeException re) {
+      // wrapped just like by a reflective call, so Velocity reports it the same way, e.g. an index out of bounds
+      throw new InvocationTargetException(re);
+    }
+  }
+
+  @Override
+  public boolean isCacheable() {
+    return true;
+  }
+
+  @Override
+  public String getMethodName() {
+    return method.getName();
+  }
+
+  @Override
+  public Method getMethod() {
+    return method;
+  }
+
+  @Override
+  public Class<?> getReturnType() {
+    return method.getReturnType();
+  }
+}
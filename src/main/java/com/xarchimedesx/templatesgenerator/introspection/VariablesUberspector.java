@@ -0,0 +1,107 @@
+package com.xarchimedesx.templatesgenerator.introspection;
+
+import com.xarchimedesx.templatesgenerator.reader.LazyJsonList;
+import com.xarchimedesx.templatesgenerator.reader.LazyJsonMap;
+import com.xarchimedesx.templatesgenerator.reader.LazyJsonObject;
+import org.apache.velocity.util.introspection.Info;
+import org.apache.velocity.util.introspection.UberspectImpl;
+import org.apache.velocity.util.introspection.VelMethod;
+import org.apache.velocity.util.introspection.VelPropertyGet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Uberspector resolving references to the content of variables files without reflection.
+ * <p>
+ * Variables files are parsed into trees of maps and lists, so {@code $user.personal.name} is a chain of key lookups
+ * and {@code $users.get(0)} is an index lookup. Velocity's default introspection looks for getters and other lookup strategies
+ * for every reference node in every new context, and then invokes the chosen methods reflectively. For maps and lists
+ * produced by the parsers, keys are resolved by {@link MapKeyGetter} and a few common methods by {@link DirectMethod},
+ * which call them directly. Both are cached by Velocity per reference node like any other executor.
+ * <p>
+ * Everything else, e.g. tools, custom maps or methods with converted arguments, is resolved by {@link UberspectImpl}.
+ */
+public class VariablesUberspector extends UberspectImpl {
+
+  // exact classes only, as subclasses of maps and lists may expose getters, which must keep precedence over keys
+  private static final Set<Class<?>> MAP_CLASSES = new HashSet<>(Arrays.asList(LinkedHashMap.class, HashMap.class, LazyJsonMap.class,
+      LazyJsonObject.class));
+  private static final Set<Class<?>> LIST_CLASSES = new HashSet<>(Arrays.asList(ArrayList.class, Arrays.asList().getClass(),
+      LazyJsonList.class));
+  // the only getter of plain maps, which is found before keys by the default introspection
+  private static final String CLASS_PROPERTY = "class";
+
+  @Override
+  public VelPropertyGet getPropertyGet(Object obj, String identifier, Info i) {
+    if (obj != null && MAP_CLASSES.contains(obj.getClass()) && !CLASS_PROPERTY.equals(identifier)) {
+      return new MapKeyGetter(identifier);
+    }
+    return super.getPropertyGet(obj, identifier, i);
+  }
+
+  @Override
+  public VelMethod getMethod(Object obj, String methodName, Object[] args, Info i) {
+    DirectMethod method = obj == null ? null : findDirectMethod(obj.getClass(), methodName, args);
+    return method != null ? method : super.getMethod(obj, methodName, args, i);
+  }
+
+  private static DirectMethod findDirectMethod(Class<?> objClass, String methodName, Object[] args) {
+    boolean isMap = MAP_CLASSES.contains(objClass);
+    boolean isList = LIST_CLASSES.contains(objClass);
+    if (!isMap && !isList) {
+      return null;
+    }
+    int argsCount = args == null ? 0 : args.length;
+    switch (methodName) {
+      case "size":
+        return argsCount == 0 ? (isMap ? DirectMethod.MAP_SIZE : DirectMethod.LIST_SIZE) : null;
+      case "isEmpty":
+        return argsCount == 0 ? (isMap ? DirectMethod.MAP_IS_EMPTY : DirectMethod.LIST_IS_EMPTY) : null;
+      case "get":
+        if (argsCount != 1) {
+          return null;
+        }
+        // other index types are converted to int by the default introspection
+        return isMap ? DirectMethod.MAP_GET : args[0] instanceof Integer ? DirectMethod.LIST_GET : null;
+      case "containsKey":
+        return isMap && argsCount == 1 ? DirectMethod.MAP_CONTAINS_KEY : null;
+      case "contains":
+        return isList && argsCount == 1 ? DirectMethod.LIST_CONTAINS : null;
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Getter of a single key of a map, which is stateless apart from the key.
+   */
+  static class MapKeyGetter implements VelPropertyGet {
+
+    private final String key;
+
+    MapKeyGetter(String key) {
+      this.key = key;
+    }
+
+    @Override
+    public Object invoke(Object o) {
+      return ((Map<?, ?>) o).get(key);
+    }
+
+    @Override
+    public boolean isCacheable() {
+      return true;
+    }
+
+    @Override
+    public String getMethodName() {
+      return "get";
+    }
+  }
+}
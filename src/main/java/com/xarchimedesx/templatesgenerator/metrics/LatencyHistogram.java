@@ -0,0 +1,65 @@
+package com.xarchimedesx.templatesgenerator.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of latencies with exponential buckets: 1µs, 2µs, 4µs, ... up to about 17 seconds, and an overflow one.
+ */
+class LatencyHistogram {
+
+  static final int BOUNDED_BUCKETS_COUNT = 25;
+  private final AtomicLongArray bucketCounts = new AtomicLongArray(BOUNDED_BUCKETS_COUNT + 1);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sumNanos = new LongAdder();
+  private final AtomicLong maxNanos = new AtomicLong();
+
+  void record(long nanos) {
+    long micros = Math.max(1, TimeUnit.NANOSECONDS.toMicros(nanos + 999));
+    int bucket = Math.min(BOUNDED_BUCKETS_COUNT, 64 - Long.numberOfLeadingZeros(micros - 1));
+    bucketCounts.incrementAndGet(bucket);
+    count.increment();
+    sumNanos.add(nanos);
+    maxNanos.accumulateAndGet(nanos, Math::max);
+  }
+
+  /**
+   * @return Upper bound of the bucket in nanoseconds, or {@link Long#MAX_VALUE} for the overflow one.
+   */
+  static long getBucketUpperBoundNanos(int bucket) {
+    return bucket < BOUNDED_BUCKETS_COUNT ? TimeUnit.MICROSECONDS.toNanos(1L << bucket) : Long.MAX_VALUE;
+  }
+
+  long getBucketCount(int bucket) {
+    return bucketCounts.get(bucket);
+  }
+
+  long getCount() {
+    return count.sum();
+  }
+
+  long getSumNanos() {
+    return sumNanos.sum();
+  }
+
+  long getMaxNanos() {
+    return maxNanos.get();
+  }
+
+  /**
+   * @return Upper bound of the bucket containing given quantile, capped by the maximal recorded latency.
+   */
+  long getQuantileNanos(double quantile) {
+    long rank = (long) Math.ceil(quantile * getCount());
+    long cumulativeCount = 0;
+    for (int bucket = 0; bucket <= BOUNDED_BUCKETS_COUNT; bucket++) {
+      cumulativeCount += bucketCounts.get(bucket);
+      if (cumulativeCount >= rank && cumulativeCount > 0) {
+        return Math.min(getBucketUpperBoundNanos(bucket), getMaxNanos());
+      }
+    }
+    return getMaxNanos();
+  }
+}
@@ -0,0 +1,239 @@
+package com.xarchimedesx.templatesgenerator.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Thread-safe collector of counts, bytes and latency histograms of rendering phases, grouped by phase and label
+ * (e.g. format of variables files or template path). One instance may be shared by many renderings, e.g. all jobs of a manifest.
+ * Every measurement is also emitted as JFR event, when running on JVM with Flight Recorder.
+ */
+public class RenderMetrics {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RenderMetrics.class);
+  /**
+   * Key of Velocity context entry with metrics of current rendering, used by #saveFile directive.
+   */
+  public static final String CONTEXT_KEY = "templates-generator.metrics";
+  private static final String PROMETHEUS_PREFIX = "templates_generator_phase";
+  private static final String JFR_EVENT_CLASS = "com.xarchimedesx.templatesgenerator.metrics.JfrRenderPhaseEvent";
+  private static final MethodHandle JFR_EVENT_COMMIT = findJfrEventCommit();
+
+  private final Map<Key, PhaseStats> stats = new ConcurrentHashMap<>();
+
+  public void record(RenderPhase phase, String label, long nanos) {
+    record(phase, label, nanos, 0);
+  }
+
+  public void record(RenderPhase phase, String label, long nanos, long bytes) {
+    PhaseStats phaseStats = stats.computeIfAbsent(new Key(phase, label == null ? "" : label), key -> new PhaseStats());
+    phaseStats.histogram.record(nanos);
+    phaseStats.bytes.add(bytes);
+    if (JFR_EVENT_COMMIT != null) {
+      commitJfrEvent(phase, label, nanos, bytes);
+    }
+  }
+
+  /**
+   * @return Number of measurements of given phase, summed over all labels.
+   */
+  public long getCount(RenderPhase phase) {
+    return stats.entrySet().stream()
+        .filter(entry -> entry.getKey().phase == phase)
+        .mapToLong(entry -> entry.getValue().histogram.getCount())
+        .sum();
+  }
+
+  /**
+   * @return Number of bytes processed in given phase, summed over all labels.
+   */
+  public long getBytes(RenderPhase phase) {
+    return stats.entrySet().stream()
+        .filter(entry -> entry.getKey().phase == phase)
+        .mapToLong(entry -> entry.getValue().bytes.sum())
+        .sum();
+  }
+
+  /**
+   * Logs one line per measured phase and label.
+   */
+  public void logSummary() {
+    for (Map.Entry<Key, PhaseStats> entry : getSortedStats()) {
+      Key key = entry.getKey();
+      LatencyHistogram histogram = entry.getValue().histogram;
+      LOGGER.info("Phase {}{}: count={}, bytes={}, total={} ms, p50={} ms, p99={} ms, max={} ms",
+          key.phase.getName(), key.label.isEmpty() ? "" : " [" + key.label + "]", histogram.getCount(),
+          entry.getValue().bytes.sum(), toMillis(histogram.getSumNanos()), toMillis(histogram.getQuantileNanos(0.5)),
+          toMillis(histogram.getQuantileNanos(0.99)), toMillis(histogram.getMaxNanos()));
+    }
+  }
+
+  /**
+   * Writes report to given path, as JSON when its name ends with .json and in Prometheus text exposition format otherwise.
+   */
+  public void writeReport(Path path) {
+    try {
+      Path parent = path.toAbsolutePath().getParent();
+      if (parent != null) {
+        Files.createDirectories(parent);
+      }
+      try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+        if (path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".json")) {
+          writeJsonReport(writer);
+        } else {
+          writePrometheusReport(writer);
+        }
+      }
+      LOGGER.info("Metrics report written to: {}", path);
+    } catch (IOException ioe) {
+      LOGGER.error("An error occurred while writing metrics report: {}", path);
+      throw new RuntimeException(ioe);
+    }
+  }
+
+  void writeJsonReport(Writer writer) throws IOException {
+    ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    ObjectNode report = mapper.createObjectNode();
+    ArrayNode phases = report.putArray("phases");
+    for (Map.Entry<Key, PhaseStats> entry : getSortedStats()) {
+      LatencyHistogram histogram = entry.getValue().histogram;
+      ObjectNode phase = phases.addObject()
+          .put("phase", entry.getKey().phase.getName())
+          .put("label", entry.getKey().label)
+          .put("count", histogram.getCount())
+          .put("bytes", entry.getValue().bytes.sum())
+          .put("totalMillis", toMillis(histogram.getSumNanos()))
+          .put("p50Millis", toMillis(histogram.getQuantileNanos(0.5)))
+          .put("p90Millis", toMillis(histogram.getQuantileNanos(0.9)))
+          .put("p99Millis", toMillis(histogram.getQuantileNanos(0.99)))
+          .put("maxMillis", toMillis(histogram.getMaxNanos()));
+      ArrayNode buckets = phase.putArray("buckets");
+      for (int bucket = 0; bucket <= LatencyHistogram.BOUNDED_BUCKETS_COUNT; bucket++) {
+        if (histogram.getBucketCount(bucket) > 0) {
+          long upperBound = LatencyHistogram.getBucketUpperBoundNanos(bucket);
+          buckets.addObject()
+              .put("le", upperBound == Long.MAX_VALUE ? "+Inf" : String.valueOf(toMillis(upperBound)))
+              .put("count", histogram.getBucketCount(bucket));
+        }
+      }
+    }
+    mapper.writeValue(writer, report);
+  }
+
+  void writePrometheusReport(Writer writer) throws IOException {
+    List<Map.Entry<Key, PhaseStats>> sortedStats = getSortedStats();
+    writer.write("# HELP " + PROMETHEUS_PREFIX + "_duration_seconds Duration of rendering phases.\n");
+    writer.write("# TYPE " + PROMETHEUS_PREFIX + "_duration_seconds histogram\n");
+    for (Map.Entry<Key, PhaseStats> entry : sortedStats) {
+      String labels = entry.getKey().toPrometheusLabels();
+      LatencyHistogram histogram = entry.getValue().histogram;
+      long cumulativeCount = 0;
+      for (int bucket = 0; bucket <= LatencyHistogram.BOUNDED_BUCKETS_COUNT; bucket++) {
+        cumulativeCount += histogram.getBucketCount(bucket);
+        long upperBound = LatencyHistogram.getBucketUpperBoundNanos(bucket);
+        String le = upperBound == Long.MAX_VALUE ? "+Inf" : String.valueOf(upperBound / 1e9);
+        writer.write(String.format("%s_duration_seconds_bucket{%s,le=\"%s\"} %d%n", PROMETHEUS_PREFIX, labels, le, cumulativeCount));
+      }
+      writer.write(String.format("%s_duration_seconds_sum{%s} %s%n", PROMETHEUS_PREFIX, labels, histogram.getSumNanos() / 1e9));
+      writer.write(String.format("%s_duration_seconds_count{%s} %d%n", PROMETHEUS_PREFIX, labels, histogram.getCount()));
+    }
+    writer.write("# HELP " + PROMETHEUS_PREFIX + "_bytes_total Bytes processed by rendering phases.\n");
+    writer.write("# TYPE " + PROMETHEUS_PREFIX + "_bytes_total counter\n");
+    for (Map.Entry<Key, PhaseStats> entry : sortedStats) {
+      writer.write(String.format("%s_bytes_total{%s} %d%n", PROMETHEUS_PREFIX, entry.getKey().toPrometheusLabels(),
+          entry.getValue().bytes.sum()));
+    }
+  }
+
+  private List<Map.Entry<Key, PhaseStats>> getSortedStats() {
+    return stats.entrySet().stream()
+        .sorted(Comparator.comparing((Map.Entry<Key, PhaseStats> entry) -> entry.getKey().phase)
+            .thenComparing(entry -> entry.getKey().label))
+        .collect(Collectors.toList());
+  }
+
+  private static double toMillis(long nanos) {
+    return Math.round(nanos / 1000.0) / (double) TimeUnit.MILLISECONDS.toMicros(1);
+  }
+
+  private static void commitJfrEvent(RenderPhase phase, String label, long nanos, long bytes) {
+    try {
+      JFR_EVENT_COMMIT.invokeExact(phase, label, nanos, bytes);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new IllegalStateException("Cannot commit JFR event!", t);
+    }
+  }
+
+  // looked up reflectively, as the event class is missing in builds by JDK 8 and cannot be loaded on JVMs without JFR
+  private static MethodHandle findJfrEventCommit() {
+    try {
+      return MethodHandles.lookup().findStatic(Class.forName(JFR_EVENT_CLASS), "commit",
+          MethodType.methodType(void.class, RenderPhase.class, String.class, long.class, long.class));
+    } catch (ReflectiveOperationException | LinkageError e) {
+      return null;
+    }
+  }
+
+  private static final class Key {
+
+    private final RenderPhase phase;
+    private final String label;
+
+    private Key(RenderPhase phase, String label) {
+      this.phase = phase;
+      this.label = label;
+    }
+
+    private String toPrometheusLabels() {
+      return String.format("phase=\"%s\",label=\"%s\"", phase.getName(),
+          label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) o;
+      return phase == key.phase && label.equals(key.label);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(phase, label);
+    }
+  }
+
+  private static final class PhaseStats {
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final LongAdder bytes = new LongAdder();
+  }
+}
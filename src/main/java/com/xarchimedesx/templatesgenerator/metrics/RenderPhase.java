@@ -0,0 +1,33 @@
+package com.xarchimedesx.templatesgenerator.metrics;
+
+import java.util.Locale;
+
+/**
+ * Phases of rendering measured by {@link RenderMetrics}.
+ */
+public enum RenderPhase {
+  /**
+   * Looking for variables files under variables paths.
+   */
+  DISCOVERY,
+  /**
+   * Reading and parsing of a variables file, labeled by its format.
+   */
+  PARSE,
+  /**
+   * Building of Velocity context for a variables file.
+   */
+  CONTEXT,
+  /**
+   * Merging of template and context, including rendering of all files saved by it.
+   */
+  MERGE,
+  /**
+   * Committing of a file rendered by #saveFile to output sink.
+   */
+  WRITE;
+
+  public String getName() {
+    return name().toLowerCase(Locale.ROOT);
+  }
+}
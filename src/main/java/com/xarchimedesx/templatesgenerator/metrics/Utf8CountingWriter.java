@@ -0,0 +1,54 @@
+package com.xarchimedesx.templatesgenerator.metrics;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writer counting the number of bytes the written characters take when encoded as UTF-8, without encoding them.
+ */
+public class Utf8CountingWriter extends FilterWriter {
+
+  private long bytesCount;
+
+  public Utf8CountingWriter(Writer writer) {
+    super(writer);
+  }
+
+  @Override
+  public void write(int c) throws IOException {
+    out.write(c);
+    bytesCount += getUtf8Length((char) c);
+  }
+
+  @Override
+  public void write(char[] cbuf, int off, int len) throws IOException {
+    out.write(cbuf, off, len);
+    for (int i = off; i < off + len; i++) {
+      bytesCount += getUtf8Length(cbuf[i]);
+    }
+  }
+
+  @Override
+  public void write(String str, int off, int len) throws IOException {
+    out.write(str, off, len);
+    for (int i = off; i < off + len; i++) {
+      bytesCount += getUtf8Length(str.charAt(i));
+    }
+  }
+
+  public long getBytesCount() {
+    return bytesCount;
+  }
+
+  // each half of a surrogate pair counts 2 bytes, which sums up to 4 bytes of the encoded code point
+  private static int getUtf8Length(char c) {
+    if (c < 0x80) {
+      return 1;
+    } else if (c < 0x800 || Character.isSurrogate(c)) {
+      return 2;
+    } else {
+      return 3;
+    }
+  }
+}
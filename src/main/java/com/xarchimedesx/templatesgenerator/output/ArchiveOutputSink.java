@@ -0,0 +1,255 @@
+package com.xarchimedesx.templatesgenerator.output;
+
+import org.apache.velocity.shaded.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Sink streaming rendered files as entries of a single .zip or .tar.gz archive, which is much faster than
+ * creating thousands of small files. Entry names are paths of rendered files relative to the output base directory,
+ * files outside of it are rejected.
+ * <p>
+ * Zip entries are rendered straight into the archive, so concurrent renderings wait for each other while an entry is open,
+ * and an entry which fails to render stays truncated in the archive. Only tar entries, which headers need the size up front,
+ * and {@code #saveFile} blocks nested in a zip entry are rendered into memory and appended to the archive as a whole.
+ */
+public class ArchiveOutputSink implements OutputSink {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ArchiveOutputSink.class);
+  private static final int TAR_BLOCK_SIZE = 512;
+  private static final int TAR_NAME_LENGTH = 100;
+  private static final int TAR_PREFIX_LENGTH = 155;
+
+  private final Path archivePath;
+  private final Path outputDirBasePath;
+  private final boolean isTar;
+  private final OutputStream archiveStream;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Queue<Map.Entry<String, ByteArrayOutputStream>> deferredEntries = new ArrayDeque<>();
+  private boolean isEntryOpen;
+  private long entriesCount;
+
+  /**
+   * @param archivePath       - path of the archive to be created. Its extension selects the format: .zip, .tar.gz or .tgz.
+   * @param outputDirBasePath - directory, relatively to which archive entries are named.
+   */
+  public ArchiveOutputSink(Path archivePath, Path outputDirBasePath) throws IOException {
+    String archiveName = archivePath.getFileName().toString();
+    this.isTar = archiveName.endsWith(".tar.gz") || archiveName.endsWith(".tgz");
+    if (!isTar && !archiveName.endsWith(".zip")) {
+      throw new IllegalArgumentException("Unsupported archive format: " + archivePath + ". Only .zip and .tar.gz/.tgz are supported.");
+    }
+
+    this.archivePath = archivePath;
+    this.outputDirBasePath = outputDirBasePath.toAbsolutePath().normalize();
+    if (archivePath.toAbsolutePath().getParent() != null) {
+      Files.createDirectories(archivePath.toAbsolutePath().getParent());
+    }
+    OutputStream fileStream = new BufferedOutputStream(Files.newOutputStream(archivePath));
+    this.archiveStream = isTar ? new GZIPOutputStream(fileStream) : new ZipOutputStream(fileStream);
+  }
+
+  /**
+   * @throws IOException if the file is outside of the output base directory.
+   */
+  @Override
+  public OutputFile open(Path outputFilePath) throws IOException {
+    String entryName = toEntryName(outputFilePath);
+    // an entry nested in the zip entry being rendered by this thread is added once the enclosing one is closed
+    return isTar || lock.isHeldByCurrentThread()
+        ? new BufferedOutputFile(outputFilePath, (path, content) -> addEntry(entryName, content))
+        : new ZipEntryOutputFile(entryName);
+  }
+
+  @Override
+  public void flush() throws IOException {
+    lock.lock();
+    try {
+      if (isTar) {
+        // the end of a tar archive is marked by two empty blocks
+        archiveStream.write(new byte[2 * TAR_BLOCK_SIZE]);
+      }
+      archiveStream.close();
+    } finally {
+      lock.unlock();
+    }
+    LOGGER.info("Rendered files: {} saved to archive {}", entriesCount, archivePath);
+  }
+
+  private void addEntry(String entryName, ByteArrayOutputStream content) throws IOException {
+    lock.lock();
+    try {
+      if (isEntryOpen) {
+        deferredEntries.add(new AbstractMap.SimpleImmutableEntry<>(entryName, content));
+      } else {
+        writeEntry(entryName, content);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void writeEntry(String entryName, ByteArrayOutputStream content) throws IOException {
+    LOGGER.debug("Adding rendered file to archive: {}", entryName);
+    if (isTar) {
+      archiveStream.write(createTarHeader(entryName, content.size()));
+      content.writeTo(archiveStream);
+      int padding = (TAR_BLOCK_SIZE - content.size() % TAR_BLOCK_SIZE) % TAR_BLOCK_SIZE;
+      archiveStream.write(new byte[padding]);
+    } else {
+      ZipOutputStream zipStream = (ZipOutputStream) archiveStream;
+      zipStream.putNextEntry(new ZipEntry(entryName));
+      content.writeTo(zipStream);
+      zipStream.closeEntry();
+    }
+    entriesCount++;
+  }
+
+  private String toEntryName(Path outputFilePath) throws IOException {
+    Path absolutePath = outputFilePath.toAbsolutePath().normalize();
+    // entries escaping the output base directory, e.g. by '..', would be extracted outside of the target directory
+    if (!absolutePath.startsWith(outputDirBasePath) || absolutePath.equals(outputDirBasePath)) {
+      throw new IOException(String.format("Rendered file %s is outside of output base directory %s, so it cannot be stored in archive!",
+          outputFilePath, outputDirBasePath));
+    }
+    return FilenameUtils.separatorsToUnix(outputDirBasePath.relativize(absolutePath).toString());
+  }
+
+  /**
+   * Zip entry rendered straight into the archive. It holds the lock of the sink from opening until it is closed.
+   */
+  private class ZipEntryOutputFile extends OutputFile {
+
+    private final String entryName;
+    private final Writer writer;
+    private boolean isClosed;
+
+    ZipEntryOutputFile(String entryName) throws IOException {
+      this.entryName = entryName;
+      lock.lock();
+      try {
+        LOGGER.debug("Adding rendered file to archive: {}", entryName);
+        ((ZipOutputStream) archiveStream).putNextEntry(new ZipEntry(entryName));
+        isEntryOpen = true;
+      } catch (IOException | RuntimeException ex) {
+        lock.unlock();
+        throw ex;
+      }
+      this.writer = new BufferedWriter(new OutputStreamWriter(new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+          archiveStream.write(b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+          archiveStream.write(bytes, offset, length);
+        }
+        // not closing the archive stream along with the entry
+      }, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public Writer getWriter() {
+      return writer;
+    }
+
+    @Override
+    protected void save() throws IOException {
+      closeEntry();
+      entriesCount++;
+    }
+
+    @Override
+    protected void discard() throws IOException {
+      if (!isClosed) {
+        LOGGER.warn("Rendering of archive entry {} failed, so it is left truncated.", entryName);
+        closeEntry();
+      }
+    }
+
+    private void closeEntry() throws IOException {
+      isClosed = true;
+      try {
+        ((ZipOutputStream) archiveStream).closeEntry();
+        isEntryOpen = false;
+        while (!deferredEntries.isEmpty()) {
+          Map.Entry<String, ByteArrayOutputStream> deferredEntry = deferredEntries.poll();
+          writeEntry(deferredEntry.getKey(), deferredEntry.getValue());
+        }
+      } finally {
+        isEntryOpen = false;
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Creates a POSIX ustar header. Names longer than 100 bytes are split into the prefix and name fields.
+   */
+  private static byte[] createTarHeader(String entryName, long size) throws IOException {
+    byte[] name = entryName.getBytes(StandardCharsets.UTF_8);
+    byte[] prefix = new byte[0];
+    if (name.length > TAR_NAME_LENGTH) {
+      // the first slash, after which the rest fits into the name field, leaves the shortest prefix
+      int split = entryName.indexOf('/');
+      while (split != -1 && entryName.substring(split + 1).getBytes(StandardCharsets.UTF_8).length > TAR_NAME_LENGTH) {
+        split = entryName.indexOf('/', split + 1);
+      }
+      if (split <= 0 || entryName.substring(0, split).getBytes(StandardCharsets.UTF_8).length > TAR_PREFIX_LENGTH) {
+        throw new IOException("Path is too long to be stored in tar archive: " + entryName);
+      }
+      prefix = entryName.substring(0, split).getBytes(StandardCharsets.UTF_8);
+      name = entryName.substring(split + 1).getBytes(StandardCharsets.UTF_8);
+    }
+
+    byte[] header = new byte[TAR_BLOCK_SIZE];
+    System.arraycopy(name, 0, header, 0, name.length);
+    writeOctal(header, 100, 8, 0644);
+    writeOctal(header, 108, 8, 0);
+    writeOctal(header, 116, 8, 0);
+    writeOctal(header, 124, 12, size);
+    writeOctal(header, 136, 12, System.currentTimeMillis() / 1000);
+    header[156] = '0';
+    System.arraycopy("ustar\0".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 6);
+    header[263] = '0';
+    header[264] = '0';
+    System.arraycopy(prefix, 0, header, 345, prefix.length);
+
+    // checksum is calculated with the checksum field itself filled with spaces
+    for (int i = 148; i < 156; i++) {
+      header[i] = ' ';
+    }
+    long checksum = 0;
+    for (byte b : header) {
+      checksum += b & 0xFF;
+    }
+    writeOctal(header, 148, 7, checksum);
+    return header;
+  }
+
+  private static void writeOctal(byte[] header, int offset, int length, long value) {
+    String octal = String.format("%0" + (length - 1) + "o", value);
+    System.arraycopy(octal.getBytes(StandardCharsets.US_ASCII), 0, header, offset, length - 1);
+    header[offset + length - 1] = 0;
+  }
+}
@@ -0,0 +1,44 @@
+package com.xarchimedesx.templatesgenerator.output;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Output file, which content is rendered into memory and handed over to the sink as a whole on commit.
+ */
+class BufferedOutputFile extends OutputFile {
+
+  private final Path outputFilePath;
+  private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+  private final Writer writer = new OutputStreamWriter(content, StandardCharsets.UTF_8);
+  private final ContentConsumer contentConsumer;
+
+  BufferedOutputFile(Path outputFilePath, ContentConsumer contentConsumer) {
+    this.outputFilePath = outputFilePath;
+    this.contentConsumer = contentConsumer;
+  }
+
+  @Override
+  public Writer getWriter() {
+    return writer;
+  }
+
+  @Override
+  protected void save() throws IOException {
+    contentConsumer.accept(outputFilePath, content);
+  }
+
+  @Override
+  protected void discard() {
+    content.reset();
+  }
+
+  @FunctionalInterface
+  interface ContentConsumer {
+    void accept(Path outputFilePath, ByteArrayOutputStream content) throws IOException;
+  }
+}
@@ -0,0 +1,110 @@
+package com.xarchimedesx.templatesgenerator.output;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Output file, which content is streamed as UTF-8 into a {@link ContentComparator} of the existing target file.
+ * A temporary file is created only when the contents differ: the content matched so far is copied into it from the existing file
+ * and the rest is streamed into it as in {@link TempOutputFile}. So an unchanged file is read once and nothing is written.
+ */
+class ComparingOutputFile extends OutputFile {
+
+  private final Path outputFilePath;
+  private final FileSystemOutputSink fileSink;
+  private final ContentComparator comparator;
+  private final Writer writer;
+  private Path tempFilePath;
+  private OutputStream tempFileStream;
+
+  ComparingOutputFile(Path outputFilePath, FileSystemOutputSink fileSink) throws IOException {
+    this.outputFilePath = outputFilePath;
+    this.fileSink = fileSink;
+    this.comparator = new ContentComparator(outputFilePath);
+    this.writer = new BufferedWriter(new OutputStreamWriter(new ContentStream(), StandardCharsets.UTF_8));
+  }
+
+  @Override
+  public Writer getWriter() {
+    return writer;
+  }
+
+  @Override
+  protected void save() throws IOException {
+    if (comparator.isSameContent()) {
+      fileSink.skip(outputFilePath, comparator.getMatchedBytes());
+      return;
+    }
+    if (tempFilePath == null) {
+      // the rendered content is a prefix of the existing one
+      createTempFile().close();
+    }
+    fileSink.save(tempFilePath, outputFilePath);
+  }
+
+  @Override
+  protected void discard() throws IOException {
+    if (tempFilePath != null) {
+      Files.deleteIfExists(tempFilePath);
+    }
+  }
+
+  private OutputStream createTempFile() throws IOException {
+    tempFilePath = FileSystemOutputSink.createTempFile(outputFilePath);
+    tempFileStream = Files.newOutputStream(tempFilePath);
+    if (comparator.getMatchedBytes() == 0) {
+      return tempFileStream;
+    }
+    try (InputStream existingContent = Files.newInputStream(outputFilePath)) {
+      byte[] buffer = new byte[8192];
+      long remaining = comparator.getMatchedBytes();
+      while (remaining > 0) {
+        int read = existingContent.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+        if (read == -1) {
+          throw new IOException("File changed while its content was compared: " + outputFilePath);
+        }
+        tempFileStream.write(buffer, 0, read);
+        remaining -= read;
+      }
+    }
+    return tempFileStream;
+  }
+
+  /**
+   * Stream compared with the existing file until the first difference, written into the temporary file afterwards.
+   */
+  private class ContentStream extends OutputStream {
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      if (tempFileStream == null) {
+        comparator.write(bytes, offset, length);
+        if (comparator.isMatching()) {
+          return;
+        }
+        createTempFile();
+      }
+      tempFileStream.write(bytes, offset, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+      comparator.close();
+      if (tempFileStream != null) {
+        tempFileStream.close();
+      }
+    }
+  }
+}
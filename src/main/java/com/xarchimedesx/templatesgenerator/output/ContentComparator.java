@@ -0,0 +1,101 @@
+package com.xarchimedesx.templatesgenerator.output;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Output stream comparing everything written to it with the content of an existing file, chunk by chunk,
+ * so rendered content is checked while it is streamed, without being stored anywhere.
+ * Once a difference is found, the rest of the existing file is not read anymore.
+ */
+class ContentComparator extends OutputStream {
+
+  private static final int COMPARISON_BUFFER_SIZE = 8192;
+
+  private final InputStream existingContent;
+  private final byte[] existingBuffer = new byte[COMPARISON_BUFFER_SIZE];
+  private boolean isMatching;
+  private boolean isSameContent;
+  private long matchedBytes;
+
+  ContentComparator(Path existingFilePath) throws IOException {
+    this.isMatching = Files.isRegularFile(existingFilePath);
+    this.existingContent = isMatching ? new BufferedInputStream(Files.newInputStream(existingFilePath)) : null;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[]{(byte) b}, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) throws IOException {
+    if (!isMatching) {
+      return;
+    }
+    int compared = 0;
+    while (compared < length) {
+      int chunkLength = Math.min(existingBuffer.length, length - compared);
+      if (readFully(existingContent, existingBuffer, chunkLength) != chunkLength) {
+        mismatch();
+        return;
+      }
+      for (int i = 0; i < chunkLength; i++) {
+        if (existingBuffer[i] != bytes[offset + compared + i]) {
+          mismatch();
+          return;
+        }
+      }
+      compared += chunkLength;
+    }
+    // counted only once the whole write matches, so on a difference the written bytes are all beyond the common prefix
+    matchedBytes += length;
+  }
+
+  /**
+   * @return Whether everything written so far equals the beginning of the existing file.
+   */
+  boolean isMatching() {
+    return isMatching;
+  }
+
+  /**
+   * @return Number of bytes of writes equal to the beginning of the existing file, i.e. the content before the first differing write.
+   */
+  long getMatchedBytes() {
+    return matchedBytes;
+  }
+
+  /**
+   * @return Whether the written content equals the whole existing file. Valid once the comparator is closed.
+   */
+  boolean isSameContent() {
+    return isSameContent;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (isMatching) {
+      isSameContent = existingContent.read() == -1;
+      mismatch();
+    }
+  }
+
+  private void mismatch() throws IOException {
+    isMatching = false;
+    existingContent.close();
+  }
+
+  private static int readFully(InputStream inputStream, byte[] buffer, int length) throws IOException {
+    int total = 0;
+    int read;
+    while (total < length && (read = inputStream.read(buffer, total, length - total)) != -1) {
+      total += read;
+    }
+    return total;
+  }
+}
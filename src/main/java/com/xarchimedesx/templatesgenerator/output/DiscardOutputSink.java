@@ -0,0 +1,44 @@
+package com.xarchimedesx.templatesgenerator.output;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sink discarding all rendered content. Useful to validate templates against variables or to measure rendering alone.
+ */
+public class DiscardOutputSink implements OutputSink {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DiscardOutputSink.class);
+
+  private final LongAdder discardedFiles = new LongAdder();
+
+  @Override
+  public OutputFile open(Path outputFilePath) {
+    return new OutputFile() {
+      private final Writer writer = new DiscardingWriter();
+
+      @Override
+      public Writer getWriter() {
+        return writer;
+      }
+
+      @Override
+      protected void save() {
+        discardedFiles.increment();
+      }
+
+      @Override
+      protected void discard() {
+      }
+    };
+  }
+
+  @Override
+  public void flush() {
+    LOGGER.info("Rendered files: {} discarded.", discardedFiles.sum());
+  }
+}
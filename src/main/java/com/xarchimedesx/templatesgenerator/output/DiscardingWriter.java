@@ -0,0 +1,29 @@
+package com.xarchimedesx.templatesgenerator.output;
+
+import java.io.Writer;
+
+/**
+ * Writer ignoring everything written to it.
+ */
+class DiscardingWriter extends Writer {
+
+  @Override
+  public void write(int c) {
+  }
+
+  @Override
+  public void write(char[] cbuf, int off, int len) {
+  }
+
+  @Override
+  public void write(String str, int off, int len) {
+  }
+
+  @Override
+  public void flush() {
+  }
+
+  @Override
+  public void close() {
+  }
+}
@@ -0,0 +1,266 @@
+package com.xarchimedesx.templatesgenerator.output;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sink saving files rendered by the {@code #saveFile} directive to the local file system and counting them.
+ * <p>
+ * With write-behind enabled, rendered content is handed over to a dedicated I/O executor through a bounded queue:
+ * a rendering thread continues immediately unless the queue is full. Pending writes are awaited and their failures are
+ * reported by {@link #flush()}, which also optionally syncs all saved files to the storage device in one batch.
+ */
+public class FileSystemOutputSink implements OutputSink {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(FileSystemOutputSink.class);
+  private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+  private final boolean isSkipUnchanged;
+  private final boolean isSyncOnFlush;
+  private final boolean isLoggingEveryFile;
+  private final ExecutorService writeBehindExecutor;
+  private final Semaphore writeBehindQueuePermits;
+  private final Queue<Throwable> writeBehindFailures = new ConcurrentLinkedQueue<>();
+  private final Queue<Path> savedFiles = new ConcurrentLinkedQueue<>();
+  private final LongAdder writtenFiles = new LongAdder();
+  private final LongAdder writtenBytes = new LongAdder();
+  private final LongAdder skippedFiles = new LongAdder();
+  private final LongAdder skippedBytes = new LongAdder();
+
+  /**
+   * @param isSkipUnchanged Whether to leave existing files untouched when their content equals the rendered one.
+   *                        It keeps files' modification time, so downstream incremental builds do not consider them changed.
+   */
+  public FileSystemOutputSink(boolean isSkipUnchanged) {
+    this(isSkipUnchanged, 0, 0, false);
+  }
+
+  /**
+   * @param isSkipUnchanged         Whether to leave existing files untouched when their content equals the rendered one.
+   * @param writeBehindQueueCapacity Maximal number of rendered files waiting to be written. {@code 0} disables write-behind,
+   *                                so files are written by rendering threads.
+   * @param writeBehindWritersCount Number of threads writing files in write-behind mode.
+   * @param isSyncOnFlush           Whether to sync all saved files to the storage device on {@link #flush()}.
+   */
+  public FileSystemOutputSink(boolean isSkipUnchanged, int writeBehindQueueCapacity, int writeBehindWritersCount, boolean isSyncOnFlush) {
+    this(isSkipUnchanged, writeBehindQueueCapacity, writeBehindWritersCount, isSyncOnFlush, true);
+  }
+
+  /**
+   * @param isSkipUnchanged         Whether to leave existing files untouched when their content equals the rendered one.
+   * @param writeBehindQueueCapacity Maximal number of rendered files waiting to be written. {@code 0} disables write-behind,
+   *                                so files are written by rendering threads.
+   * @param writeBehindWritersCount Number of threads writing files in write-behind mode.
+   * @param isSyncOnFlush           Whether to sync all saved files to the storage device on {@link #flush()}.
+   * @param isLoggingEveryFile      Whether every saved or skipped file is logged at info level. Otherwise it is logged at debug level
+   *                                and only the summary is logged at info level on {@link #flush()}.
+   */
+  public FileSystemOutputSink(boolean isSkipUnchanged, int writeBehindQueueCapacity, int writeBehindWritersCount, boolean isSyncOnFlush,
+                              boolean isLoggingEveryFile) {
+    this.isSkipUnchanged = isSkipUnchanged;
+    this.isSyncOnFlush = isSyncOnFlush;
+    this.isLoggingEveryFile = isLoggingEveryFile;
+    if (writeBehindQueueCapacity > 0) {
+      AtomicInteger writerNumber = new AtomicInteger();
+      this.writeBehindExecutor = Executors.newFixedThreadPool(Math.max(1, writeBehindWritersCount), runnable -> {
+        Thread writer = new Thread(runnable, "templates-generator-writer-" + writerNumber.incrementAndGet());
+        writer.setDaemon(true);
+        return writer;
+      });
+      this.writeBehindQueuePermits = new Semaphore(writeBehindQueueCapacity);
+    } else {
+      this.writeBehindExecutor = null;
+      this.writeBehindQueuePermits = null;
+    }
+  }
+
+  /**
+   * Opens a file to render content into. Depending on the mode, the content is either streamed into a temporary file
+   * next to the target one, or buffered in memory to be written in background. When unchanged files are skipped,
+   * streamed content is compared with the existing file first and the temporary file is created only if they differ.
+   * In all cases the target file is replaced only on {@link OutputFile#commit()}.
+   *
+   * @param outputFilePath - path of the file to be saved.
+   * @return Output file, which has to be closed after rendering.
+   */
+  @Override
+  public OutputFile open(Path outputFilePath) throws IOException {
+    if (writeBehindExecutor != null) {
+      return new BufferedOutputFile(outputFilePath, this::saveInBackground);
+    }
+    return isSkipUnchanged ? new ComparingOutputFile(outputFilePath, this) : new TempOutputFile(outputFilePath, this);
+  }
+
+  /**
+   * Waits for all pending background writes, syncs saved files if requested and logs the summary.
+   *
+   * @throws IOException if any background write failed. Failures of all files are attached as suppressed exceptions.
+   */
+  @Override
+  public void flush() throws IOException {
+    if (writeBehindExecutor != null) {
+      writeBehindExecutor.shutdown();
+      try {
+        writeBehindExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for rendered files to be written!");
+      }
+    }
+    if (!writeBehindFailures.isEmpty()) {
+      IOException ioe = new IOException(String.format("Writing of %d rendered files failed!", writeBehindFailures.size()));
+      writeBehindFailures.forEach(ioe::addSuppressed);
+      throw ioe;
+    }
+    if (isSyncOnFlush) {
+      syncSavedFiles();
+    }
+    LOGGER.info("Saved files: {} written ({} bytes), {} skipped as unchanged ({} bytes not rewritten).",
+        writtenFiles.sum(), writtenBytes.sum(), skippedFiles.sum(), skippedBytes.sum());
+  }
+
+  public long getWrittenFiles() {
+    return writtenFiles.sum();
+  }
+
+  public long getSkippedFiles() {
+    return skippedFiles.sum();
+  }
+
+  public long getSkippedBytes() {
+    return skippedBytes.sum();
+  }
+
+  private void logFile(String message, Path outputFilePath) {
+    if (isLoggingEveryFile) {
+      LOGGER.info(message, outputFilePath);
+    } else {
+      LOGGER.debug(message, outputFilePath);
+    }
+  }
+
+  static Path createTempFile(Path outputFilePath) throws IOException {
+    Path outputDirPath = outputFilePath.toAbsolutePath().getParent();
+    Files.createDirectories(outputDirPath);
+    // not using Files.createTempFile, as it restricts permissions and they would be moved along with the file
+    Path tempFilePath = outputDirPath.resolve(String.format(".%s.%016x%s",
+        outputFilePath.getFileName(), ThreadLocalRandom.current().nextLong(), TEMP_FILE_SUFFIX));
+    return Files.createFile(tempFilePath);
+  }
+
+  void saveInBackground(Path outputFilePath, ByteArrayOutputStream content) throws IOException {
+    try {
+      // back-pressure: the rendering thread waits here while the queue is full
+      writeBehindQueuePermits.acquire();
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a free slot in write-behind queue!");
+    }
+
+    writeBehindExecutor.execute(() -> {
+      Path tempFilePath = null;
+      try {
+        if (isSkipUnchanged && hasSameContent(content, outputFilePath)) {
+          skip(outputFilePath, content.size());
+          return;
+        }
+        tempFilePath = createTempFile(outputFilePath);
+        try (OutputStream outputStream = Files.newOutputStream(tempFilePath)) {
+          content.writeTo(outputStream);
+        }
+        save(tempFilePath, outputFilePath);
+      } catch (IOException | RuntimeException ex) {
+        LOGGER.error("A problem occurred while saving rendered file: {}", outputFilePath, ex);
+        writeBehindFailures.add(ex);
+        deleteQuietly(tempFilePath);
+      } finally {
+        writeBehindQueuePermits.release();
+      }
+    });
+  }
+
+  void skip(Path outputFilePath, long size) {
+    logFile("Skipping unchanged file: {}", outputFilePath);
+    skippedFiles.increment();
+    skippedBytes.add(size);
+  }
+
+  void save(Path tempFilePath, Path outputFilePath) throws IOException {
+    long size = Files.size(tempFilePath);
+    logFile("Saving rendered file: {}", outputFilePath);
+    try {
+      Files.move(tempFilePath, outputFilePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException amnse) {
+      Files.move(tempFilePath, outputFilePath, StandardCopyOption.REPLACE_EXISTING);
+    }
+    writtenFiles.increment();
+    writtenBytes.add(size);
+    if (isSyncOnFlush) {
+      savedFiles.add(outputFilePath);
+    }
+  }
+
+  private void syncSavedFiles() throws IOException {
+    Set<Path> savedDirs = new LinkedHashSet<>();
+    for (Path savedFile : savedFiles) {
+      try (FileChannel channel = FileChannel.open(savedFile, StandardOpenOption.READ)) {
+        channel.force(true);
+      }
+      savedDirs.add(savedFile.toAbsolutePath().getParent());
+    }
+    // syncing directories makes renames durable, but not every platform allows opening a directory
+    for (Path savedDir : savedDirs) {
+      try (FileChannel channel = FileChannel.open(savedDir, StandardOpenOption.READ)) {
+        channel.force(true);
+      } catch (IOException ioe) {
+        LOGGER.debug("Cannot sync directory {}: {}", savedDir, ioe.getMessage());
+      }
+    }
+    LOGGER.info("Synced {} saved files to the storage device.", savedFiles.size());
+  }
+
+  private static boolean hasSameContent(ByteArrayOutputStream content, Path existingFilePath) throws IOException {
+    // cheap size check first, so only files of the same size are read and compared chunk by chunk
+    if (!Files.isRegularFile(existingFilePath) || Files.size(existingFilePath) != content.size()) {
+      return false;
+    }
+
+    try (ContentComparator comparator = new ContentComparator(existingFilePath)) {
+      content.writeTo(comparator);
+      comparator.close();
+      return comparator.isSameContent();
+    }
+  }
+
+  private static void deleteQuietly(Path path) {
+    if (path != null) {
+      try {
+        Files.deleteIfExists(path);
+      } catch (IOException ioe) {
+        LOGGER.warn("Cannot delete temporary file: {}", path);
+      }
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package com.xarchimedesx.templatesgenerator.output;
+
+import org.apache.velocity.shaded.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sink keeping rendered files in memory, so Templates-Generator can be embedded without touching the file system.
+ * Files are keyed by their paths as given to the {@code #saveFile} directive, with forward slashes as separators.
+ */
+public class InMemoryOutputSink implements OutputSink {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(InMemoryOutputSink.class);
+
+  private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+
+  @Override
+  public OutputFile open(Path outputFilePath) {
+    return new BufferedOutputFile(outputFilePath,
+        (path, content) -> files.put(FilenameUtils.separatorsToUnix(path.toString()), content.toByteArray()));
+  }
+
+  @Override
+  public void flush() {
+    LOGGER.info("Rendered files: {} kept in memory.", files.size());
+  }
+
+  /**
+   * @return Rendered files' UTF-8 content keyed by their paths, sorted by path.
+   */
+  public Map<String, byte[]> getFiles() {
+    return Collections.unmodifiableMap(new TreeMap<>(files));
+  }
+}
@@ -0,0 +1,35 @@
+package com.xarchimedesx.templatesgenerator.output;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * File being rendered by the {@code #saveFile} directive.
+ * {@link #commit()} saves the rendered content, while closing an uncommitted file discards it,
+ * so nobody ever sees a partially rendered file.
+ */
+public abstract class OutputFile implements Closeable {
+
+  private boolean isCommitted;
+
+  public abstract Writer getWriter();
+
+  public void commit() throws IOException {
+    getWriter().close();
+    save();
+    isCommitted = true;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (!isCommitted) {
+      getWriter().close();
+      discard();
+    }
+  }
+
+  protected abstract void save() throws IOException;
+
+  protected abstract void discard() throws IOException;
+}
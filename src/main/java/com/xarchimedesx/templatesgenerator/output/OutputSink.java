@@ -0,0 +1,40 @@
+package com.xarchimedesx.templatesgenerator.output;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+
+/**
+ * Destination of everything rendered within a single rendering run: files saved by the {@code #saveFile} directive
+ * and the output of the top-level template merge. A sink instance serves one run and is shared by all its Velocity contexts,
+ * so implementations must be thread-safe.
+ */
+public interface OutputSink {
+
+  /**
+   * Velocity context key under which the sink of the current run is available for the {@code #saveFile} directive.
+   * It cannot be referenced from templates, as it is not a valid VTL identifier.
+   */
+  String CONTEXT_KEY = "templates-generator.outputSink";
+
+  /**
+   * Opens a file to render content into. The file becomes visible in the sink only on {@link OutputFile#commit()}.
+   *
+   * @param outputFilePath - path of the file as given to the {@code #saveFile} directive.
+   * @return Output file, which has to be closed after rendering.
+   */
+  OutputFile open(Path outputFilePath) throws IOException;
+
+  /**
+   * @return Writer for the output of a single top-level template merge, i.e. everything outside {@code #saveFile} blocks.
+   * Discarded by default.
+   */
+  default Writer openMainWriter() {
+    return new DiscardingWriter();
+  }
+
+  /**
+   * Finishes the run: waits for pending writes, releases resources and logs the summary.
+   */
+  void flush() throws IOException;
+}
@@ -0,0 +1,61 @@
+package com.xarchimedesx.templatesgenerator.output;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Sink passing everything to another one, while recording paths of committed files.
+ */
+public class RecordingOutputSink implements OutputSink {
+
+  private final OutputSink delegate;
+  private final Queue<Path> committedFiles = new ConcurrentLinkedQueue<>();
+
+  public RecordingOutputSink(OutputSink delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public OutputFile open(Path outputFilePath) throws IOException {
+    OutputFile outputFile = delegate.open(outputFilePath);
+    return new OutputFile() {
+      @Override
+      public Writer getWriter() {
+        return outputFile.getWriter();
+      }
+
+      @Override
+      protected void save() throws IOException {
+        outputFile.commit();
+        committedFiles.add(outputFilePath);
+      }
+
+      @Override
+      protected void discard() throws IOException {
+        outputFile.close();
+      }
+    };
+  }
+
+  @Override
+  public Writer openMainWriter() {
+    return delegate.openMainWriter();
+  }
+
+  @Override
+  public void flush() throws IOException {
+    delegate.flush();
+  }
+
+  /**
+   * @return Paths of committed files, in the order of commits.
+   */
+  public List<Path> getCommittedFiles() {
+    return new ArrayList<>(committedFiles);
+  }
+}
@@ -0,0 +1,43 @@
+package com.xarchimedesx.templatesgenerator.output;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Output file, which content is streamed as UTF-8 into a temporary file in the target directory,
+ * so memory usage does not depend on the output size. The temporary file is moved into place on commit.
+ */
+class TempOutputFile extends OutputFile {
+
+  private final Path outputFilePath;
+  private final Path tempFilePath;
+  private final Writer writer;
+  private final FileSystemOutputSink fileSink;
+
+  TempOutputFile(Path outputFilePath, FileSystemOutputSink fileSink) throws IOException {
+    this.outputFilePath = outputFilePath;
+    this.tempFilePath = FileSystemOutputSink.createTempFile(outputFilePath);
+    this.writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(tempFilePath), StandardCharsets.UTF_8));
+    this.fileSink = fileSink;
+  }
+
+  @Override
+  public Writer getWriter() {
+    return writer;
+  }
+
+  @Override
+  protected void save() throws IOException {
+    fileSink.save(tempFilePath, outputFilePath);
+  }
+
+  @Override
+  protected void discard() throws IOException {
+    Files.deleteIfExists(tempFilePath);
+  }
+}
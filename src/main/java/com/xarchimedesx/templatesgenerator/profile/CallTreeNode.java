@@ -0,0 +1,59 @@
+package com.xarchimedesx.templatesgenerator.profile;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Frame of the call tree collected by {@link TemplateProfiler}, shared by all threads rendering with the profiler.
+ */
+class CallTreeNode {
+
+  private final String frame;
+  private final Map<String, CallTreeNode> children = new ConcurrentHashMap<>();
+  private final LongAdder callsCount = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+  private final LongAdder selfNanos = new LongAdder();
+
+  CallTreeNode(String frame) {
+    this.frame = frame;
+  }
+
+  CallTreeNode getChild(String childFrame) {
+    return children.computeIfAbsent(childFrame, CallTreeNode::new);
+  }
+
+  void record(long totalNanos, long selfNanos) {
+    this.callsCount.increment();
+    this.totalNanos.add(totalNanos);
+    this.selfNanos.add(selfNanos);
+  }
+
+  String getFrame() {
+    return frame;
+  }
+
+  /**
+   * @return Child frames sorted by name, so the output does not depend on the order of calls.
+   */
+  List<CallTreeNode> getChildren() {
+    List<CallTreeNode> sortedChildren = new ArrayList<>(children.values());
+    sortedChildren.sort(Comparator.comparing(CallTreeNode::getFrame));
+    return sortedChildren;
+  }
+
+  long getCallsCount() {
+    return callsCount.sum();
+  }
+
+  long getTotalNanos() {
+    return totalNanos.sum();
+  }
+
+  long getSelfNanos() {
+    return selfNanos.sum();
+  }
+}
@@ -0,0 +1,89 @@
+package com.xarchimedesx.templatesgenerator.profile;
+
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.context.Context;
+import org.apache.velocity.context.InternalContextAdapter;
+import org.apache.velocity.runtime.directive.Directive;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+
+/**
+ * Velocity context recording its rendering in {@link TemplateProfiler}. Velocity reports entering and leaving templates
+ * and macros to the context, while profiled directives call {@link #enter(Directive)} and {@link #exit()} themselves.
+ * A context is rendered by a single thread at a time, so its stack of open frames is not synchronized.
+ */
+public class ProfilingVelocityContext extends VelocityContext {
+
+  private final TemplateProfiler profiler;
+  private final Deque<OpenFrame> openFrames = new ArrayDeque<>();
+
+  public ProfilingVelocityContext(Map<String, Object> variables, Context innerContext, TemplateProfiler profiler) {
+    super(variables, innerContext);
+    this.profiler = profiler;
+  }
+
+  /**
+   * @return Profiling context rendered by given adapter, or {@code null} if rendering is not profiled.
+   */
+  public static ProfilingVelocityContext of(InternalContextAdapter context) {
+    Context userContext = context.getInternalUserContext();
+    return userContext instanceof ProfilingVelocityContext ? (ProfilingVelocityContext) userContext : null;
+  }
+
+  public void enter(Directive directive) {
+    push(profiler.getDirectiveFrame(directive));
+  }
+
+  public void exit() {
+    OpenFrame frame = openFrames.pop();
+    long totalNanos = System.nanoTime() - frame.startNanos;
+    frame.node.record(totalNanos, totalNanos - frame.childrenNanos);
+    OpenFrame parent = openFrames.peek();
+    if (parent != null) {
+      parent.childrenNanos += totalNanos;
+    }
+  }
+
+  @Override
+  public void pushCurrentTemplateName(String templateName) {
+    super.pushCurrentTemplateName(templateName);
+    push(templateName);
+  }
+
+  @Override
+  public void popCurrentTemplateName() {
+    exit();
+    super.popCurrentTemplateName();
+  }
+
+  @Override
+  public void pushCurrentMacroName(String macroName) {
+    super.pushCurrentMacroName(macroName);
+    push("#" + macroName);
+  }
+
+  @Override
+  public void popCurrentMacroName() {
+    exit();
+    super.popCurrentMacroName();
+  }
+
+  private void push(String frame) {
+    OpenFrame parent = openFrames.peek();
+    CallTreeNode node = (parent == null ? profiler.getRoot() : parent.node).getChild(frame);
+    openFrames.push(new OpenFrame(node));
+  }
+
+  private static final class OpenFrame {
+
+    private final CallTreeNode node;
+    private final long startNanos = System.nanoTime();
+    private long childrenNanos;
+
+    private OpenFrame(CallTreeNode node) {
+      this.node = node;
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package com.xarchimedesx.templatesgenerator.profile;
+
+import org.apache.velocity.runtime.directive.Directive;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread-safe collector of wall time and invocation counts of templates, macros and directives, attributed to their call stacks.
+ * Frames are named by template path for templates (also ones included by #parse), by {@code #name} for macros and by
+ * {@code template:line #directive} for #foreach, #parse, #include, #evaluate and #saveFile directives.
+ * One instance may be shared by many renderings, e.g. all jobs of a manifest.
+ */
+public class TemplateProfiler {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TemplateProfiler.class);
+  private static final String ROOT_FRAME = "";
+  private final CallTreeNode root = new CallTreeNode(ROOT_FRAME);
+  // directives are created per template node, so the frame name of each one is formatted only once
+  private final Map<Directive, String> directiveFrames = new ConcurrentHashMap<>();
+
+  CallTreeNode getRoot() {
+    return root;
+  }
+
+  String getDirectiveFrame(Directive directive) {
+    return directiveFrames.computeIfAbsent(directive, d -> String.format("%s:%d #%s", d.getTemplateName(), d.getLine(), d.getName()));
+  }
+
+  /**
+   * Writes the call tree as collapsed stacks, one {@code frame;frame;frame self-time-in-microseconds} line per stack,
+   * as consumed by flame graph tools, e.g. flamegraph.pl or speedscope.
+   */
+  public void writeCollapsedStacks(Path path) {
+    try {
+      Path parent = path.toAbsolutePath().getParent();
+      if (parent != null) {
+        Files.createDirectories(parent);
+      }
+      try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+        writeCollapsedStacks(writer);
+      }
+      LOGGER.info("Template profile written to: {}", path);
+    } catch (IOException ioe) {
+      LOGGER.error("An error occurred while writing template profile: {}", path);
+      throw new RuntimeException(ioe);
+    }
+  }
+
+  void writeCollapsedStacks(Writer writer) throws IOException {
+    for (CallTreeNode child : root.getChildren()) {
+      writeCollapsedStacks(writer, child, sanitize(child.getFrame()));
+    }
+  }
+
+  /**
+   * Logs frames taking most of the time by themselves, summed over all their call stacks.
+   *
+   * @param framesCount Maximal number of logged frames.
+   */
+  public void logSummary(int framesCount) {
+    Map<String, long[]> frames = new HashMap<>();
+    for (CallTreeNode child : root.getChildren()) {
+      sumFrames(child, frames);
+    }
+    List<Map.Entry<String, long[]>> sortedFrames = new ArrayList<>(frames.entrySet());
+    sortedFrames.sort(Comparator.comparingLong((Map.Entry<String, long[]> entry) -> entry.getValue()[1]).reversed());
+    for (Map.Entry<String, long[]> entry : sortedFrames.subList(0, Math.min(framesCount, sortedFrames.size()))) {
+      LOGGER.info("Profile of {}: {} calls, self {} ms", entry.getKey(), entry.getValue()[0],
+          TimeUnit.NANOSECONDS.toMillis(entry.getValue()[1]));
+    }
+  }
+
+  private void writeCollapsedStacks(Writer writer, CallTreeNode node, String stack) throws IOException {
+    long selfMicros = TimeUnit.NANOSECONDS.toMicros(node.getSelfNanos());
+    if (selfMicros > 0) {
+      writer.write(stack + " " + selfMicros + "\n");
+    }
+    for (CallTreeNode child : node.getChildren()) {
+      writeCollapsedStacks(writer, child, stack + ";" + sanitize(child.getFrame()));
+    }
+  }
+
+  private void sumFrames(CallTreeNode node, Map<String, long[]> frames) {
+    long[] sums = frames.computeIfAbsent(node.getFrame(), frame -> new long[2]);
+    sums[0] += node.getCallsCount();
+    sums[1] += node.getSelfNanos();
+    for (CallTreeNode child : node.getChildren()) {
+      sumFrames(child, frames);
+    }
+  }
+
+  // semicolons separate frames and newlines separate stacks in collapsed format
+  private static String sanitize(String frame) {
+    return frame.replace(';', ':').replace('\n', ' ');
+  }
+}
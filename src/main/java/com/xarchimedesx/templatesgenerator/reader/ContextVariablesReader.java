@@ -1,8 +1,5 @@
 package com.xarchimedesx.templatesgenerator.reader;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.velocity.shaded.commons.io.FilenameUtils;
 import org.slf4j.Logger;
@@ -11,77 +8,284 @@ import org.slf4j.LoggerFactory;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.nio.file.FileSystem;
-import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class ContextVariablesReader {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(ContextVariablesReader.class);
-  static final List<String> SUPPORTED_EXTENSIONS = Arrays.asList("json", "yaml", "yml");
+  private static final String COMBINED_VARIABLES_NAME = "COMBINED";
+  private final VariablesParsers parsers;
+  private final VariablesSnapshotCache snapshotCache;
+  private final Map<String, Map<String, Object>> memoizedContents;
+  private final long lazyJsonMinSizeBytes;
+  private final ForkJoinPool pool;
+  private final int readAheadWindow;
+
+  public ContextVariablesReader() {
+    this(VariablesParsers.defaults());
+  }
+
+  public ContextVariablesReader(VariablesParsers parsers) {
+    this(parsers, null);
+  }
+
+  /**
+   * @param parsers       - registry of parsers for supported variables files formats.
+   * @param snapshotCache - cache of parsed local variables files. May be {@code null} to parse every file on every read.
+   */
+  public ContextVariablesReader(VariablesParsers parsers, VariablesSnapshotCache snapshotCache) {
+    this(parsers, snapshotCache, false);
+  }
+
+  /**
+   * @param parsers       - registry of parsers for supported variables files formats.
+   * @param snapshotCache - cache of parsed local variables files. May be {@code null} to parse every file on every read.
+   * @param isMemoizing   - whether to keep parsed content of every read file in memory and reuse it on next reads,
+   *                      e.g. when many renderings share variables files. Changes of files are not tracked then.
+   *                      Every read gets its own deep copy of parsed maps and lists, so values modified by one template,
+   *                      e.g. by {@code $list.add()}, are not seen by others. Lazily read JSON files are shared, with only
+   *                      the top-level map copied, as their nested values are read-only views.
+   */
+  public ContextVariablesReader(VariablesParsers parsers, VariablesSnapshotCache snapshotCache, boolean isMemoizing) {
+    this(parsers, snapshotCache, isMemoizing, -1);
+  }
+
+  /**
+   * @param parsers              - registry of parsers for supported variables files formats.
+   * @param snapshotCache        - cache of parsed local variables files. May be {@code null} to parse every file on every read.
+   * @param isMemoizing          - whether to keep parsed content of every read file in memory and reuse it on next reads.
+   *                             Every read gets its own deep copy of memoized content.
+   * @param lazyJsonMinSizeBytes - minimal size of local .json files, which are memory-mapped and materialized lazily
+   *                             as {@link LazyJsonMap} instead of being parsed. Negative value disables lazy loading.
+   */
+  public ContextVariablesReader(VariablesParsers parsers, VariablesSnapshotCache snapshotCache, boolean isMemoizing,
+                                long lazyJsonMinSizeBytes) {
+    this(parsers, snapshotCache, isMemoizing, lazyJsonMinSizeBytes, 1);
+  }
+
+  /**
+   * @param parsers              - registry of parsers for supported variables files formats.
+   * @param snapshotCache        - cache of parsed local variables files. May be {@code null} to parse every file on every read.
+   * @param isMemoizing          - whether to keep parsed content of every read file in memory and reuse it on next reads.
+   *                             Nested maps and lists of memoized content are shared read-only views.
+   * @param lazyJsonMinSizeBytes - minimal size of local .json files, which are memory-mapped and materialized lazily.
+   *                             Negative value disables lazy loading.
+   * @param parallelism          - number of fork-join threads walking variables directories and parsing variables files.
+   *                             Files are still returned in the same order and with the same names as by a single thread.
+   *                             {@code 1} reads everything in the calling thread.
+   */
+  public ContextVariablesReader(VariablesParsers parsers, VariablesSnapshotCache snapshotCache, boolean isMemoizing,
+                                long lazyJsonMinSizeBytes, int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be a positive number, but was: " + parallelism);
+    }
+    this.parsers = parsers;
+    this.snapshotCache = snapshotCache;
+    this.memoizedContents = isMemoizing ? new ConcurrentHashMap<>() : null;
+    this.lazyJsonMinSizeBytes = lazyJsonMinSizeBytes;
+    // fork-join workers are daemon threads, which terminate when idle, so the pool does not need to be shut down
+    this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    // parsed files wait for the consumer in memory, so only a few of them are read ahead per thread
+    this.readAheadWindow = 2 * parallelism;
+  }
 
   /**
    *
    * @param parsedVariablesPaths - list of paths to variables to be processed. Every path can be a file path or a directory path.
    * @param isCombined - Whether to combine multiple variables files' content inside single collection.
    * @return List of tuples, where the left side is the name of the file which was processed and the right side - its content.
-   * If {@code isCombined == true} - merges all the content inside single collection.
+   * If {@code isCombined == true} - merges all the content inside single collection with {@link MergeStrategy#NESTED} strategy.
    */
 
   public List<Pair<String, Map<String, Object>>> getVariables(List<String> parsedVariablesPaths, boolean isCombined) {
-    List<Pair<String, Map<String, Object>>> variables;
     if (isCombined) {
-      variables = Stream.of(
-          Pair.of("COMBINED",
-              parsedVariablesPaths.stream()
-                  .map(this::processPath)
-                  .flatMap(List::stream)
-                  .map(Pair::getValue)
-                  .flatMap(m -> m.entrySet().stream())
-                  .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, Arrays::asList))
-          )
-      ).collect(Collectors.toList());
+      return Collections.singletonList(getCombinedVariables(parsedVariablesPaths, MergeStrategy.NESTED));
     } else {
-      variables = parsedVariablesPaths.stream()
-          .map(this::processPath)
-          .flatMap(List::stream)
-          .collect(Collectors.toList());
+      return streamVariables(discoverVariablesFiles(parsedVariablesPaths)).collect(Collectors.toList());
     }
+  }
 
-    if (variables.isEmpty()) {
-      LOGGER.warn("No data was read from provides variables paths!");
+  /**
+   * Reads variables files one by one, merging every file into the result before reading the next one.
+   *
+   * @param parsedVariablesPaths - list of paths to variables to be processed. Every path can be a file path or a directory path.
+   * @param mergeStrategy - how values of the same keys in different files are merged.
+   * @return Tuple with "COMBINED" name and merged content of all files.
+   */
+  public Pair<String, Map<String, Object>> getCombinedVariables(List<String> parsedVariablesPaths, MergeStrategy mergeStrategy) {
+    return combineVariables(streamVariables(discoverVariablesFiles(parsedVariablesPaths)), mergeStrategy);
+  }
+
+  /**
+   * Merges already read variables one by one, in the order of the stream.
+   *
+   * @param variables - variables files' contents, e.g. as returned by {@link #streamVariables(List)}.
+   * @param mergeStrategy - how values of the same keys in different files are merged.
+   * @return Tuple with "COMBINED" name and merged content of all files.
+   */
+  public Pair<String, Map<String, Object>> combineVariables(Stream<Pair<String, Map<String, Object>>> variables, MergeStrategy mergeStrategy) {
+    VariablesMerger merger = new VariablesMerger(mergeStrategy);
+    variables.forEach(var -> merger.merge(var.getValue()));
+    return Pair.of(COMBINED_VARIABLES_NAME, merger.getMerged());
+  }
+
+  /**
+   * Finds all supported variables files without reading their content.
+   *
+   * @param parsedVariablesPaths - list of paths to variables to be processed. Every path can be a file path or a directory path.
+   * @return List of discovered variables files in the order they should be processed.
+   */
+  public List<VariablesFile> discoverVariablesFiles(List<String> parsedVariablesPaths) {
+    return discoverFiles(parsedVariablesPaths, this::extensionFilter);
+  }
+
+  /**
+   * Finds all variables files records can be streamed from by {@link #streamRecords(VariablesFile, String, String)}:
+   * .ndjson/.jsonl, .json and .yaml/.yml ones.
+   *
+   * @param parsedVariablesPaths - list of paths to variables to be processed. Every path can be a file path or a directory path.
+   * @return List of discovered variables files in the order they should be processed.
+   */
+  public List<VariablesFile> discoverRecordsFiles(List<String> parsedVariablesPaths) {
+    return discoverFiles(parsedVariablesPaths, this::recordsExtensionFilter);
+  }
+
+  /**
+   * Lazily reads given variables files. Every file is parsed only when the stream reaches it,
+   * so a consumer processing elements one by one holds at most one file's content at a time.
+   *
+   * @param variablesFiles - variables files, as returned by {@link #discoverVariablesFiles(List)}.
+   * @return Stream of tuples, where the left side is the name of the file and the right side - its content.
+   */
+  public Stream<Pair<String, Map<String, Object>>> streamVariables(List<VariablesFile> variablesFiles) {
+    return streamVariables(variablesFiles, this::readVariablesFile);
+  }
+
+  /**
+   * Reads given variables files with given function, e.g. one measuring {@link #readVariablesFile(VariablesFile)}.
+   * With parallelism above 1 files are read by the pool a few files ahead of the consumer. Then a failure of a single file
+   * does not stop the others: all failures are logged per file and thrown together after the last successfully read file.
+   *
+   * @param variablesFiles - variables files, as returned by {@link #discoverVariablesFiles(List)}.
+   * @param fileReader     - function reading a single variables file, e.g. into a tuple of its name and content.
+   * @return Stream of results of the function, in the order of files.
+   */
+  public <R> Stream<R> streamVariables(List<VariablesFile> variablesFiles, Function<VariablesFile, R> fileReader) {
+    if (pool == null || variablesFiles.size() < 2) {
+      return variablesFiles.stream().map(fileReader);
+    }
+    Iterator<R> iterator = new ReadAheadIterator<>(variablesFiles.iterator(), fileReader, pool, readAheadWindow);
+    return StreamSupport.stream(Spliterators.spliterator(iterator, variablesFiles.size(), Spliterator.ORDERED), false);
+  }
+
+  /**
+   * Lazily reads records of given variables file with Jackson's incremental parser, so only the record being consumed
+   * is held in memory regardless of the size of the file. The stream has to be closed to release the file.
+   *
+   * @param variablesFile - .ndjson/.jsonl file of root-level objects, or .json or .yaml/.yml file with an array of objects.
+   * @param arrayPath     - dot-separated keys leading to the array of records in .json and .yaml/.yml files,
+   *                      {@code null} or empty if the root element is the array. Ignored for .ndjson/.jsonl files.
+   * @param recordKey     - key of records, which value names the record. If it is {@code null} or a record lacks it,
+   *                      the record is named by the base name of the file and its 1-based number, e.g. "users-3".
+   * @return Stream of tuples, where the left side is the name of the record and the right side - its content.
+   */
+  public Stream<Pair<String, Map<String, Object>>> streamRecords(VariablesFile variablesFile, String arrayPath, String recordKey) {
+    RecordsIterator records;
+    try {
+      records = new RecordsIterator(variablesFile, getInputStream(variablesFile.getPath()), arrayPath, recordKey);
+    } catch (IOException ioe) {
+      LOGGER.error("Cannot read records of variables file: {}", variablesFile.getPath());
+      throw new RuntimeException(ioe);
     }
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(records, Spliterator.ORDERED | Spliterator.NONNULL), false)
+        .onClose(() -> {
+          try {
+            records.close();
+          } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+          }
+        });
+  }
 
-    return variables;
+  public Pair<String, Map<String, Object>> readVariablesFile(VariablesFile variablesFile) {
+    try {
+      return Pair.of(variablesFile.getName(), getFileContent(variablesFile));
+    } catch (IOException ioe) {
+      LOGGER.error("Cannot open variables file: {}", variablesFile.getPath());
+      throw new RuntimeException(ioe);
+    }
   }
 
   // package-private for tests
   List<Pair<String, Map<String, Object>>> processPath(String variablesPath) {
-    try {
-      List<Pair<String, Map<String, Object>>> namedVariables = new ArrayList<>();
-      URI uri = getUriFromPath(variablesPath);
-      List<Path> discoveredPaths = inspectUri(uri);
+    return streamVariables(discoverPath(variablesPath, this::extensionFilter)).collect(Collectors.toList());
+  }
 
-      for (Path discoveredPath : discoveredPaths) {
-        namedVariables.add(Pair.of(
-            FilenameUtils.getBaseName(discoveredPath.toString()),
-            getFileContent(getInputStream(discoveredPath, uri.getScheme()))
-        ));
+  private List<VariablesFile> discoverFiles(List<String> parsedVariablesPaths, Predicate<Path> filter) {
+    List<VariablesFile> variablesFiles = pool == null
+        ? parsedVariablesPaths.stream()
+        .map(variablesPath -> discoverPath(variablesPath, filter))
+        .flatMap(List::stream)
+        .collect(Collectors.toList())
+        : discoverPathsInParallel(parsedVariablesPaths, filter);
+
+    if (variablesFiles.isEmpty()) {
+      LOGGER.warn("No data was read from provides variables paths!");
+    }
+
+    return variablesFiles;
+  }
+
+  private List<VariablesFile> discoverPathsInParallel(List<String> parsedVariablesPaths, Predicate<Path> filter) {
+    List<Pair<String, ForkJoinTask<List<VariablesFile>>>> discoveries = parsedVariablesPaths.stream()
+        .map(variablesPath -> Pair.of(variablesPath, pool.submit(() -> discoverPath(variablesPath, filter))))
+        .collect(Collectors.toList());
+    List<VariablesFile> variablesFiles = new ArrayList<>();
+    List<Throwable> failures = new ArrayList<>();
+    for (Pair<String, ForkJoinTask<List<VariablesFile>>> discovery : discoveries) {
+      try {
+        variablesFiles.addAll(discovery.getValue().join());
+      } catch (RuntimeException re) {
+        failures.add(re);
       }
-      return namedVariables;
+    }
+    if (!failures.isEmpty()) {
+      RuntimeException re = new RuntimeException(
+          String.format("Discovery failed for %d of %d variables paths!", failures.size(), parsedVariablesPaths.size()));
+      failures.forEach(re::addSuppressed);
+      throw re;
+    }
+    return variablesFiles;
+  }
+
+  private List<VariablesFile> discoverPath(String variablesPath, Predicate<Path> filter) {
+    try {
+      URI uri = getUriFromPath(variablesPath);
+      return inspectUri(uri, filter).stream()
+          .map(discoveredPath -> new VariablesFile(discoveredPath, uri.getScheme()))
+          .collect(Collectors.toList());
     } catch (IOException | URISyntaxException ex) {
       LOGGER.error("Cannot open variables file: {}", variablesPath);
       throw new RuntimeException(ex);
@@ -102,51 +306,120 @@ public class ContextVariablesReader {
     }
   }
 
-  private List<Path> inspectUri(URI uri) throws URISyntaxException, IOException {
+  private List<Path> inspectUri(URI uri, Predicate<Path> filter) throws IOException {
     String scheme = uri.getScheme();
     if (scheme.equals("file")) {
-      return walkThroughPath(uri);
+      return walkThroughPath(uri, filter);
     } else if (scheme.equals("jar")) {
-      // to properly convert a URI to a Path we need to create a JAR file system first
-      try (FileSystem fs = FileSystems.newFileSystem(uri, Collections.emptyMap())) {
-        return walkThroughPath(uri);
-      }
+      // the JAR is opened and indexed only once, then its entries are looked up in the index instead of being walked
+      return JarIndex.findEntries(uri).stream()
+          .filter(filter)
+          .collect(Collectors.toList());
     } else {
       throw new IllegalArgumentException("Unsupported scheme in given URI: " + uri);
     }
   }
 
-  private List<Path> walkThroughPath(URI uri) throws IOException {
-    try (Stream<Path> stream = Files.walk(Paths.get(uri))) {
+  private List<Path> walkThroughPath(URI uri, Predicate<Path> filter) throws IOException {
+    Path path = Paths.get(uri);
+    if (pool != null && Files.isDirectory(path)) {
+      try {
+        // the directory is walked in no particular order, so paths are sorted just like the ones walked by a single thread
+        return pool.invoke(new DirectoryWalkTask(path, filter)).stream()
+            .sorted()
+            .collect(Collectors.toList());
+      } catch (UncheckedIOException uioe) {
+        throw uioe.getCause();
+      }
+    }
+    try (Stream<Path> stream = Files.walk(path)) {
       return stream.filter(Files::isRegularFile)
-          .filter(this::extensionFilter)
+          .filter(filter)
           .sorted()
           .collect(Collectors.toList());
     }
   }
 
-  private BufferedInputStream getInputStream(Path path, String scheme) throws IOException {
-    InputStream inputStream = scheme.equals("file")
-        ? Files.newInputStream(path)
-        : ContextVariablesReader.class.getResourceAsStream(path.toString());
-    if (inputStream != null) {
-      return new BufferedInputStream(inputStream);
-    } else {
-      throw new IOException("Cannot open input stream for file: " + path);
+  // JAR entries are paths of JAR file systems kept open by JarIndex, so they are read just like local files
+  private BufferedInputStream getInputStream(Path path) throws IOException {
+    return new BufferedInputStream(Files.newInputStream(path));
+  }
+
+  private Map<String, Object> getFileContent(VariablesFile variablesFile) throws IOException {
+    if (memoizedContents == null) {
+      return parseFileContent(variablesFile);
+    }
+    String key = variablesFile.getScheme() + ":" + variablesFile.getPath().toAbsolutePath();
+    Map<String, Object> content = memoizedContents.get(key);
+    if (content == null) {
+      content = parseFileContent(variablesFile);
+      Map<String, Object> concurrentlyParsedContent = memoizedContents.putIfAbsent(key, content);
+      content = concurrentlyParsedContent != null ? concurrentlyParsedContent : content;
+    }
+    // Velocity context keeps #set references in the top-level map and templates may modify nested values,
+    // so every reader gets its own copy of all of them
+    return content instanceof LazyJsonMap ? ((LazyJsonMap) content).copy() : deepCopy(content);
+  }
+
+  private static Map<String, Object> deepCopy(Map<String, Object> content) {
+    Map<String, Object> copy = new LinkedHashMap<>(content.size() * 4 / 3 + 1);
+    content.forEach((key, value) -> copy.put(key, deepCopyValue(value)));
+    return copy;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Object deepCopyValue(Object value) {
+    if (value instanceof Map) {
+      return deepCopy((Map<String, Object>) value);
     }
+    if (value instanceof List) {
+      List<Object> copy = new ArrayList<>(((List<Object>) value).size());
+      ((List<Object>) value).forEach(element -> copy.add(deepCopyValue(element)));
+      return copy;
+    }
+    return value;
   }
 
-  private Map<String, Object> getFileContent(BufferedInputStream fileStream) throws IOException {
-    return new ObjectMapper(new YAMLFactory()).readValue(fileStream, new TypeReference<Map<String, Object>>() {
-    });
+  private Map<String, Object> parseFileContent(VariablesFile variablesFile) throws IOException {
+    if (isLazyJson(variablesFile)) {
+      return LazyJsonMap.open(variablesFile.getPath());
+    }
+    String extension = FilenameUtils.getExtension(variablesFile.getPath().toString());
+    VariablesParser parser = parsers.getParser(extension)
+        .orElseThrow(() -> new IOException("No parser registered for variables file: " + variablesFile));
+    if (snapshotCache != null && variablesFile.getScheme().equals("file")) {
+      return snapshotCache.load(variablesFile.getPath(), parser);
+    }
+    try (BufferedInputStream fileStream = getInputStream(variablesFile.getPath())) {
+      return parser.parse(fileStream);
+    }
+  }
+
+  private boolean isLazyJson(VariablesFile variablesFile) throws IOException {
+    return lazyJsonMinSizeBytes >= 0
+        && variablesFile.getScheme().equals("file")
+        && FilenameUtils.isExtension(variablesFile.getPath().toString(), "json")
+        && Files.size(variablesFile.getPath()) >= lazyJsonMinSizeBytes;
   }
 
   // package-private for tests
   boolean extensionFilter(Path path) {
-    if (SUPPORTED_EXTENSIONS.contains(FilenameUtils.getExtension(path.toString()))) {
+    if (parsers.getParser(FilenameUtils.getExtension(path.toString())).isPresent()) {
+      return true;
+    } else {
+      LOGGER.warn("Unrecognized variables file format! Templates-generator supports only following file extensions: {}",
+          parsers.getSupportedExtensions());
+      LOGGER.warn("Skipping file: {}", path);
+      return false;
+    }
+  }
+
+  private boolean recordsExtensionFilter(Path path) {
+    if (RecordsIterator.isRecordsFile(FilenameUtils.getExtension(path.toString()))) {
       return true;
     } else {
-      LOGGER.warn("Unrecognized variables file format! Templates-generator supports only .json and .yml/.yaml file extensions.");
+      LOGGER.warn("Unrecognized records file format! Templates-generator streams records only from following file extensions: {}",
+          RecordsIterator.RECORDS_EXTENSIONS);
       LOGGER.warn("Skipping file: {}", path);
       return false;
     }
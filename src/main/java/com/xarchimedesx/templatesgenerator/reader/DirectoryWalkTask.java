@@ -0,0 +1,53 @@
+package com.xarchimedesx.templatesgenerator.reader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+
+/**
+ * Fork-join counterpart of {@link Files#walk(Path, java.nio.file.FileVisitOption...)} collecting accepted regular files
+ * under a directory, where every subdirectory is listed by a separate task. Like {@code Files.walk}, it does not follow
+ * symbolic links to directories, but accepts symbolic links to regular files. Files are returned in no particular order.
+ */
+class DirectoryWalkTask extends RecursiveTask<List<Path>> {
+
+  private final Path directory;
+  private final Predicate<Path> filter;
+
+  DirectoryWalkTask(Path directory, Predicate<Path> filter) {
+    this.directory = directory;
+    this.filter = filter;
+  }
+
+  @Override
+  protected List<Path> compute() {
+    List<Path> files = new ArrayList<>();
+    List<DirectoryWalkTask> subdirectoryTasks = new ArrayList<>();
+    try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+      for (Path entry : entries) {
+        BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        if (attributes.isDirectory()) {
+          DirectoryWalkTask subdirectoryTask = new DirectoryWalkTask(entry, filter);
+          subdirectoryTask.fork();
+          subdirectoryTasks.add(subdirectoryTask);
+        } else if ((attributes.isRegularFile() || attributes.isSymbolicLink() && Files.isRegularFile(entry)) && filter.test(entry)) {
+          files.add(entry);
+        }
+      }
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+    for (DirectoryWalkTask subdirectoryTask : subdirectoryTasks) {
+      files.addAll(subdirectoryTask.join());
+    }
+    return files;
+  }
+}
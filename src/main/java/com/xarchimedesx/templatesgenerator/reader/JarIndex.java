@@ -0,0 +1,98 @@
+package com.xarchimedesx.templatesgenerator.reader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Index of regular file entries of a JAR, built once per JAR and shared by all readers in the JVM.
+ * The zip file system of the JAR is kept open, like JARs of the class path are, so returned paths can be read directly.
+ */
+final class JarIndex {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(JarIndex.class);
+  private static final String ENTRY_SEPARATOR = "!/";
+  private static final Map<URI, JarIndex> INDEXES = new ConcurrentHashMap<>();
+  private final NavigableMap<String, Path> entries;
+
+  private JarIndex(NavigableMap<String, Path> entries) {
+    this.entries = entries;
+  }
+
+  /**
+   * @param uri URI of an entry inside a JAR, e.g. {@code jar:file:/app.jar!/variables}.
+   * @return Regular file entries being the entry or located under it, sorted by path.
+   */
+  static List<Path> findEntries(URI uri) throws IOException {
+    String schemeSpecificPart = uri.getRawSchemeSpecificPart();
+    int separatorIndex = schemeSpecificPart.indexOf(ENTRY_SEPARATOR);
+    if (separatorIndex < 0) {
+      throw new IllegalArgumentException("No JAR entry in given URI: " + uri);
+    }
+    URI jarUri = URI.create(uri.getScheme() + ":" + schemeSpecificPart.substring(0, separatorIndex));
+    String entryPath = URI.create(schemeSpecificPart.substring(separatorIndex + 1)).getPath();
+    try {
+      return INDEXES.computeIfAbsent(jarUri, JarIndex::build).find(entryPath);
+    } catch (UncheckedIOException uioe) {
+      throw uioe.getCause();
+    }
+  }
+
+  private static JarIndex build(URI jarUri) {
+    long startMillis = System.currentTimeMillis();
+    FileSystem fileSystem;
+    try {
+      fileSystem = FileSystems.newFileSystem(jarUri, Collections.emptyMap());
+    } catch (FileSystemAlreadyExistsException fsaee) {
+      // opened by someone else in this JVM, e.g. a previous version of the generator did not close it
+      fileSystem = FileSystems.getFileSystem(jarUri);
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+
+    NavigableMap<String, Path> entries = new TreeMap<>();
+    for (Path root : fileSystem.getRootDirectories()) {
+      try (Stream<Path> paths = Files.walk(root)) {
+        paths.filter(Files::isRegularFile).forEach(path -> entries.put(path.toString(), path));
+      } catch (IOException ioe) {
+        throw new UncheckedIOException(ioe);
+      }
+    }
+    LOGGER.debug("Indexed {} entries of {} in {} ms.", entries.size(), jarUri, System.currentTimeMillis() - startMillis);
+    return new JarIndex(entries);
+  }
+
+  private List<Path> find(String entryPath) {
+    String normalizedPath = entryPath.endsWith("/") ? entryPath.substring(0, entryPath.length() - 1) : entryPath;
+    Path entry = entries.get(normalizedPath);
+    if (entry != null) {
+      return Collections.singletonList(entry);
+    }
+    // entries under a directory are a contiguous range of sorted paths, as '/' is followed by '0' in character order
+    String directoryPrefix = normalizedPath + "/";
+    return entries.subMap(directoryPrefix, true, normalizedPath + "0", false).values().stream()
+        .sorted()
+        .collect(Collectors.toList());
+  }
+
+  // package-private for tests
+  static void clear() {
+    INDEXES.clear();
+  }
+}
@@ -0,0 +1,190 @@
+package com.xarchimedesx.templatesgenerator.reader;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Memory-mapped JSON file with an index of its top-level keys, shared by all {@link LazyJsonMap} views of the file.
+ * <p>
+ * Index of an object or an array keeps its scalar values themselves and only byte offsets of nested objects and arrays.
+ * A nested container is indexed the same way on first access, into a read-only {@link LazyJsonObject} or {@link LazyJsonList}
+ * view, which is then kept for next accesses. So dereferencing a single path materializes only containers along it.
+ */
+class LazyJsonIndex {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LazyJsonIndex.class);
+  // a single mapping cannot exceed 2GB, so larger files are mapped by chunks
+  static final long DEFAULT_CHUNK_SIZE = 1L << 30;
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private final Path path;
+  private final List<ByteBuffer> chunks;
+  private final long chunkSize;
+  private final LazyJsonObject root;
+
+  LazyJsonIndex(Path path, long chunkSize) throws IOException {
+    this.path = path;
+    this.chunkSize = chunkSize;
+    this.chunks = map(path, chunkSize);
+    Object root = indexAt(0);
+    if (!(root instanceof LazyJsonObject)) {
+      throw new IOException("Lazily loaded variables file must contain JSON object: " + path);
+    }
+    this.root = (LazyJsonObject) root;
+  }
+
+  Set<String> keySet() {
+    return root.keySet();
+  }
+
+  boolean containsKey(Object key) {
+    return root.containsKey(key);
+  }
+
+  Object get(Object key) {
+    return root.get(key);
+  }
+
+  Object getIfMaterialized(Object key) {
+    return root.getIfMaterialized(key);
+  }
+
+  // package-private for tests
+  boolean isMaterialized(String key) {
+    return root.isMaterialized(key);
+  }
+
+  /**
+   * @param entry Indexed value, i.e. a scalar value or an offset of a nested container.
+   * @return Whether the entry is an offset, which has to be {@link #resolve(Object) resolved} into a container view.
+   */
+  static boolean isOffset(Object entry) {
+    return entry instanceof Offset;
+  }
+
+  /**
+   * @return View of the container at the offset of given entry.
+   */
+  Object resolve(Object entry) {
+    long offset = ((Offset) entry).value;
+    try {
+      return indexAt(offset);
+    } catch (IOException ioe) {
+      LOGGER.error("Cannot read variables of file {} at offset {}: {}", path, offset, ioe.getMessage());
+      throw new RuntimeException(ioe);
+    }
+  }
+
+  private static List<ByteBuffer> map(Path path, long chunkSize) throws IOException {
+    List<ByteBuffer> chunks = new ArrayList<>();
+    // mappings stay valid after the channel is closed
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      for (long position = 0; position < size; position += chunkSize) {
+        chunks.add(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(chunkSize, size - position)));
+      }
+    }
+    return chunks;
+  }
+
+  private Object indexAt(long offset) throws IOException {
+    try (JsonParser parser = MAPPER.getFactory().createParser(new MappedInputStream(offset))) {
+      JsonToken token = parser.nextToken();
+      if (token == JsonToken.START_OBJECT) {
+        Map<String, Object> entries = new LinkedHashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String key = parser.getCurrentName();
+          parser.nextToken();
+          entries.put(key, indexValue(parser, offset));
+        }
+        return new LazyJsonObject(this, entries);
+      }
+      if (token == JsonToken.START_ARRAY) {
+        List<Object> elements = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+          elements.add(indexValue(parser, offset));
+        }
+        return new LazyJsonList(this, elements);
+      }
+      return token == null ? null : MAPPER.readValue(parser, Object.class);
+    }
+  }
+
+  private static Object indexValue(JsonParser parser, long baseOffset) throws IOException {
+    JsonToken valueToken = parser.currentToken();
+    if (valueToken == JsonToken.START_OBJECT || valueToken == JsonToken.START_ARRAY) {
+      // the parser counts bytes from the offset it was created at
+      Offset offset = new Offset(baseOffset + parser.getTokenLocation().getByteOffset());
+      parser.skipChildren();
+      return offset;
+    }
+    return MAPPER.readValue(parser, Object.class);
+  }
+
+  private static class Offset {
+    private final long value;
+
+    private Offset(long value) {
+      this.value = value;
+    }
+  }
+
+  /**
+   * Reads mapped chunks from given position on, without copying them to heap beyond the parser's buffer.
+   */
+  private class MappedInputStream extends InputStream {
+    private int chunkIndex;
+    private ByteBuffer chunk;
+
+    private MappedInputStream(long position) {
+      chunkIndex = (int) (position / chunkSize);
+      if (chunkIndex < chunks.size()) {
+        chunk = chunks.get(chunkIndex).duplicate();
+        chunk.position((int) (position % chunkSize));
+      }
+    }
+
+    @Override
+    public int read() {
+      if (!hasRemaining()) {
+        return -1;
+      }
+      return chunk.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      if (!hasRemaining()) {
+        return -1;
+      }
+      int readCount = Math.min(length, chunk.remaining());
+      chunk.get(bytes, offset, readCount);
+      return readCount;
+    }
+
+    private boolean hasRemaining() {
+      while (chunk != null && !chunk.hasRemaining()) {
+        chunkIndex++;
+        chunk = chunkIndex < chunks.size() ? chunks.get(chunkIndex).duplicate() : null;
+      }
+      return chunk != null;
+    }
+  }
+}
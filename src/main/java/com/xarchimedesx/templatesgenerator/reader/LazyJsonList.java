@@ -0,0 +1,48 @@
+package com.xarchimedesx.templatesgenerator.reader;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Read-only view of a JSON array nested in a lazily loaded variables file. Objects and arrays among its elements
+ * are indexed only when they are first read and then kept for next reads, also by other views of the same file.
+ */
+public final class LazyJsonList extends AbstractList<Object> implements RandomAccess {
+
+  private final LazyJsonIndex index;
+  private final List<Object> elements;
+  private final AtomicReferenceArray<Object> materializedElements;
+
+  LazyJsonList(LazyJsonIndex index, List<Object> elements) {
+    this.index = index;
+    this.elements = elements;
+    this.materializedElements = new AtomicReferenceArray<>(elements.size());
+  }
+
+  @Override
+  public Object get(int i) {
+    Object element = elements.get(i);
+    if (!LazyJsonIndex.isOffset(element)) {
+      return element;
+    }
+    Object materializedElement = materializedElements.get(i);
+    if (materializedElement == null) {
+      // concurrent readers may both index the element, but all of them get the view stored first
+      materializedElements.compareAndSet(i, null, index.resolve(element));
+      materializedElement = materializedElements.get(i);
+    }
+    return materializedElement;
+  }
+
+  @Override
+  public int size() {
+    return elements.size();
+  }
+
+  // package-private for tests
+  boolean isMaterialized(int i) {
+    return materializedElements.get(i) != null;
+  }
+}
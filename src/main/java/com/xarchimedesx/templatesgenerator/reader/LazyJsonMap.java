@@ -0,0 +1,161 @@
+package com.xarchimedesx.templatesgenerator.reader;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Variables of a memory-mapped JSON file, which materializes value of a top-level key only when it is first read,
+ * so heap use follows what a template dereferences rather than the file size. Nested objects and arrays are
+ * read-only {@link LazyJsonObject} and {@link LazyJsonList} views, which materialize their values the same way,
+ * so e.g. {@code $users.get(0).personal.name} does not materialize the other users.
+ * <p>
+ * Values put or removed, e.g. by #set, are kept in this view only and do not affect other views of the same file.
+ * Iterating over entries, e.g. when merging files in combined mode, materializes top-level values only.
+ */
+public class LazyJsonMap extends AbstractMap<String, Object> {
+
+  private static final Object REMOVED = new Object();
+  private final LazyJsonIndex index;
+  private final Map<String, Object> overlay = new HashMap<>();
+
+  private LazyJsonMap(LazyJsonIndex index) {
+    this.index = index;
+  }
+
+  /**
+   * Maps the file and indexes its top-level keys, without materializing their values.
+   *
+   * @param path JSON file with an object as the root element.
+   */
+  public static LazyJsonMap open(Path path) throws IOException {
+    return open(path, LazyJsonIndex.DEFAULT_CHUNK_SIZE);
+  }
+
+  // package-private for tests
+  static LazyJsonMap open(Path path, long chunkSize) throws IOException {
+    return new LazyJsonMap(new LazyJsonIndex(path, chunkSize));
+  }
+
+  /**
+   * @return New view of the same file, sharing already materialized values, but not values put to this view.
+   */
+  public LazyJsonMap copy() {
+    return new LazyJsonMap(index);
+  }
+
+  @Override
+  public Object get(Object key) {
+    if (overlay.containsKey(key)) {
+      Object value = overlay.get(key);
+      return value == REMOVED ? null : value;
+    }
+    return index.get(key);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    if (overlay.containsKey(key)) {
+      return overlay.get(key) != REMOVED;
+    }
+    return index.containsKey(key);
+  }
+
+  /**
+   * @return Previous value only if it was already materialized, in order not to parse a value being overwritten.
+   */
+  @Override
+  public Object put(String key, Object value) {
+    Object previousValue = peek(key);
+    overlay.put(key, value);
+    return previousValue;
+  }
+
+  @Override
+  public Object remove(Object key) {
+    Object previousValue = peek(key);
+    if (index.containsKey(key)) {
+      overlay.put((String) key, REMOVED);
+    } else {
+      overlay.remove(key);
+    }
+    return previousValue;
+  }
+
+  @Override
+  public Set<String> keySet() {
+    Set<String> keys = new LinkedHashSet<>(index.keySet());
+    overlay.forEach((key, value) -> {
+      if (value == REMOVED) {
+        keys.remove(key);
+      } else {
+        keys.add(key);
+      }
+    });
+    return keys;
+  }
+
+  @Override
+  public int size() {
+    return keySet().size();
+  }
+
+  @Override
+  public Set<Entry<String, Object>> entrySet() {
+    Map<String, Object> materialized = new LinkedHashMap<>();
+    for (String key : keySet()) {
+      materialized.put(key, get(key));
+    }
+    return new AbstractSet<Entry<String, Object>>() {
+      @Override
+      public Iterator<Entry<String, Object>> iterator() {
+        Iterator<Entry<String, Object>> iterator = materialized.entrySet().iterator();
+        return new Iterator<Entry<String, Object>>() {
+          private Entry<String, Object> current;
+
+          @Override
+          public boolean hasNext() {
+            return iterator.hasNext();
+          }
+
+          @Override
+          public Entry<String, Object> next() {
+            current = iterator.next();
+            return new SimpleImmutableEntry<>(current);
+          }
+
+          @Override
+          public void remove() {
+            iterator.remove();
+            LazyJsonMap.this.remove(current.getKey());
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return materialized.size();
+      }
+    };
+  }
+
+  // package-private for tests
+  boolean isMaterialized(String key) {
+    return index.isMaterialized(key);
+  }
+
+  private Object peek(Object key) {
+    if (overlay.containsKey(key)) {
+      Object value = overlay.get(key);
+      return value == REMOVED ? null : value;
+    }
+    return index.getIfMaterialized(key);
+  }
+}
@@ -0,0 +1,87 @@
+package com.xarchimedesx.templatesgenerator.reader;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read-only view of a JSON object nested in a lazily loaded variables file. Nested objects and arrays of its values
+ * are indexed only when they are first read and then kept for next reads, also by other views of the same file.
+ * Iterating over entries indexes their values, but not the containers nested in them.
+ */
+public final class LazyJsonObject extends AbstractMap<String, Object> {
+
+  private final LazyJsonIndex index;
+  private final Map<String, Object> entries;
+  private final Map<String, Object> materializedEntries = new ConcurrentHashMap<>();
+
+  LazyJsonObject(LazyJsonIndex index, Map<String, Object> entries) {
+    this.index = index;
+    this.entries = entries;
+  }
+
+  @Override
+  public Object get(Object key) {
+    Object entry = entries.get(key);
+    if (!LazyJsonIndex.isOffset(entry)) {
+      return entry;
+    }
+    return materializedEntries.computeIfAbsent((String) key, k -> index.resolve(entry));
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return entries.containsKey(key);
+  }
+
+  @Override
+  public int size() {
+    return entries.size();
+  }
+
+  @Override
+  public Set<String> keySet() {
+    return Collections.unmodifiableSet(entries.keySet());
+  }
+
+  @Override
+  public Set<Entry<String, Object>> entrySet() {
+    return new AbstractSet<Entry<String, Object>>() {
+      @Override
+      public Iterator<Entry<String, Object>> iterator() {
+        Iterator<String> keys = entries.keySet().iterator();
+        return new Iterator<Entry<String, Object>>() {
+          @Override
+          public boolean hasNext() {
+            return keys.hasNext();
+          }
+
+          @Override
+          public Entry<String, Object> next() {
+            String key = keys.next();
+            return new SimpleImmutableEntry<>(key, get(key));
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return entries.size();
+      }
+    };
+  }
+
+  Object getIfMaterialized(Object key) {
+    Object entry = entries.get(key);
+    return LazyJsonIndex.isOffset(entry) ? materializedEntries.get(key) : entry;
+  }
+
+  // package-private for tests
+  boolean isMaterialized(String key) {
+    return materializedEntries.containsKey(key);
+  }
+}
@@ -0,0 +1,40 @@
+package com.xarchimedesx.templatesgenerator.reader;
+
+/**
+ * Defines how content of variables files is merged in combined mode when the same key is present in several files.
+ */
+public enum MergeStrategy {
+  /**
+   * Colliding values are wrapped in nested lists, e.g. {@code [[users1, users2], users3]} for three files.
+   * Kept as default for compatibility with templates flattening such lists themselves.
+   */
+  NESTED,
+  /**
+   * Maps are merged recursively, lists are concatenated, other values are taken from the last file.
+   */
+  DEEP,
+  /**
+   * Top-level lists are concatenated, other values are taken from the last file.
+   */
+  CONCAT,
+  /**
+   * Values are taken from the last file.
+   */
+  LAST_WINS,
+  /**
+   * Values are taken from the first file.
+   */
+  FIRST_WINS;
+
+  /**
+   * @param name Strategy name in any case, with either '-' or '_' separators, e.g. "last-wins".
+   */
+  public static MergeStrategy fromName(String name) {
+    try {
+      return valueOf(name.trim().toUpperCase().replace('-', '_'));
+    } catch (IllegalArgumentException iae) {
+      throw new IllegalArgumentException("Unknown merge strategy: " + name + ". Supported strategies are: nested, deep, concat, "
+          + "last-wins, first-wins.", iae);
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package com.xarchimedesx.templatesgenerator.reader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Iterator applying a function to inputs on an executor, at most {@code window} inputs ahead of the consumer,
+ * and returning results in the order of inputs. Inputs the function fails for are skipped, and once all other results
+ * are consumed, failures of all of them are thrown together.
+ */
+class ReadAheadIterator<T, R> implements Iterator<R> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ReadAheadIterator.class);
+  private final Iterator<T> inputs;
+  private final Function<T, R> function;
+  private final ExecutorService executor;
+  private final int window;
+  private final Deque<Pending<T, R>> pendings = new ArrayDeque<>();
+  private final List<Throwable> failures = new ArrayList<>();
+  private int inputsCount;
+  private R next;
+  private boolean isNextReady;
+
+  ReadAheadIterator(Iterator<T> inputs, Function<T, R> function, ExecutorService executor, int window) {
+    this.inputs = inputs;
+    this.function = function;
+    this.executor = executor;
+    this.window = window;
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (!isNextReady) {
+      while (pendings.size() < window && inputs.hasNext()) {
+        T input = inputs.next();
+        inputsCount++;
+        pendings.add(new Pending<>(input, executor.submit(() -> function.apply(input))));
+      }
+      Pending<T, R> pending = pendings.poll();
+      if (pending == null) {
+        throwFailures();
+        return false;
+      }
+      try {
+        next = pending.result.get();
+        isNextReady = true;
+      } catch (ExecutionException ee) {
+        LOGGER.error("Reading failed for variables file: {}", pending.input, ee.getCause());
+        failures.add(ee.getCause());
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        pendings.forEach(remaining -> remaining.result.cancel(true));
+        throw new RuntimeException("Reading variables files was interrupted!", ie);
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public R next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    isNextReady = false;
+    R result = next;
+    next = null;
+    return result;
+  }
+
+  private void throwFailures() {
+    if (!failures.isEmpty()) {
+      RuntimeException re = new RuntimeException(
+          String.format("Reading failed for %d of %d variables files!", failures.size(), inputsCount));
+      failures.forEach(re::addSuppressed);
+      failures.clear();
+      throw re;
+    }
+  }
+
+  private static final class Pending<T, R> {
+
+    private final T input;
+    private final Future<R> result;
+
+    private Pending(T input, Future<R> result) {
+      this.input = input;
+      this.result = result;
+    }
+  }
+}
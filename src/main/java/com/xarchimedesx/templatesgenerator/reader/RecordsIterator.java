@@ -0,0 +1,136 @@
+package com.xarchimedesx.templatesgenerator.reader;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.velocity.shaded.commons.io.FilenameUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterator reading records of a variables file one by one with Jackson's incremental parser, so only the current record
+ * is held in memory. Records are either root-level objects of .ndjson/.jsonl files or elements of an array
+ * inside .json and .yaml/.yml files.
+ * <p>
+ * Every record is named by the value of the record key, or by the base name of the file and the 1-based number
+ * of the record if the key is not set or the record lacks it.
+ */
+class RecordsIterator implements Iterator<Pair<String, Map<String, Object>>>, Closeable {
+
+  static final List<String> RECORDS_EXTENSIONS = Collections.unmodifiableList(Arrays.asList("ndjson", "jsonl", "json", "yaml", "yml"));
+  private static final List<String> DELIMITED_EXTENSIONS = Arrays.asList("ndjson", "jsonl");
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+  private static final YAMLFactory YAML_FACTORY = new YAMLFactory();
+  private static final ObjectReader RECORD_READER = new ObjectMapper().readerFor(new TypeReference<Map<String, Object>>() {
+  });
+  private final VariablesFile variablesFile;
+  private final String recordKey;
+  private final JsonParser parser;
+  private final boolean isDelimited;
+  private int recordsCount;
+  private Pair<String, Map<String, Object>> next;
+
+  /**
+   * @param variablesFile - file to read records from.
+   * @param inputStream   - content of the file, which is closed along with the iterator.
+   * @param arrayPath     - dot-separated keys leading to the array of records in .json and .yaml/.yml files.
+   *                      {@code null} or empty if the root element is the array. Ignored for .ndjson/.jsonl files.
+   * @param recordKey     - key of records, which value names the record. May be {@code null}.
+   */
+  RecordsIterator(VariablesFile variablesFile, InputStream inputStream, String arrayPath, String recordKey) throws IOException {
+    String extension = FilenameUtils.getExtension(variablesFile.getPath().toString());
+    this.variablesFile = variablesFile;
+    this.recordKey = recordKey;
+    this.isDelimited = DELIMITED_EXTENSIONS.contains(extension);
+    this.parser = (extension.equals("json") || isDelimited ? JSON_FACTORY : YAML_FACTORY).createParser(inputStream);
+    try {
+      if (!isDelimited) {
+        moveToArray(arrayPath == null || arrayPath.isEmpty() ? Collections.emptyList() : Arrays.asList(arrayPath.split("\\.")));
+      }
+    } catch (IOException | RuntimeException ex) {
+      parser.close();
+      throw ex;
+    }
+  }
+
+  static boolean isRecordsFile(String extension) {
+    return RECORDS_EXTENSIONS.contains(extension);
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (next == null) {
+      try {
+        next = readNext();
+      } catch (IOException ioe) {
+        throw new UncheckedIOException(String.format("Cannot read record %d of variables file: %s", recordsCount + 1, variablesFile), ioe);
+      }
+    }
+    return next != null;
+  }
+
+  @Override
+  public Pair<String, Map<String, Object>> next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    Pair<String, Map<String, Object>> record = next;
+    next = null;
+    return record;
+  }
+
+  @Override
+  public void close() throws IOException {
+    parser.close();
+  }
+
+  private Pair<String, Map<String, Object>> readNext() throws IOException {
+    JsonToken token = parser.nextToken();
+    if (token == null || token == JsonToken.END_ARRAY) {
+      return null;
+    }
+    recordsCount++;
+    if (token != JsonToken.START_OBJECT) {
+      throw new IOException(String.format("Record %d is not an object, but starts with %s.", recordsCount, token));
+    }
+    Map<String, Object> record = RECORD_READER.readValue(parser);
+    Object name = recordKey == null ? null : record.get(recordKey);
+    return Pair.of(name != null ? name.toString() : variablesFile.getName() + "-" + recordsCount, record);
+  }
+
+  private void moveToArray(List<String> arrayPath) throws IOException {
+    parser.nextToken();
+    for (String key : arrayPath) {
+      if (parser.currentToken() != JsonToken.START_OBJECT) {
+        throw new IOException(String.format("Key \"%s\" of records path cannot be found in variables file: %s", key, variablesFile));
+      }
+      // siblings of the keys on the path are skipped without being materialized
+      while (parser.nextToken() == JsonToken.FIELD_NAME && !key.equals(parser.getCurrentName())) {
+        parser.nextToken();
+        parser.skipChildren();
+      }
+      if (parser.currentToken() != JsonToken.FIELD_NAME) {
+        throw new IOException(String.format("Key \"%s\" of records path cannot be found in variables file: %s", key, variablesFile));
+      }
+      parser.nextToken();
+    }
+    if (parser.currentToken() != JsonToken.START_ARRAY) {
+      throw new IOException(String.format("Records path \"%s\" does not lead to an array in variables file: %s",
+          String.join(".", arrayPath), variablesFile));
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package com.xarchimedesx.templatesgenerator.reader;
+
+import org.apache.velocity.shaded.commons.io.FilenameUtils;
+
+import java.nio.file.Path;
+
+/**
+ * Variables file discovered by {@link ContextVariablesReader}, which content has not been read yet.
+ */
+public class VariablesFile {
+
+  private final Path path;
+  private final String scheme;
+
+  VariablesFile(Path path, String scheme) {
+    this.path = path;
+    this.scheme = scheme;
+  }
+
+  public Path getPath() {
+    return path;
+  }
+
+  public String getScheme() {
+    return scheme;
+  }
+
+  /**
+   * @return Base name of the file, which is used as a subdirectory name for the rendered output.
+   */
+  public String getName() {
+    return FilenameUtils.getBaseName(path.toString());
+  }
+
+  @Override
+  public String toString() {
+    return path.toString();
+  }
+}
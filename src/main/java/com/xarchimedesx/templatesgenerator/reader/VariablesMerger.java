@@ -0,0 +1,99 @@
+package com.xarchimedesx.templatesgenerator.reader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Merges content of variables files one by one into a single map, according to {@link MergeStrategy}.
+ * <p>
+ * Values of merged files are referenced, not copied. A list or map is copied only on the first collision of its key,
+ * and further values are appended to that copy, so merging stays linear in the total size of files and
+ * never modifies their content, which may be shared, e.g. by memoizing reader.
+ */
+class VariablesMerger {
+
+  private final MergeStrategy strategy;
+  private final Map<String, Object> merged = new LinkedHashMap<>();
+  private final Set<Object> ownedContainers = Collections.newSetFromMap(new IdentityHashMap<>());
+
+  VariablesMerger(MergeStrategy strategy) {
+    this.strategy = strategy;
+  }
+
+  void merge(Map<String, Object> variables) {
+    for (Map.Entry<String, Object> entry : variables.entrySet()) {
+      String key = entry.getKey();
+      if (!merged.containsKey(key)) {
+        merged.put(key, entry.getValue());
+      } else {
+        merged.put(key, mergeValues(merged.get(key), entry.getValue()));
+      }
+    }
+  }
+
+  Map<String, Object> getMerged() {
+    return merged;
+  }
+
+  private Object mergeValues(Object existing, Object incoming) {
+    switch (strategy) {
+      case NESTED:
+        return Arrays.asList(existing, incoming);
+      case DEEP:
+        return mergeDeeply(existing, incoming);
+      case CONCAT:
+        return existing instanceof List && incoming instanceof List ? concat(existing, incoming) : incoming;
+      case FIRST_WINS:
+        return existing;
+      case LAST_WINS:
+      default:
+        return incoming;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private Object mergeDeeply(Object existing, Object incoming) {
+    if (existing instanceof Map && incoming instanceof Map) {
+      Map<Object, Object> target = own((Map<Object, Object>) existing);
+      for (Map.Entry<Object, Object> entry : ((Map<Object, Object>) incoming).entrySet()) {
+        Object key = entry.getKey();
+        target.put(key, target.containsKey(key) ? mergeDeeply(target.get(key), entry.getValue()) : entry.getValue());
+      }
+      return target;
+    } else if (existing instanceof List && incoming instanceof List) {
+      return concat(existing, incoming);
+    }
+    return incoming;
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<Object> concat(Object existing, Object incoming) {
+    List<Object> target = own((List<Object>) existing);
+    target.addAll((List<Object>) incoming);
+    return target;
+  }
+
+  private Map<Object, Object> own(Map<Object, Object> map) {
+    if (ownedContainers.contains(map)) {
+      return map;
+    }
+    Map<Object, Object> copy = new LinkedHashMap<>(map);
+    ownedContainers.add(copy);
+    return copy;
+  }
+
+  private List<Object> own(List<Object> list) {
+    if (ownedContainers.contains(list)) {
+      return list;
+    }
+    List<Object> copy = new ArrayList<>(list);
+    ownedContainers.add(copy);
+    return copy;
+  }
+}
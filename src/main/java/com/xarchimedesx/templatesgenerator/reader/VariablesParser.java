@@ -0,0 +1,25 @@
+package com.xarchimedesx.templatesgenerator.reader;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Parses content of a single variables file into a map of Velocity context variables.
+ * Implementations are shared between all files of the same format, so they must be thread-safe.
+ */
+@FunctionalInterface
+public interface VariablesParser {
+
+  Map<String, Object> parse(InputStream inputStream) throws IOException;
+
+  /**
+   * @param objectReader - pre-built Jackson reader, which has to be bound to a {@code Map<String, Object>} type.
+   * @return Parser delegating to given reader. {@link ObjectReader} is immutable, so it is safe to reuse it.
+   */
+  static VariablesParser of(ObjectReader objectReader) {
+    return objectReader::readValue;
+  }
+}
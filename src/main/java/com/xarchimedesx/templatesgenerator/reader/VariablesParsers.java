@@ -0,0 +1,54 @@
+package com.xarchimedesx.templatesgenerator.reader;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of variables files' parsers keyed by file extension.
+ * New formats are supported by registering a parser for their extension, the files discovery does not need to change.
+ */
+public class VariablesParsers {
+
+  private static final TypeReference<Map<String, Object>> VARIABLES_TYPE = new TypeReference<Map<String, Object>>() {
+  };
+  private static final VariablesParser JSON_PARSER = VariablesParser.of(new ObjectMapper().readerFor(VARIABLES_TYPE));
+  private static final VariablesParser YAML_PARSER = VariablesParser.of(new ObjectMapper(new YAMLFactory()).readerFor(VARIABLES_TYPE));
+
+  private final Map<String, VariablesParser> parsers = new ConcurrentHashMap<>();
+
+  /**
+   * @return Registry supporting .json files via Jackson's native JSON parser and .yaml/.yml files via its YAML parser.
+   */
+  public static VariablesParsers defaults() {
+    return new VariablesParsers()
+        .register("json", JSON_PARSER)
+        .register("yaml", YAML_PARSER)
+        .register("yml", YAML_PARSER);
+  }
+
+  public VariablesParsers register(String extension, VariablesParser parser) {
+    parsers.put(extension, parser);
+    return this;
+  }
+
+  public VariablesParsers register(String extension, ObjectReader objectReader) {
+    return register(extension, VariablesParser.of(objectReader));
+  }
+
+  public Optional<VariablesParser> getParser(String extension) {
+    return Optional.ofNullable(parsers.get(extension));
+  }
+
+  public Set<String> getSupportedExtensions() {
+    return Collections.unmodifiableSet(new TreeSet<>(parsers.keySet()));
+  }
+}
@@ -0,0 +1,226 @@
+package com.xarchimedesx.templatesgenerator.reader;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of parsed variables files, stored as binary Smile snapshots.
+ * A snapshot is keyed by the file's absolute path, size, modification time and content hash,
+ * so any change of the file makes the previous snapshot unreachable.
+ * When the total size of snapshots exceeds the limit, the least recently used ones are evicted until it drops below
+ * {@value #EVICTION_TARGET_PERCENT}% of the limit. The total size is tracked in memory, so the cache directory is scanned
+ * only by the first store and by evictions, whose headroom keeps them from running on every store of a full cache.
+ */
+public class VariablesSnapshotCache {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(VariablesSnapshotCache.class);
+  private static final String SNAPSHOT_EXTENSION = ".smile";
+  private static final String HASH_ALGORITHM = "SHA-256";
+  private static final String KEY_PARTS_SEPARATOR = "|";
+  private static final int EVICTION_TARGET_PERCENT = 90;
+  private static final long UNKNOWN_SIZE = -1;
+  private static final ObjectMapper SMILE_MAPPER = new ObjectMapper(new SmileFactory());
+  private static final ObjectReader SNAPSHOT_READER = SMILE_MAPPER.readerFor(new TypeReference<Map<String, Object>>() {
+  });
+  private static final ObjectWriter SNAPSHOT_WRITER = SMILE_MAPPER.writer();
+
+  private final Path cacheDir;
+  private final long maxSizeBytes;
+  // guarded by this, unknown until the cache directory is scanned
+  private long totalSizeBytes = UNKNOWN_SIZE;
+
+  /**
+   * @param cacheDir     - directory where snapshots are stored. Created if it does not exist.
+   * @param maxSizeBytes - maximal total size of stored snapshots.
+   */
+  public VariablesSnapshotCache(Path cacheDir, long maxSizeBytes) {
+    this.cacheDir = cacheDir;
+    this.maxSizeBytes = maxSizeBytes;
+  }
+
+  /**
+   * Loads the snapshot of given file or, if there is no actual one, parses the file and stores its snapshot.
+   * A failure to store the snapshot is only logged, as the parsed content is still valid.
+   *
+   * @param file   - local variables file.
+   * @param parser - parser for the file's format, used on a cache miss.
+   * @return Content of the file.
+   */
+  public Map<String, Object> load(Path file, VariablesParser parser) throws IOException {
+    Path snapshot = cacheDir.resolve(computeKey(file) + SNAPSHOT_EXTENSION);
+    try (InputStream snapshotStream = new BufferedInputStream(Files.newInputStream(snapshot))) {
+      Map<String, Object> content = SNAPSHOT_READER.readValue(snapshotStream);
+      Files.setLastModifiedTime(snapshot, FileTime.fromMillis(System.currentTimeMillis()));
+      LOGGER.debug("Loaded variables file {} from snapshot {}", file, snapshot);
+      return content;
+    } catch (NoSuchFileException nsfe) {
+      LOGGER.debug("No snapshot found for variables file {}", file);
+    } catch (IOException ioe) {
+      LOGGER.warn("Snapshot {} of variables file {} is corrupted and will be replaced.", snapshot, file);
+    }
+
+    Map<String, Object> content;
+    try (InputStream fileStream = new BufferedInputStream(Files.newInputStream(file))) {
+      content = parser.parse(fileStream);
+    }
+    try {
+      store(snapshot, content);
+    } catch (IOException | RuntimeException ex) {
+      LOGGER.warn("Cannot store snapshot {} of variables file {}: {}", snapshot, file, ex.toString());
+    }
+    return content;
+  }
+
+  /**
+   * Removes all snapshots from the cache directory.
+   */
+  public synchronized void clear() throws IOException {
+    for (Path snapshot : listSnapshots()) {
+      Files.deleteIfExists(snapshot);
+    }
+    totalSizeBytes = 0;
+    LOGGER.info("Variables snapshot cache {} was cleared.", cacheDir);
+  }
+
+  private void store(Path snapshot, Map<String, Object> content) throws IOException {
+    Files.createDirectories(cacheDir);
+    // writing to a temporary file first, so concurrent readers never see a partially written snapshot
+    Path tempSnapshot = Files.createTempFile(cacheDir, snapshot.getFileName().toString(), ".tmp");
+    long replacedSize;
+    try {
+      try (OutputStream outputStream = Files.newOutputStream(tempSnapshot)) {
+        SNAPSHOT_WRITER.writeValue(outputStream, content);
+      }
+      // a corrupted snapshot being replaced no longer counts, concurrent replacements may skew the total until the next scan
+      replacedSize = sizeOf(snapshot);
+      Files.move(tempSnapshot, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tempSnapshot);
+    }
+    stored(sizeOf(snapshot) - replacedSize);
+  }
+
+  private synchronized void stored(long addedSizeBytes) throws IOException {
+    if (totalSizeBytes == UNKNOWN_SIZE) {
+      // the first scan already counts the stored snapshot
+      totalSizeBytes = sizeOf(listSnapshots());
+    } else {
+      totalSizeBytes += addedSizeBytes;
+    }
+    if (totalSizeBytes > maxSizeBytes) {
+      evictLeastRecentlyUsed();
+    }
+  }
+
+  private void evictLeastRecentlyUsed() throws IOException {
+    // rescanned, as other processes sharing the directory may have stored or evicted snapshots too
+    List<Path> snapshots = listSnapshots();
+    long totalSize = sizeOf(snapshots);
+    long targetSize = (long) (maxSizeBytes * (EVICTION_TARGET_PERCENT / 100.0));
+    // snapshots are touched on every hit, so the oldest modification time means the least recently used
+    snapshots.sort(Comparator.comparing(VariablesSnapshotCache::lastModifiedTime));
+    for (Path snapshot : snapshots) {
+      if (totalSize <= targetSize) {
+        break;
+      }
+      totalSize -= sizeOf(snapshot);
+      Files.deleteIfExists(snapshot);
+      LOGGER.debug("Evicted variables snapshot {}", snapshot);
+    }
+    totalSizeBytes = totalSize;
+  }
+
+  private List<Path> listSnapshots() throws IOException {
+    if (!Files.isDirectory(cacheDir)) {
+      return new ArrayList<>();
+    }
+    try (Stream<Path> stream = Files.list(cacheDir)) {
+      return stream.filter(path -> path.toString().endsWith(SNAPSHOT_EXTENSION))
+          .collect(Collectors.toList());
+    }
+  }
+
+  private String computeKey(Path file) throws IOException {
+    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+    MessageDigest contentDigest = newDigest();
+    try (InputStream fileStream = new DigestInputStream(new BufferedInputStream(Files.newInputStream(file)), contentDigest)) {
+      byte[] buffer = new byte[8192];
+      while (fileStream.read(buffer) != -1) {
+        // reading the whole file just to update the digest
+      }
+    }
+
+    String fileKey = String.join(KEY_PARTS_SEPARATOR,
+        file.toAbsolutePath().normalize().toString(),
+        String.valueOf(attributes.size()),
+        String.valueOf(attributes.lastModifiedTime().toMillis()),
+        toHex(contentDigest.digest()));
+    return toHex(newDigest().digest(fileKey.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance(HASH_ALGORITHM);
+    } catch (NoSuchAlgorithmException nsae) {
+      throw new IllegalStateException(nsae);
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      hex.append(String.format("%02x", b));
+    }
+    return hex.toString();
+  }
+
+  private static long sizeOf(List<Path> paths) {
+    long size = 0;
+    for (Path path : paths) {
+      size += sizeOf(path);
+    }
+    return size;
+  }
+
+  private static long sizeOf(Path path) {
+    try {
+      return Files.size(path);
+    } catch (IOException ioe) {
+      return 0;
+    }
+  }
+
+  private static FileTime lastModifiedTime(Path path) {
+    try {
+      return Files.getLastModifiedTime(path);
+    } catch (IOException ioe) {
+      return FileTime.fromMillis(0);
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package com.xarchimedesx.templatesgenerator.shard;
+
+import com.xarchimedesx.templatesgenerator.reader.VariablesFile;
+import org.apache.velocity.shaded.commons.io.FilenameUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * One of {@code count} disjoint subsets of variables files, so that a rendering can be split across processes or nodes.
+ * A file is assigned to a shard by a stable hash of its path relative to the working directory, so every node assigns
+ * files the same way, regardless of where the sources are checked out, and adding a file does not move the others.
+ */
+public final class Shard {
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+  private final int index;
+  private final int count;
+
+  /**
+   * @param index Zero-based index of the shard.
+   * @param count Number of shards.
+   */
+  public Shard(int index, int count) {
+    if (count < 1 || index < 0 || index >= count) {
+      throw new IllegalArgumentException(String.format(
+          "Shard index must be between 0 and shards count - 1 and shards count must be positive, but were: %d, %d", index, count));
+    }
+    this.index = index;
+    this.count = count;
+  }
+
+  /**
+   * @param shard Shard in {@code <index>/<count>} form, e.g. {@code 0/4}.
+   */
+  public static Shard parse(String shard) {
+    String[] parts = shard.trim().split("/");
+    if (parts.length != 2) {
+      throw new IllegalArgumentException("Shard must be given as <index>/<count>, but was: " + shard);
+    }
+    return new Shard(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+  }
+
+  public int getIndex() {
+    return index;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * @return Files assigned to this shard, in the given order.
+   */
+  public List<VariablesFile> select(List<VariablesFile> variablesFiles) {
+    return variablesFiles.stream()
+        .filter(this::isAssigned)
+        .collect(Collectors.toList());
+  }
+
+  public boolean isAssigned(VariablesFile variablesFile) {
+    return isAssigned(getKey(variablesFile));
+  }
+
+  /**
+   * @param key Key of a variables file, as returned by {@link #getKey(VariablesFile)}.
+   */
+  public boolean isAssigned(String key) {
+    return Long.remainderUnsigned(hash(key), count) == index;
+  }
+
+  /**
+   * @return Path of the file relative to the working directory if it is located under it, with '/' separators.
+   */
+  public static String getKey(VariablesFile variablesFile) {
+    Path path = variablesFile.getPath();
+    if (variablesFile.getScheme().equals("file")) {
+      Path absolutePath = path.toAbsolutePath().normalize();
+      Path workingDir = Paths.get("").toAbsolutePath();
+      path = absolutePath.startsWith(workingDir) ? workingDir.relativize(absolutePath) : absolutePath;
+    }
+    return FilenameUtils.separatorsToUnix(path.toString());
+  }
+
+  // 64-bit FNV-1a of UTF-8 bytes, which unlike String#hashCode spreads paths differing only in a suffix evenly
+  static long hash(String key) {
+    long hash = FNV_OFFSET_BASIS;
+    for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+      hash ^= b & 0xff;
+      hash *= FNV_PRIME;
+    }
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    return index + "/" + count;
+  }
+}
@@ -0,0 +1,137 @@
+package com.xarchimedesx.templatesgenerator.shard;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.xarchimedesx.templatesgenerator.exception.RenderingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Record of variables files rendered and files saved by #saveFile within one or more shards of a rendering.
+ * Manifests of all shards are merged to check that every shard has been rendered and no two of them saved the same file.
+ */
+public class ShardManifest {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ShardManifest.class);
+  private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+  private final int shardsCount;
+  private final Set<Integer> shards;
+  private final List<String> variablesFiles;
+  private final List<String> outputFiles;
+
+  public ShardManifest(int shardsCount, Set<Integer> shards, List<String> variablesFiles, List<String> outputFiles) {
+    this.shardsCount = shardsCount;
+    this.shards = Collections.unmodifiableSet(new TreeSet<>(shards));
+    this.variablesFiles = Collections.unmodifiableList(new ArrayList<>(variablesFiles));
+    this.outputFiles = Collections.unmodifiableList(new ArrayList<>(outputFiles));
+  }
+
+  public static ShardManifest read(Path manifestPath) throws IOException {
+    JsonNode manifest = MAPPER.readTree(manifestPath.toFile());
+    if (manifest == null || !manifest.path("shardsCount").canConvertToInt() || !manifest.path("shards").isArray()) {
+      throw new IOException("Not a shard manifest: " + manifestPath);
+    }
+    Set<Integer> shards = new TreeSet<>();
+    manifest.path("shards").forEach(shard -> shards.add(shard.asInt()));
+    return new ShardManifest(manifest.path("shardsCount").asInt(), shards,
+        readTexts(manifest.path("variablesFiles")), readTexts(manifest.path("outputFiles")));
+  }
+
+  /**
+   * Merges manifests of all shards of a rendering.
+   *
+   * @throws RenderingException if manifests are of different shards counts, some shard is missing or rendered more than once,
+   *                            or the same file was saved more than once.
+   */
+  public static ShardManifest merge(List<ShardManifest> manifests) {
+    if (manifests.isEmpty()) {
+      throw new IllegalArgumentException("No shard manifests to merge!");
+    }
+    Set<Integer> shardsCounts = manifests.stream().map(ShardManifest::getShardsCount).collect(Collectors.toSet());
+    if (shardsCounts.size() > 1) {
+      throw new RenderingException("Shard manifests are of different shards counts: " + shardsCounts);
+    }
+    int shardsCount = manifests.get(0).getShardsCount();
+
+    List<String> problems = new ArrayList<>();
+    Map<Integer, Integer> manifestsPerShard = new TreeMap<>();
+    Map<String, List<Integer>> shardsPerOutputFile = new TreeMap<>();
+    List<String> variablesFiles = new ArrayList<>();
+    for (ShardManifest manifest : manifests) {
+      manifest.getShards().forEach(shard -> manifestsPerShard.merge(shard, 1, Integer::sum));
+      variablesFiles.addAll(manifest.getVariablesFiles());
+      for (String outputFile : manifest.getOutputFiles()) {
+        shardsPerOutputFile.computeIfAbsent(outputFile, path -> new ArrayList<>()).addAll(manifest.getShards());
+      }
+    }
+    IntStream.range(0, shardsCount)
+        .filter(shard -> !manifestsPerShard.containsKey(shard))
+        .forEach(shard -> problems.add("Missing manifest of shard " + shard));
+    manifestsPerShard.forEach((shard, manifestsCount) -> {
+      if (manifestsCount > 1) {
+        problems.add(String.format("Shard %d is in %d manifests", shard, manifestsCount));
+      }
+    });
+    shardsPerOutputFile.forEach((outputFile, shards) -> {
+      if (shards.size() > 1) {
+        problems.add(String.format("Output file %s is saved by shards %s", outputFile, shards));
+      }
+    });
+
+    if (!problems.isEmpty()) {
+      problems.forEach(problem -> LOGGER.error("{}", problem));
+      throw new RenderingException(String.format("Merging of %d shard manifests found %d problems!", manifests.size(), problems.size()));
+    }
+    return new ShardManifest(shardsCount, manifestsPerShard.keySet(), variablesFiles, new ArrayList<>(shardsPerOutputFile.keySet()));
+  }
+
+  public void write(Path manifestPath) throws IOException {
+    ObjectNode manifest = MAPPER.createObjectNode();
+    manifest.put("shardsCount", shardsCount);
+    shards.forEach(manifest.putArray("shards")::add);
+    variablesFiles.forEach(manifest.putArray("variablesFiles")::add);
+    outputFiles.forEach(manifest.putArray("outputFiles")::add);
+    Path parent = manifestPath.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    MAPPER.writeValue(manifestPath.toFile(), manifest);
+  }
+
+  public int getShardsCount() {
+    return shardsCount;
+  }
+
+  public Set<Integer> getShards() {
+    return shards;
+  }
+
+  public List<String> getVariablesFiles() {
+    return variablesFiles;
+  }
+
+  public List<String> getOutputFiles() {
+    return outputFiles;
+  }
+
+  private static List<String> readTexts(JsonNode arrayNode) {
+    List<String> texts = new ArrayList<>();
+    arrayNode.forEach(node -> texts.add(node.asText()));
+    return texts;
+  }
+}
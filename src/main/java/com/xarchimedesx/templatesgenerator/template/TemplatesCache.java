@@ -0,0 +1,107 @@
+package com.xarchimedesx.templatesgenerator.template;
+
+import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.runtime.resource.Resource;
+import org.apache.velocity.runtime.resource.ResourceCacheImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Velocity resources cache keeping parsed templates, including ones loaded via #parse, between renderings.
+ * <p>
+ * Cached template is checked for modification of its source at most once per {@value #CHECK_INTERVAL_PROPERTY}
+ * milliseconds and is re-parsed only when it has changed. Velocity's own per-loader checks are disabled
+ * by Templates-Generator, so this cache is the single place deciding when templates are reloaded.
+ */
+public class TemplatesCache extends ResourceCacheImpl {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TemplatesCache.class);
+
+  /**
+   * Engine property with the interval of checking cached templates for modifications, in milliseconds.
+   * '0', the default one, checks on every access, negative value disables checks.
+   */
+  public static final String CHECK_INTERVAL_PROPERTY = "templates_generator.templates_cache.modification_check_interval";
+  /**
+   * Engine application attribute the cache is available under.
+   */
+  public static final String APPLICATION_ATTRIBUTE = TemplatesCache.class.getName();
+  private final Map<Object, Long> nextChecksMillis = new ConcurrentHashMap<>();
+  private final AtomicLong hitsCount = new AtomicLong();
+  private final AtomicLong missesCount = new AtomicLong();
+  private long checkIntervalMillis;
+
+  @Override
+  public void initialize(RuntimeServices runtimeServices) {
+    super.initialize(runtimeServices);
+    checkIntervalMillis = Long.parseLong(runtimeServices.getString(CHECK_INTERVAL_PROPERTY, "0"));
+    runtimeServices.setApplicationAttribute(APPLICATION_ATTRIBUTE, this);
+  }
+
+  @Override
+  public Resource get(Object key) {
+    Resource resource = super.get(key);
+    if (resource != null && isModified(key, resource)) {
+      LOGGER.debug("Template {} has changed, reloading it.", resource.getName());
+      remove(key);
+      resource = null;
+    }
+    (resource != null ? hitsCount : missesCount).incrementAndGet();
+    return resource;
+  }
+
+  @Override
+  public Resource put(Object key, Resource resource) {
+    if (checkIntervalMillis > 0) {
+      nextChecksMillis.put(key, System.currentTimeMillis() + checkIntervalMillis);
+    }
+    return super.put(key, resource);
+  }
+
+  @Override
+  public Resource remove(Object key) {
+    nextChecksMillis.remove(key);
+    return super.remove(key);
+  }
+
+  @Override
+  public void clear() {
+    nextChecksMillis.clear();
+    super.clear();
+  }
+
+  public long getHitsCount() {
+    return hitsCount.get();
+  }
+
+  public long getMissesCount() {
+    return missesCount.get();
+  }
+
+  public int getSize() {
+    return cache.size();
+  }
+
+  private boolean isModified(Object key, Resource resource) {
+    if (checkIntervalMillis < 0) {
+      return false;
+    }
+    if (checkIntervalMillis > 0) {
+      long nowMillis = System.currentTimeMillis();
+      if (nowMillis < nextChecksMillis.getOrDefault(key, 0L)) {
+        return false;
+      }
+      nextChecksMillis.put(key, nowMillis + checkIntervalMillis);
+    }
+    return resource.isSourceModified();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d templates cached, %d hits, %d misses", getSize(), getHitsCount(), getMissesCount());
+  }
+}
@@ -0,0 +1,185 @@
+package com.xarchimedesx.templatesgenerator;
+
+import com.xarchimedesx.templatesgenerator.shard.Shard;
+import com.xarchimedesx.templatesgenerator.shard.ShardManifest;
+import org.apache.velocity.shaded.commons.io.FilenameUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BuildCacheTest {
+
+  private static final String TEMPLATE_PATH = String.join(File.separator, "templates", "template.vm");
+  private static final Path BASE_DIR = Paths.get("target", "test-data", "build-cache");
+  private static final Path VARIABLES_DIR = BASE_DIR.resolve("variables");
+  private static final Path OUTPUT_DIR = BASE_DIR.resolve("output");
+  private static final Path CACHE_PATH = BASE_DIR.resolve("cache.json");
+  private static final Path RENDERED_USERS1_PATH = OUTPUT_DIR.resolve(Paths.get("users1", "users.json"));
+  private static final Path RENDERED_USERS2_PATH = OUTPUT_DIR.resolve(Paths.get("users2", "users.json"));
+  private static final FileTime INITIAL_MODIFICATION_TIME = FileTime.fromMillis(0);
+
+  private static final TemplatesGenerator GENERATOR = new TemplatesGenerator();
+
+  @BeforeEach
+  public void copyVariablesFiles() throws IOException {
+    if (Files.exists(BASE_DIR)) {
+      try (Stream<Path> paths = Files.walk(BASE_DIR)) {
+        paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+      }
+    }
+    Files.createDirectories(VARIABLES_DIR);
+    for (String fileName : new String[]{"users1.yaml", "users2.json"}) {
+      try (InputStream variables = getClass().getClassLoader().getResourceAsStream("variables/users/" + fileName)) {
+        Files.copy(variables, VARIABLES_DIR.resolve(fileName), StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+  }
+
+  @Test
+  public void renderOnlyChangedVariablesFiles() throws IOException {
+    render(false);
+    Files.setLastModifiedTime(RENDERED_USERS1_PATH, INITIAL_MODIFICATION_TIME);
+    Files.setLastModifiedTime(RENDERED_USERS2_PATH, INITIAL_MODIFICATION_TIME);
+
+    render(false);
+    assertEquals(INITIAL_MODIFICATION_TIME, Files.getLastModifiedTime(RENDERED_USERS1_PATH));
+    assertEquals(INITIAL_MODIFICATION_TIME, Files.getLastModifiedTime(RENDERED_USERS2_PATH));
+
+    Path users2Path = VARIABLES_DIR.resolve("users2.json");
+    Files.write(users2Path, "\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    render(false);
+    assertEquals(INITIAL_MODIFICATION_TIME, Files.getLastModifiedTime(RENDERED_USERS1_PATH));
+    assertNotEquals(INITIAL_MODIFICATION_TIME, Files.getLastModifiedTime(RENDERED_USERS2_PATH));
+  }
+
+  @Test
+  public void renderAgainWhenSavedFileIsMissing() throws IOException {
+    render(false);
+    Files.delete(RENDERED_USERS1_PATH);
+    Files.setLastModifiedTime(RENDERED_USERS2_PATH, INITIAL_MODIFICATION_TIME);
+
+    render(false);
+    assertTrue(Files.exists(RENDERED_USERS1_PATH));
+    assertEquals(INITIAL_MODIFICATION_TIME, Files.getLastModifiedTime(RENDERED_USERS2_PATH));
+  }
+
+  @Test
+  public void deleteStaleOutputsOfRemovedVariablesFiles() throws IOException {
+    Files.copy(VARIABLES_DIR.resolve("users1.yaml"), VARIABLES_DIR.resolve("users3.yaml"));
+    render(true);
+    Path renderedUsers3Path = OUTPUT_DIR.resolve(Paths.get("users3", "users.json"));
+    assertTrue(Files.exists(renderedUsers3Path));
+
+    Files.delete(VARIABLES_DIR.resolve("users3.yaml"));
+    render(true);
+    assertFalse(Files.exists(renderedUsers3Path));
+    assertTrue(Files.exists(RENDERED_USERS1_PATH));
+    assertTrue(Files.exists(RENDERED_USERS2_PATH));
+  }
+
+  @Test
+  public void keepOutputsOfOtherShardsWhenDeletingStaleOutputs() throws IOException {
+    List<Path> renderedPaths = copyUsersFiles(6);
+    render(true);
+    renderedPaths.forEach(renderedPath -> setLastModifiedTime(renderedPath, INITIAL_MODIFICATION_TIME));
+
+    renderShard(new Shard(0, 2), true);
+    renderShard(new Shard(1, 2), true);
+    renderedPaths.forEach(renderedPath -> assertEquals(INITIAL_MODIFICATION_TIME, getLastModifiedTime(renderedPath)));
+  }
+
+  @Test
+  public void listOutputsOfUpToDateContextsInShardManifest() throws IOException {
+    List<Path> renderedPaths = copyUsersFiles(6);
+    render(false);
+
+    Shard shard = new Shard(0, 2);
+    Path shardManifestPath = BASE_DIR.resolve("shard0.json");
+    GENERATOR.render(TEMPLATE_PATH, VARIABLES_DIR.toString(), OUTPUT_DIR.toString(), new RenderOptions()
+        .withBuildCache(CACHE_PATH, false)
+        .withShard(shard.getIndex(), shard.getCount())
+        .withShardManifest(shardManifestPath));
+    List<String> expectedOutputFiles = new ArrayList<>();
+    for (Path renderedPath : renderedPaths) {
+      String usersFileName = renderedPath.getParent().getFileName() + ".yaml";
+      if (shard.isAssigned(FilenameUtils.separatorsToUnix(VARIABLES_DIR.resolve(usersFileName).toString()))) {
+        expectedOutputFiles.add(FilenameUtils.separatorsToUnix(renderedPath.toString()));
+      }
+    }
+
+    assertFalse(expectedOutputFiles.isEmpty());
+    assertEquals(expectedOutputFiles, ShardManifest.read(shardManifestPath).getOutputFiles());
+  }
+
+  @Test
+  public void changeRenderingFingerprintWithOptions() throws IOException {
+    String fingerprint = BuildCache.fingerprintRendering(TEMPLATE_PATH, TemplatesGenerator.TOOLS_CONFIG_FILE, OUTPUT_DIR.toString(),
+        new RenderOptions());
+
+    assertEquals(fingerprint, BuildCache.fingerprintRendering(TEMPLATE_PATH, TemplatesGenerator.TOOLS_CONFIG_FILE,
+        OUTPUT_DIR.toString(), new RenderOptions().withWorkersCount(4)));
+    assertNotEquals(fingerprint, BuildCache.fingerprintRendering(TEMPLATE_PATH, TemplatesGenerator.TOOLS_CONFIG_FILE,
+        OUTPUT_DIR.toString(), new RenderOptions().withCombined(true)));
+  }
+
+  // replaces the default variables files with copies of users1.yaml, so every one of them is a .yaml file
+  private static List<Path> copyUsersFiles(int filesCount) throws IOException {
+    List<Path> renderedPaths = new ArrayList<>();
+    for (int i = 1; i <= filesCount; i++) {
+      Path usersPath = VARIABLES_DIR.resolve("users" + i + ".yaml");
+      if (!Files.exists(usersPath)) {
+        Files.copy(VARIABLES_DIR.resolve("users1.yaml"), usersPath);
+      }
+      renderedPaths.add(OUTPUT_DIR.resolve(Paths.get("users" + i, "users.json")));
+    }
+    Files.delete(VARIABLES_DIR.resolve("users2.json"));
+    return renderedPaths;
+  }
+
+  private static void setLastModifiedTime(Path path, FileTime time) {
+    try {
+      Files.setLastModifiedTime(path, time);
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+  }
+
+  private static FileTime getLastModifiedTime(Path path) {
+    try {
+      return Files.getLastModifiedTime(path);
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+  }
+
+  private static void renderShard(Shard shard, boolean isDeletingStaleOutputs) {
+    GENERATOR.render(TEMPLATE_PATH, VARIABLES_DIR.toString(), OUTPUT_DIR.toString(), new RenderOptions()
+        .withBuildCache(CACHE_PATH, isDeletingStaleOutputs)
+        .withShard(shard.getIndex(), shard.getCount()));
+  }
+
+  private static void render(boolean isDeletingStaleOutputs) {
+    GENERATOR.render(TEMPLATE_PATH, VARIABLES_DIR.toString(), OUTPUT_DIR.toString(),
+        new RenderOptions().withBuildCache(CACHE_PATH, isDeletingStaleOutputs));
+  }
+}
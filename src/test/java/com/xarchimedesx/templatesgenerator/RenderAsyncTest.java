@@ -0,0 +1,145 @@
+package com.xarchimedesx.templatesgenerator;
+
+import com.xarchimedesx.templatesgenerator.exception.RenderingException;
+import com.xarchimedesx.templatesgenerator.output.InMemoryOutputSink;
+import com.xarchimedesx.templatesgenerator.reader.ContextVariablesReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RenderAsyncTest {
+
+  private static final String TEMPLATE_PATH = String.join(File.separator, "templates", "template.vm");
+  private static final String FAILING_TEMPLATE_PATH = String.join(File.separator, "templates", "failing_template.vm");
+  private static final String USERS_DIR_PATH = String.join(File.separator, "variables", "users");
+  private static final String OUTPUT_DIR_BASE_PATH = String.join("/", "target", "test-data", "async");
+
+  private static final TemplatesGenerator GENERATOR = new TemplatesGenerator();
+
+  @Test
+  public void renderConcurrentlyIntoSeparateSinks() throws Exception {
+    List<CompletableFuture<RenderResult>> futures = new ArrayList<>();
+    for (int i = 0; i < 16; i++) {
+      futures.add(GENERATOR.renderAsync(TEMPLATE_PATH, USERS_DIR_PATH, OUTPUT_DIR_BASE_PATH + "/" + i,
+          new RenderOptions().withOutputSink(InMemoryOutputSink::new)));
+    }
+
+    for (int i = 0; i < futures.size(); i++) {
+      RenderResult result = futures.get(i).get();
+      assertTrue(result.isSucceeded());
+      assertEquals(Arrays.asList(Paths.get(OUTPUT_DIR_BASE_PATH, String.valueOf(i), "users1", "users.json"),
+          Paths.get(OUTPUT_DIR_BASE_PATH, String.valueOf(i), "users2", "users.json")), sorted(result.getOutputFiles()));
+    }
+  }
+
+  @Test
+  public void completeWithFailedResult() throws Exception {
+    RenderResult result = GENERATOR.renderAsync(FAILING_TEMPLATE_PATH, USERS_DIR_PATH, OUTPUT_DIR_BASE_PATH + "/failed",
+        new RenderOptions().withWorkersCount(2).withOutputSink(InMemoryOutputSink::new)).get();
+
+    assertFalse(result.isSucceeded());
+    assertEquals(2, result.getErrors().size());
+  }
+
+  @Test
+  public void rejectAndCancelQueuedRenderings() throws Exception {
+    ExecutorService executor = RenderExecutors.bounded(1, 1);
+    TemplatesGenerator generator = new TemplatesGenerator(new ContextVariablesReader(), new Properties(), executor);
+    CountDownLatch release = new CountDownLatch(1);
+    try {
+      executor.execute(() -> {
+        try {
+          release.await();
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      InMemoryOutputSink outputSink = new InMemoryOutputSink();
+      CompletableFuture<RenderResult> queued = generator.renderAsync(TEMPLATE_PATH, USERS_DIR_PATH, OUTPUT_DIR_BASE_PATH,
+          new RenderOptions().withOutputSink(() -> outputSink));
+      CompletableFuture<RenderResult> rejected = generator.renderAsync(TEMPLATE_PATH, USERS_DIR_PATH, OUTPUT_DIR_BASE_PATH,
+          new RenderOptions().withOutputSink(InMemoryOutputSink::new));
+
+      assertInstanceOf(RejectedExecutionException.class, assertThrows(ExecutionException.class, rejected::get).getCause());
+      assertTrue(queued.cancel(false));
+      release.countDown();
+      executor.shutdown();
+      executor.awaitTermination(10, TimeUnit.SECONDS);
+      assertTrue(queued.isCancelled());
+      assertTrue(outputSink.getFiles().isEmpty());
+    } finally {
+      release.countDown();
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void renderWithVirtualThreadsOrTheirFallback() throws Exception {
+    ExecutorService executor = RenderExecutors.virtualThreads(2, 2);
+    try {
+      RenderResult result = GENERATOR.renderAsync(TEMPLATE_PATH, USERS_DIR_PATH, OUTPUT_DIR_BASE_PATH + "/virtual",
+          new RenderOptions().withOutputSink(InMemoryOutputSink::new), executor).get();
+
+      assertTrue(result.isSucceeded());
+      assertEquals(2, result.getOutputFiles().size());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void failRenderingsInterruptedWhileWaitingForPermit() throws Exception {
+    ExecutorService executor = new RenderExecutors.PermitsExecutorService(Executors.newCachedThreadPool(), 1, 1);
+    TemplatesGenerator generator = new TemplatesGenerator(new ContextVariablesReader(), new Properties(), executor);
+    CountDownLatch release = new CountDownLatch(1);
+    try {
+      CountDownLatch started = new CountDownLatch(1);
+      executor.execute(() -> {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      started.await();
+      CompletableFuture<RenderResult> waiting = generator.renderAsync(TEMPLATE_PATH, USERS_DIR_PATH, OUTPUT_DIR_BASE_PATH,
+          new RenderOptions().withOutputSink(InMemoryOutputSink::new));
+      CompletableFuture<RenderResult> rejected = generator.renderAsync(TEMPLATE_PATH, USERS_DIR_PATH, OUTPUT_DIR_BASE_PATH,
+          new RenderOptions().withOutputSink(InMemoryOutputSink::new));
+      assertInstanceOf(RejectedExecutionException.class, assertThrows(ExecutionException.class, rejected::get).getCause());
+
+      executor.shutdownNow();
+      assertInstanceOf(RenderingException.class,
+          assertThrows(ExecutionException.class, () -> waiting.get(10, TimeUnit.SECONDS)).getCause());
+    } finally {
+      release.countDown();
+      executor.shutdownNow();
+    }
+  }
+
+  private static List<Path> sorted(List<Path> paths) {
+    List<Path> sortedPaths = new ArrayList<>(paths);
+    sortedPaths.sort(null);
+    return sortedPaths;
+  }
+}
@@ -0,0 +1,154 @@
+package com.xarchimedesx.templatesgenerator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.OptionalInt;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RenderDaemonTest {
+
+  private static final String TEMPLATE_PATH = String.join(File.separator, "templates", "template.vm");
+  private static final String USERS1_PATH = String.join(File.separator, "variables", "users", "users1.yaml");
+  private static final String EXPECTED_FILE1_PATH = String.join(File.separator, "expected", "expected1.json");
+  private static final String OUTPUT_DIR_BASE_PATH = String.join(File.separator, "target", "test-data", "daemon");
+  private static final Path WORKING_DIR = Paths.get("").toAbsolutePath();
+  private static final Path TOKENS_DIR = Paths.get("target", "test-data", "daemon-tokens");
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final ClassLoader CLASS_LOADER = RenderDaemonTest.class.getClassLoader();
+  private static RenderDaemon daemon;
+
+  @BeforeAll
+  public static void startDaemon() throws IOException {
+    daemon = new RenderDaemon(new TemplatesGenerator(), 0, Duration.ofMinutes(1), TOKENS_DIR);
+    Thread daemonThread = new Thread(() -> {
+      try {
+        daemon.serve();
+      } catch (IOException ioe) {
+        throw new UncheckedIOException(ioe);
+      }
+    });
+    daemonThread.setDaemon(true);
+    daemonThread.start();
+  }
+
+  @AfterAll
+  public static void stopDaemon() throws IOException {
+    daemon.close();
+  }
+
+  @Test
+  public void renderUsingDaemon() throws IOException {
+    ByteArrayOutputStream log = new ByteArrayOutputStream();
+    OptionalInt exitStatus = new RenderDaemonClient(daemon.getPort(), TOKENS_DIR).send(
+        new String[]{"-t", TEMPLATE_PATH, "-v", USERS1_PATH, "-o", OUTPUT_DIR_BASE_PATH}, WORKING_DIR, new PrintStream(log));
+
+    assertEquals(OptionalInt.of(RenderDaemon.EXIT_SUCCESS), exitStatus);
+    assertTrue(log.toString(StandardCharsets.UTF_8.name()).contains("Saved files"));
+    JsonNode expectedContent = MAPPER.readTree(CLASS_LOADER.getResourceAsStream(EXPECTED_FILE1_PATH));
+    JsonNode renderedContent = MAPPER.readTree(Paths.get(OUTPUT_DIR_BASE_PATH, "users.json").toFile());
+    assertEquals(expectedContent, renderedContent);
+  }
+
+  @Test
+  public void renderUsingDaemonFailsForNonExistingTemplate() throws IOException {
+    OptionalInt exitStatus = new RenderDaemonClient(daemon.getPort(), TOKENS_DIR).send(
+        new String[]{"-t", "nonexisting_template.vm", "-v", USERS1_PATH, "-o", OUTPUT_DIR_BASE_PATH}, WORKING_DIR,
+        new PrintStream(new ByteArrayOutputStream()));
+
+    assertEquals(OptionalInt.of(RenderDaemon.EXIT_FAILURE), exitStatus);
+  }
+
+  @Test
+  public void rejectRequestWithEngineOptions() throws IOException {
+    for (String[] engineOption : new String[][]{{"--variables-cache", "cache"}, {"--lazy-json", "0"}, {"--readers", "2"},
+        {"--templates-check-interval", "1"}, {"--templates-cache-size", "10"}, {"--prewarm", TEMPLATE_PATH}}) {
+      ByteArrayOutputStream log = new ByteArrayOutputStream();
+      OptionalInt exitStatus = new RenderDaemonClient(daemon.getPort(), TOKENS_DIR).send(
+          new String[]{"-t", TEMPLATE_PATH, "-v", USERS1_PATH, "-o", OUTPUT_DIR_BASE_PATH, engineOption[0], engineOption[1]},
+          WORKING_DIR, new PrintStream(log));
+
+      assertEquals(OptionalInt.of(RenderDaemon.EXIT_INVALID_REQUEST), exitStatus);
+      assertTrue(log.toString(StandardCharsets.UTF_8.name()).contains(engineOption[0]));
+    }
+  }
+
+  @Test
+  public void rejectRequestWithInvalidToken() throws IOException {
+    Path tokenPath = RenderDaemon.getTokenPath(TOKENS_DIR, daemon.getPort());
+    if (tokenPath.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+      assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(tokenPath));
+    }
+    Path invalidTokensDir = Paths.get("target", "test-data", "daemon-invalid-tokens");
+    Files.createDirectories(invalidTokensDir);
+    Files.write(RenderDaemon.getTokenPath(invalidTokensDir, daemon.getPort()), "invalid".getBytes(StandardCharsets.UTF_8));
+
+    OptionalInt exitStatus = new RenderDaemonClient(daemon.getPort(), invalidTokensDir).send(
+        new String[]{"-t", TEMPLATE_PATH, "-v", USERS1_PATH, "-o", OUTPUT_DIR_BASE_PATH}, WORKING_DIR,
+        new PrintStream(new ByteArrayOutputStream()));
+
+    assertEquals(OptionalInt.of(RenderDaemon.EXIT_INVALID_REQUEST), exitStatus);
+  }
+
+  @Test
+  public void forwardLogsOfRequestTasksOnly() throws InterruptedException, ExecutionException {
+    Logger logger = LoggerFactory.getLogger(RenderDaemonTest.class);
+    StringWriter log = new StringWriter();
+    // the pool is started before the request, as long-lived pools of the generator are
+    ExecutorService pool = Executors.newSingleThreadExecutor();
+    pool.submit(() -> logger.debug("Pool thread started.")).get();
+    DaemonLogAppender.install();
+    DaemonLogAppender.attach(new PrintWriter(log, true));
+    try {
+      pool.submit(RenderExecutors.withCallerContext(() -> logger.info("Logged by request task."))).get();
+      pool.submit(() -> logger.info("Logged by other task.")).get();
+    } finally {
+      DaemonLogAppender.detach();
+      pool.shutdown();
+    }
+
+    assertTrue(log.toString().contains("Logged by request task."));
+    assertFalse(log.toString().contains("Logged by other task."));
+  }
+
+  @Test
+  public void resolveArgsAgainstWorkingDir() {
+    Path workingDir = Paths.get("src", "test").toAbsolutePath();
+    String[] resolvedArgs = RenderDaemon.resolveArgs(
+        new String[]{"-t", TEMPLATE_PATH, "--variables=resources, " + USERS1_PATH, "-o", "out", "-c",
+            "--build-cache", "cache.json", "--shard-manifest=shard.json", "--metrics-report", "metrics.json", "--profile", "profile.txt"},
+        workingDir);
+
+    assertArrayEquals(new String[]{"-t", TEMPLATE_PATH, "--variables=" + workingDir.resolve("resources") + "," + USERS1_PATH,
+        "-o", workingDir.resolve("out").toString(), "-c",
+        "--build-cache", workingDir.resolve("cache.json").toString(), "--shard-manifest=" + workingDir.resolve("shard.json"),
+        "--metrics-report", workingDir.resolve("metrics.json").toString(), "--profile", workingDir.resolve("profile.txt").toString()},
+        resolvedArgs);
+  }
+}
@@ -0,0 +1,85 @@
+package com.xarchimedesx.templatesgenerator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xarchimedesx.templatesgenerator.exception.RenderingException;
+import com.xarchimedesx.templatesgenerator.reader.ContextVariablesReader;
+import com.xarchimedesx.templatesgenerator.reader.VariablesParsers;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RenderJobsRunnerTest {
+
+  private static final String OUTPUT_DIR_BASE_PATH = String.join(File.separator, "target", "test-data", "jobs");
+  private static final Path MANIFEST_PATH = Paths.get(OUTPUT_DIR_BASE_PATH, "jobs.yaml");
+  private static final String EXPECTED_FILE1_PATH = String.join(File.separator, "expected", "expected1.json");
+  private static final String EXPECTED_FILE_COMBINED_PATH = String.join(File.separator, "expected", "expected_with_groups.json");
+
+  private static final TemplatesGenerator GENERATOR =
+      new TemplatesGenerator(new ContextVariablesReader(VariablesParsers.defaults(), null, true), new Properties());
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final ClassLoader CLASS_LOADER = RenderJobsRunnerTest.class.getClassLoader();
+
+  @Test
+  public void runJobsConcurrently() throws IOException {
+    List<RenderJob> jobs = writeAndReadManifest(
+        "jobs:",
+        "  - template: templates/template.vm",
+        "    variables: variables/users",
+        "    output: " + OUTPUT_DIR_BASE_PATH + "/separate",
+        "  - template: templates/combined_template.vm",
+        "    variables: [variables/users, variables/groups.yml]",
+        "    output: " + OUTPUT_DIR_BASE_PATH + "/combined",
+        "    combine: true");
+
+    new RenderJobsRunner(GENERATOR, 2).run(jobs, outputDirBasePath -> new RenderOptions());
+
+    assertEquals(MAPPER.readTree(CLASS_LOADER.getResourceAsStream(EXPECTED_FILE1_PATH)),
+        readRendered("separate", "users1", "users.json"));
+    assertEquals(MAPPER.readTree(CLASS_LOADER.getResourceAsStream(EXPECTED_FILE_COMBINED_PATH)),
+        readRendered("combined", "users_with_groups.json"));
+  }
+
+  @Test
+  public void runJobsAggregatesFailures() throws IOException {
+    List<RenderJob> jobs = writeAndReadManifest(
+        "- template: nonexisting_template.vm",
+        "  variables: variables/users/users1.yaml",
+        "  output: " + OUTPUT_DIR_BASE_PATH + "/failed",
+        "- template: templates/template.vm",
+        "  variables: variables/users/users1.yaml",
+        "  output: " + OUTPUT_DIR_BASE_PATH + "/succeeded");
+
+    RenderingException re = assertThrows(RenderingException.class,
+        () -> new RenderJobsRunner(GENERATOR, 1).run(jobs, outputDirBasePath -> new RenderOptions()));
+
+    assertEquals(1, re.getSuppressed().length);
+    assertEquals(MAPPER.readTree(CLASS_LOADER.getResourceAsStream(EXPECTED_FILE1_PATH)), readRendered("succeeded", "users.json"));
+  }
+
+  @Test
+  public void readManifestFailsOnMissingTemplate() throws IOException {
+    assertThrows(IllegalArgumentException.class, () -> writeAndReadManifest("- variables: variables/users", "  output: out"));
+  }
+
+  private List<RenderJob> writeAndReadManifest(String... lines) throws IOException {
+    Files.createDirectories(MANIFEST_PATH.getParent());
+    Files.write(MANIFEST_PATH, String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    return RenderJob.readManifest(MANIFEST_PATH);
+  }
+
+  private JsonNode readRendered(String... pathElements) throws IOException {
+    return MAPPER.readTree(Paths.get(OUTPUT_DIR_BASE_PATH, pathElements).toFile());
+  }
+}
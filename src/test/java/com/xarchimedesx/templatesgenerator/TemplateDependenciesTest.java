@@ -0,0 +1,37 @@
+package com.xarchimedesx.templatesgenerator;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TemplateDependenciesTest {
+
+  private static final String TEMPLATES_DIR_PATH = String.join(File.separator, "target", "test-classes", "templates");
+  private static final Path TEMPLATE_PATH = Paths.get(TEMPLATES_DIR_PATH, "template.vm").toAbsolutePath();
+  private static final Path COMBINED_TEMPLATE_PATH = Paths.get(TEMPLATES_DIR_PATH, "combined_template.vm").toAbsolutePath();
+  private static final Path MACROS_PATH = Paths.get(TEMPLATES_DIR_PATH, "macros.vm").toAbsolutePath();
+
+  @Test
+  public void resolveTemplateWithoutIncludes() throws IOException {
+    assertEquals(Collections.singleton(TEMPLATE_PATH), TemplateDependencies.resolve(TEMPLATE_PATH.toString()));
+  }
+
+  @Test
+  public void resolveParsedTemplatesRelatively() throws IOException {
+    assertEquals(new LinkedHashSet<>(Arrays.asList(COMBINED_TEMPLATE_PATH, MACROS_PATH)),
+        TemplateDependencies.resolve(String.join(File.separator, TEMPLATES_DIR_PATH, "combined_template.vm")));
+  }
+
+  @Test
+  public void skipNonLocalTemplates() throws IOException {
+    assertEquals(Collections.emptySet(), TemplateDependencies.resolve("nonexisting_template.vm"));
+  }
+}
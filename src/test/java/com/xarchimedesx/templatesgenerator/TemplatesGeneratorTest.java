@@ -2,22 +2,53 @@ package com.xarchimedesx.templatesgenerator;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xarchimedesx.templatesgenerator.exception.RenderingException;
+import com.xarchimedesx.templatesgenerator.metrics.RenderMetrics;
+import com.xarchimedesx.templatesgenerator.metrics.RenderPhase;
+import com.xarchimedesx.templatesgenerator.output.ArchiveOutputSink;
+import com.xarchimedesx.templatesgenerator.output.InMemoryOutputSink;
+import com.xarchimedesx.templatesgenerator.reader.MergeStrategy;
+import org.apache.velocity.exception.MethodInvocationException;
 import org.apache.velocity.exception.ParseErrorException;
 import org.apache.velocity.exception.ResourceNotFoundException;
+import org.apache.velocity.shaded.commons.io.FilenameUtils;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TemplatesGeneratorTest {
 
   private static final String TEMPLATE_PATH = String.join(File.separator, "templates", "template.vm");
   private static final String COMBINED_TEMPLATE_PATH = String.join(File.separator, "templates", "combined_template.vm");
+  private static final String COMBINED_DEEP_TEMPLATE_PATH = String.join(File.separator, "templates", "combined_deep_template.vm");
   private static final String INVALID_TEMPLATE_PATH = String.join(File.separator, "templates", "invalid_template.vm");
+  private static final String FAILING_TEMPLATE_PATH = String.join(File.separator, "templates", "failing_template.vm");
+  private static final String RECORD_TEMPLATE_PATH = String.join(File.separator, "templates", "record_template.vm");
   private static final String NONEXISTING_TEMPLATE_PATH = "nonexisting_template.vm";
 
   private static final String USERS_DIR_PATH = String.join(File.separator, "variables", "users");
@@ -31,6 +62,7 @@ public class TemplatesGeneratorTest {
   private static final String OUTPUT_DIR_BASE_PATH = String.join(File.separator, "target", "test-data");
   private static final String RENDERED_USERS_PATH = String.join(File.separator, OUTPUT_DIR_BASE_PATH, "users.json");
   private static final String RENDERED_USERS_WITH_GROUPS_PATH = String.join(File.separator, OUTPUT_DIR_BASE_PATH, "users_with_groups.json");
+  private static final String FAILED_OUTPUT_DIR_PATH = String.join(File.separator, OUTPUT_DIR_BASE_PATH, "failed");
   private static final String RENDERED_USERS1_PATH = String.join(File.separator, OUTPUT_DIR_BASE_PATH, "users1", "users.json");
   private static final String RENDERED_USERS2_PATH = String.join(File.separator, OUTPUT_DIR_BASE_PATH, "users2", "users.json");
 
@@ -59,6 +91,249 @@ public class TemplatesGeneratorTest {
     assertEquals(expectedContent2, renderedContent2);
   }
 
+  @Test
+  public void renderFilesInDirectoryNotCombinedInParallel() throws IOException {
+    GENERATOR.render(TEMPLATE_PATH, USERS_DIR_PATH, OUTPUT_DIR_BASE_PATH, false, 2);
+    JsonNode expectedContent1 = MAPPER.readTree(CLASS_LOADER.getResourceAsStream(EXPECTED_FILE1_PATH));
+    JsonNode renderedContent1 = MAPPER.readTree(Paths.get(RENDERED_USERS1_PATH).toFile());
+    JsonNode expectedContent2 = MAPPER.readTree(CLASS_LOADER.getResourceAsStream(EXPECTED_FILE2_PATH));
+    JsonNode renderedContent2 = MAPPER.readTree(Paths.get(RENDERED_USERS2_PATH).toFile());
+
+    assertEquals(expectedContent1, renderedContent1);
+    assertEquals(expectedContent2, renderedContent2);
+  }
+
+  @Test
+  public void failOnNonPositiveWorkersCount() {
+    assertThrows(IllegalArgumentException.class, () -> GENERATOR.render(TEMPLATE_PATH, USERS1_PATH, OUTPUT_DIR_BASE_PATH, false, 0));
+  }
+
+  @Test
+  public void renderFilesInDirectoryWithWriteBehind() throws IOException {
+    GENERATOR.render(TEMPLATE_PATH, USERS_DIR_PATH, OUTPUT_DIR_BASE_PATH, new RenderOptions()
+        .withWorkersCount(2)
+        .withWriteBehind(1, 2)
+        .withSyncOnFlush(true));
+    JsonNode expectedContent1 = MAPPER.readTree(CLASS_LOADER.getResourceAsStream(EXPECTED_FILE1_PATH));
+    JsonNode renderedContent1 = MAPPER.readTree(Paths.get(RENDERED_USERS1_PATH).toFile());
+    JsonNode expectedContent2 = MAPPER.readTree(CLASS_LOADER.getResourceAsStream(EXPECTED_FILE2_PATH));
+    JsonNode renderedContent2 = MAPPER.readTree(Paths.get(RENDERED_USERS2_PATH).toFile());
+
+    assertEquals(expectedContent1, renderedContent1);
+    assertEquals(expectedContent2, renderedContent2);
+  }
+
+  @Test
+  public void renderToInMemorySink() throws IOException {
+    InMemoryOutputSink outputSink = new InMemoryOutputSink();
+    GENERATOR.render(TEMPLATE_PATH, USERS1_PATH, OUTPUT_DIR_BASE_PATH, new RenderOptions().withOutputSink(() -> outputSink));
+    JsonNode expectedContent = MAPPER.readTree(CLASS_LOADER.getResourceAsStream(EXPECTED_FILE1_PATH));
+
+    assertEquals(Collections.singleton(FilenameUtils.separatorsToUnix(RENDERED_USERS_PATH)), outputSink.getFiles().keySet());
+    assertEquals(expectedContent, MAPPER.readTree(outputSink.getFiles().get(FilenameUtils.separatorsToUnix(RENDERED_USERS_PATH))));
+  }
+
+  @Test
+  public void renderRecordsOfArraysWithOwnContexts() {
+    InMemoryOutputSink outputSink = new InMemoryOutputSink();
+    GENERATOR.render(RECORD_TEMPLATE_PATH, USERS_DIR_PATH, OUTPUT_DIR_BASE_PATH, new RenderOptions()
+        .withRecords("users", "id")
+        .withOutputSink(() -> outputSink));
+    Map<String, String> renderedRecords = new HashMap<>();
+    outputSink.getFiles().forEach((path, content) -> renderedRecords.put(path, new String(content, StandardCharsets.UTF_8).trim()));
+
+    assertEquals(4, renderedRecords.size());
+    assertEquals("John Doe", renderedRecords.get(FilenameUtils.separatorsToUnix(OUTPUT_DIR_BASE_PATH) + "/1/user.txt"));
+    assertEquals("Peter Pan", renderedRecords.get(FilenameUtils.separatorsToUnix(OUTPUT_DIR_BASE_PATH) + "/4/user.txt"));
+  }
+
+  @Test
+  public void renderNdjsonRecordsInParallel() throws IOException {
+    Path recordsPath = Paths.get(OUTPUT_DIR_BASE_PATH, "records-input", "users.jsonl");
+    Files.createDirectories(recordsPath.getParent());
+    try (Stream<String> lines = IntStream.rangeClosed(1, 100)
+        .mapToObj(i -> String.format("{\"personal\": {\"name\": \"Name%d\", \"surname\": \"Surname%d\"}}", i, i))) {
+      Files.write(recordsPath, (Iterable<String>) lines::iterator);
+    }
+    InMemoryOutputSink outputSink = new InMemoryOutputSink();
+    GENERATOR.render(RECORD_TEMPLATE_PATH, recordsPath.toString(), OUTPUT_DIR_BASE_PATH, new RenderOptions()
+        .withRecords(null, null)
+        .withWorkersCount(4)
+        .withOutputSink(() -> outputSink));
+
+    assertEquals(100, outputSink.getFiles().size());
+    assertEquals("Name42 Surname42", new String(outputSink.getFiles()
+        .get(FilenameUtils.separatorsToUnix(OUTPUT_DIR_BASE_PATH) + "/users-42/user.txt"), StandardCharsets.UTF_8).trim());
+  }
+
+  @Test
+  public void failOnRecordNamesLeadingOutOfOutputDir() throws IOException {
+    Path recordsPath = Paths.get(OUTPUT_DIR_BASE_PATH, "records-input", "escaping-users.jsonl");
+    Files.createDirectories(recordsPath.getParent());
+    for (String recordName : new String[]{"..", "../escaped", "nested/record", "nested\\\\record", "."}) {
+      Files.write(recordsPath, Collections.singletonList(
+          String.format("{\"id\": \"%s\", \"personal\": {\"name\": \"Name\", \"surname\": \"Surname\"}}", recordName)));
+      InMemoryOutputSink outputSink = new InMemoryOutputSink();
+
+      assertThrows(RenderingException.class, () -> GENERATOR.render(RECORD_TEMPLATE_PATH, recordsPath.toString(), OUTPUT_DIR_BASE_PATH,
+          new RenderOptions().withRecords(null, "id").withOutputSink(() -> outputSink)), recordName);
+      assertTrue(outputSink.getFiles().isEmpty());
+    }
+  }
+
+  @Test
+  public void renderAllValidRecordsBeforeFailingSequentially() throws IOException {
+    Path recordsPath = Paths.get(OUTPUT_DIR_BASE_PATH, "records-input", "duplicate-users.jsonl");
+    Files.createDirectories(recordsPath.getParent());
+    Files.write(recordsPath, Stream.of("1", "..", "2", "1")
+        .map(id -> String.format("{\"id\": \"%s\", \"personal\": {\"name\": \"Name%s\", \"surname\": \"Surname\"}}", id, id))
+        .collect(Collectors.toList()));
+    InMemoryOutputSink outputSink = new InMemoryOutputSink();
+
+    RenderingException re = assertThrows(RenderingException.class, () -> GENERATOR.render(RECORD_TEMPLATE_PATH, recordsPath.toString(),
+        OUTPUT_DIR_BASE_PATH, new RenderOptions().withRecords(null, "id").withOutputSink(() -> outputSink)));
+    assertEquals(2, re.getSuppressed().length);
+    assertEquals(2, outputSink.getFiles().size());
+    assertEquals("Name1 Surname", new String(outputSink.getFiles()
+        .get(FilenameUtils.separatorsToUnix(OUTPUT_DIR_BASE_PATH) + "/1/user.txt"), StandardCharsets.UTF_8).trim());
+  }
+
+  @Test
+  public void failOnRecordsInCombinedMode() {
+    assertThrows(IllegalArgumentException.class, () -> GENERATOR.render(RECORD_TEMPLATE_PATH, USERS_DIR_PATH, OUTPUT_DIR_BASE_PATH,
+        new RenderOptions().withCombined(true).withRecords("users", null)));
+  }
+
+  @Test
+  public void renderFilesInDirectoryCollectingMetrics() {
+    RenderMetrics metrics = new RenderMetrics();
+    InMemoryOutputSink outputSink = new InMemoryOutputSink();
+    GENERATOR.render(TEMPLATE_PATH, USERS_DIR_PATH, OUTPUT_DIR_BASE_PATH, new RenderOptions()
+        .withWorkersCount(2)
+        .withOutputSink(() -> outputSink)
+        .withMetrics(metrics));
+    long renderedBytes = outputSink.getFiles().values().stream()
+        .mapToLong(content -> content.length)
+        .sum();
+
+    assertEquals(1, metrics.getCount(RenderPhase.DISCOVERY));
+    assertEquals(2, metrics.getCount(RenderPhase.PARSE));
+    assertEquals(2, metrics.getCount(RenderPhase.CONTEXT));
+    assertEquals(2, metrics.getCount(RenderPhase.MERGE));
+    assertEquals(2, metrics.getCount(RenderPhase.WRITE));
+    assertEquals(renderedBytes, metrics.getBytes(RenderPhase.WRITE));
+  }
+
+  @Test
+  public void renderFilesInDirectoryToZipArchive() throws IOException {
+    Path archivePath = Paths.get(OUTPUT_DIR_BASE_PATH, "users.zip");
+    GENERATOR.render(TEMPLATE_PATH, USERS_DIR_PATH, OUTPUT_DIR_BASE_PATH, new RenderOptions()
+        .withWorkersCount(2)
+        .withOutputSink(() -> createArchiveOutputSink(archivePath)));
+
+    Map<String, JsonNode> entries = new HashMap<>();
+    try (ZipInputStream zipStream = new ZipInputStream(Files.newInputStream(archivePath))) {
+      for (ZipEntry entry = zipStream.getNextEntry(); entry != null; entry = zipStream.getNextEntry()) {
+        entries.put(entry.getName(), MAPPER.readTree(readAll(zipStream, 0)));
+      }
+    }
+
+    assertEquals(MAPPER.readTree(CLASS_LOADER.getResourceAsStream(EXPECTED_FILE1_PATH)), entries.get("users1/users.json"));
+    assertEquals(MAPPER.readTree(CLASS_LOADER.getResourceAsStream(EXPECTED_FILE2_PATH)), entries.get("users2/users.json"));
+    assertEquals(2, entries.size());
+  }
+
+  @Test
+  public void renderToTarGzArchive() throws IOException {
+    Path archivePath = Paths.get(OUTPUT_DIR_BASE_PATH, "users.tar.gz");
+    GENERATOR.render(TEMPLATE_PATH, USERS1_PATH, OUTPUT_DIR_BASE_PATH, new RenderOptions()
+        .withOutputSink(() -> createArchiveOutputSink(archivePath)));
+
+    try (InputStream tarStream = new GZIPInputStream(Files.newInputStream(archivePath))) {
+      byte[] header = readAll(tarStream, 512);
+      String entryName = new String(header, 0, 100, StandardCharsets.UTF_8).trim();
+      int entrySize = Integer.parseInt(new String(header, 124, 11, StandardCharsets.US_ASCII), 8);
+
+      assertEquals("users.json", entryName);
+      assertEquals(MAPPER.readTree(CLASS_LOADER.getResourceAsStream(EXPECTED_FILE1_PATH)), MAPPER.readTree(readAll(tarStream, entrySize)));
+    }
+  }
+
+  @Test
+  public void renderNestedFilesToZipArchive() throws IOException {
+    Path templatePath = Paths.get(OUTPUT_DIR_BASE_PATH, "nested", "nested_template.vm");
+    Path archivePath = Paths.get(OUTPUT_DIR_BASE_PATH, "nested", "nested.zip");
+    Files.createDirectories(templatePath.getParent());
+    Files.write(templatePath, ("#saveFile(\"${outputDirBasePath}/outer.txt\")outer "
+        + "#saveFile(\"${outputDirBasePath}/inner.txt\")inner#end#end").getBytes(StandardCharsets.UTF_8));
+    GENERATOR.render(templatePath.toString(), USERS1_PATH, OUTPUT_DIR_BASE_PATH, new RenderOptions()
+        .withOutputSink(() -> createArchiveOutputSink(archivePath)));
+
+    Map<String, String> entries = new HashMap<>();
+    try (ZipInputStream zipStream = new ZipInputStream(Files.newInputStream(archivePath))) {
+      for (ZipEntry entry = zipStream.getNextEntry(); entry != null; entry = zipStream.getNextEntry()) {
+        entries.put(entry.getName(), new String(readAll(zipStream, 0), StandardCharsets.UTF_8));
+      }
+    }
+
+    assertEquals("outer ", entries.get("outer.txt"));
+    assertEquals("inner", entries.get("inner.txt"));
+  }
+
+  @Test
+  public void rejectArchiveEntriesOutsideOfOutputDirectory() throws IOException {
+    ArchiveOutputSink archiveOutputSink = createArchiveOutputSink(Paths.get(OUTPUT_DIR_BASE_PATH, "escaping.zip"));
+    try {
+      for (Path outputFilePath : Arrays.asList(Paths.get(OUTPUT_DIR_BASE_PATH, "..", "users.json"),
+          Paths.get(OUTPUT_DIR_BASE_PATH).toAbsolutePath().getRoot().resolve("users.json"), Paths.get(OUTPUT_DIR_BASE_PATH))) {
+        assertThrows(IOException.class, () -> archiveOutputSink.open(outputFilePath));
+      }
+    } finally {
+      archiveOutputSink.flush();
+    }
+  }
+
+  @Test
+  public void renderSkippingUnchangedFiles() throws IOException {
+    GENERATOR.render(TEMPLATE_PATH, USERS1_PATH, OUTPUT_DIR_BASE_PATH, false);
+    Path renderedPath = Paths.get(RENDERED_USERS_PATH);
+    FileTime initialModificationTime = FileTime.fromMillis(0);
+    Files.setLastModifiedTime(renderedPath, initialModificationTime);
+
+    GENERATOR.render(TEMPLATE_PATH, USERS1_PATH, OUTPUT_DIR_BASE_PATH, new RenderOptions().withSkipUnchanged(true));
+    JsonNode expectedContent = MAPPER.readTree(CLASS_LOADER.getResourceAsStream(EXPECTED_FILE1_PATH));
+    JsonNode renderedContent = MAPPER.readTree(renderedPath.toFile());
+
+    assertEquals(expectedContent, renderedContent);
+    assertEquals(initialModificationTime, Files.getLastModifiedTime(renderedPath));
+  }
+
+  @Test
+  public void rewriteChangedFilesWhenSkippingUnchanged() throws IOException {
+    GENERATOR.render(TEMPLATE_PATH, USERS1_PATH, OUTPUT_DIR_BASE_PATH, false);
+    Path renderedPath = Paths.get(RENDERED_USERS_PATH);
+    byte[] renderedBytes = Files.readAllBytes(renderedPath);
+    JsonNode expectedContent = MAPPER.readTree(CLASS_LOADER.getResourceAsStream(EXPECTED_FILE1_PATH));
+
+    byte[] changedBytes = renderedBytes.clone();
+    changedBytes[changedBytes.length / 2] = ' ';
+    List<byte[]> existingContents = Arrays.asList(new byte[0], Arrays.copyOf(renderedBytes, renderedBytes.length / 2),
+        Arrays.copyOf(renderedBytes, renderedBytes.length + 1), changedBytes);
+    for (RenderOptions options : Arrays.asList(new RenderOptions(), new RenderOptions().withWriteBehind(2, 1))) {
+      for (byte[] existingContent : existingContents) {
+        Files.write(renderedPath, existingContent);
+        GENERATOR.render(TEMPLATE_PATH, USERS1_PATH, OUTPUT_DIR_BASE_PATH, options.withSkipUnchanged(true));
+
+        assertArrayEquals(renderedBytes, Files.readAllBytes(renderedPath));
+        assertEquals(expectedContent, MAPPER.readTree(renderedPath.toFile()));
+      }
+    }
+    try (Stream<Path> outputFiles = Files.list(renderedPath.getParent())) {
+      assertEquals(Collections.emptyList(), outputFiles.map(path -> path.getFileName().toString())
+          .filter(name -> name.endsWith(".tmp")).collect(Collectors.toList()));
+    }
+  }
+
   @Test
   public void renderDirectoryAndAdditionalFileCombined() throws IOException {
     GENERATOR.render(COMBINED_TEMPLATE_PATH, String.join(TemplatesGenerator.VARIABLES_FILES_SEPARATOR, USERS_DIR_PATH, GROUPS_PATH),
@@ -70,13 +345,52 @@ public class TemplatesGeneratorTest {
     assertEquals(expectedContent, renderedContent);
   }
 
+  @Test
+  public void renderFilesCombinedWithDeepMerge() throws IOException {
+    GENERATOR.render(COMBINED_DEEP_TEMPLATE_PATH, String.join(TemplatesGenerator.VARIABLES_FILES_SEPARATOR, USERS_DIR_PATH, GROUPS_PATH),
+        OUTPUT_DIR_BASE_PATH, new RenderOptions().withCombined(true).withMergeStrategy(MergeStrategy.DEEP));
+
+    JsonNode expectedContent = MAPPER.readTree(CLASS_LOADER.getResourceAsStream(EXPECTED_FILE_COMBINED_PATH));
+    JsonNode renderedContent = MAPPER.readTree(Paths.get(RENDERED_USERS_WITH_GROUPS_PATH).toFile());
+
+    assertEquals(expectedContent, renderedContent);
+  }
+
   @Test
   public void failOnInvalidTemplate() {
     assertThrows(ParseErrorException.class, () -> GENERATOR.render(INVALID_TEMPLATE_PATH, USERS1_PATH, OUTPUT_DIR_BASE_PATH, false));
   }
 
+  @Test
+  public void leaveNoPartialFileOnFailedRendering() throws IOException {
+    assertThrows(MethodInvocationException.class, () -> GENERATOR.render(FAILING_TEMPLATE_PATH, USERS1_PATH, OUTPUT_DIR_BASE_PATH, false));
+    try (Stream<Path> savedFiles = Files.list(Paths.get(FAILED_OUTPUT_DIR_PATH))) {
+      assertEquals(0, savedFiles.count());
+    }
+  }
+
   @Test
   public void failOnNonExistingTemplate() {
     assertThrows(ResourceNotFoundException.class, () -> GENERATOR.render(NONEXISTING_TEMPLATE_PATH, USERS1_PATH, OUTPUT_DIR_BASE_PATH, false));
   }
+
+  private static ArchiveOutputSink createArchiveOutputSink(Path archivePath) {
+    try {
+      return new ArchiveOutputSink(archivePath, Paths.get(OUTPUT_DIR_BASE_PATH));
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+  }
+
+  // reads given number of bytes, or everything till the end of the stream if the number is 0
+  private static byte[] readAll(InputStream inputStream, int length) throws IOException {
+    ByteArrayOutputStream content = new ByteArrayOutputStream();
+    byte[] buffer = new byte[512];
+    int read;
+    while ((length == 0 || content.size() < length)
+        && (read = inputStream.read(buffer, 0, length == 0 ? buffer.length : Math.min(buffer.length, length - content.size()))) != -1) {
+      content.write(buffer, 0, read);
+    }
+    return content.toByteArray();
+  }
 }
@@ -0,0 +1,137 @@
+package com.xarchimedesx.templatesgenerator;
+
+import com.xarchimedesx.templatesgenerator.shard.Shard;
+import org.apache.velocity.shaded.commons.io.FilenameUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TemplatesWatcherTest {
+
+  private static final Path BASE_DIR = Paths.get("target", "test-data", "watcher");
+  private static final Path TEMPLATE_PATH = BASE_DIR.resolve("template.vm");
+  private static final Path VARIABLES_DIR = BASE_DIR.resolve("variables");
+  private static final Path OUTPUT_DIR = BASE_DIR.resolve("output");
+  private static final int VARIABLES_FILES_COUNT = 4;
+  private static final FileTime INITIAL_MODIFICATION_TIME = FileTime.fromMillis(0);
+
+  private static final TemplatesGenerator GENERATOR = new TemplatesGenerator();
+
+  @BeforeEach
+  public void copyTemplateAndVariablesFiles() throws IOException {
+    if (Files.exists(BASE_DIR)) {
+      try (Stream<Path> paths = Files.walk(BASE_DIR)) {
+        paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+      }
+    }
+    Files.createDirectories(VARIABLES_DIR);
+    try (InputStream template = getClass().getClassLoader().getResourceAsStream("templates/template.vm")) {
+      Files.copy(template, TEMPLATE_PATH);
+    }
+    for (int i = 1; i <= VARIABLES_FILES_COUNT; i++) {
+      try (InputStream variables = getClass().getClassLoader().getResourceAsStream("variables/users/users1.yaml")) {
+        Files.copy(variables, getUsersPath(i));
+      }
+    }
+  }
+
+  @Test
+  public void reRenderOnlyChangedVariablesFile() throws IOException {
+    try (TemplatesWatcher watcher = newWatcher(new RenderOptions())) {
+      watcher.renderAll();
+      resetRenderedModificationTimes();
+
+      watcher.processChanges(Collections.singletonMap(getUsersPath(2).toAbsolutePath(), StandardWatchEventKinds.ENTRY_MODIFY));
+      for (int i = 1; i <= VARIABLES_FILES_COUNT; i++) {
+        FileTime modificationTime = Files.getLastModifiedTime(getRenderedUsersPath(i));
+        if (i == 2) {
+          assertNotEquals(INITIAL_MODIFICATION_TIME, modificationTime);
+        } else {
+          assertEquals(INITIAL_MODIFICATION_TIME, modificationTime);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void reRenderAllOutputsOnTemplateChange() throws IOException {
+    try (TemplatesWatcher watcher = newWatcher(new RenderOptions())) {
+      watcher.renderAll();
+      resetRenderedModificationTimes();
+
+      watcher.processChanges(Collections.singletonMap(TEMPLATE_PATH.toAbsolutePath(), StandardWatchEventKinds.ENTRY_MODIFY));
+      for (int i = 1; i <= VARIABLES_FILES_COUNT; i++) {
+        assertNotEquals(INITIAL_MODIFICATION_TIME, Files.getLastModifiedTime(getRenderedUsersPath(i)));
+      }
+    }
+  }
+
+  @Test
+  public void reRenderOnlyVariablesFilesOfShard() throws IOException {
+    Shard shard = new Shard(0, 2);
+    try (TemplatesWatcher watcher = newWatcher(new RenderOptions().withShard(shard.getIndex(), shard.getCount()))) {
+      watcher.renderAll();
+
+      int assignedCount = 0;
+      for (int i = 1; i <= VARIABLES_FILES_COUNT; i++) {
+        Path renderedUsersPath = getRenderedUsersPath(i);
+        boolean isAssigned = shard.isAssigned(FilenameUtils.separatorsToUnix(getUsersPath(i).toString()));
+        assignedCount += isAssigned ? 1 : 0;
+        assertEquals(isAssigned, Files.exists(renderedUsersPath));
+
+        watcher.processChanges(Collections.singletonMap(getUsersPath(i).toAbsolutePath(), StandardWatchEventKinds.ENTRY_MODIFY));
+        assertEquals(isAssigned, Files.exists(renderedUsersPath));
+      }
+      // both shards have to get some files for the test to check anything
+      assertTrue(assignedCount > 0 && assignedCount < VARIABLES_FILES_COUNT);
+    }
+  }
+
+  @Test
+  public void ignoreChangesOfUnwatchedFiles() throws IOException {
+    try (TemplatesWatcher watcher = newWatcher(new RenderOptions())) {
+      watcher.renderAll();
+      resetRenderedModificationTimes();
+
+      Path unwatchedPath = VARIABLES_DIR.resolve("notes.txt").toAbsolutePath();
+      watcher.processChanges(Collections.<Path, WatchEvent.Kind<?>>singletonMap(unwatchedPath, StandardWatchEventKinds.ENTRY_MODIFY));
+      for (int i = 1; i <= VARIABLES_FILES_COUNT; i++) {
+        assertEquals(INITIAL_MODIFICATION_TIME, Files.getLastModifiedTime(getRenderedUsersPath(i)));
+      }
+    }
+  }
+
+  private static TemplatesWatcher newWatcher(RenderOptions options) throws IOException {
+    return new TemplatesWatcher(GENERATOR, TEMPLATE_PATH.toString(), VARIABLES_DIR.toString(), OUTPUT_DIR.toString(), options);
+  }
+
+  private static void resetRenderedModificationTimes() throws IOException {
+    for (int i = 1; i <= VARIABLES_FILES_COUNT; i++) {
+      Files.setLastModifiedTime(getRenderedUsersPath(i), INITIAL_MODIFICATION_TIME);
+    }
+  }
+
+  private static Path getUsersPath(int number) {
+    return VARIABLES_DIR.resolve("users" + number + ".yaml");
+  }
+
+  private static Path getRenderedUsersPath(int number) {
+    return OUTPUT_DIR.resolve(Paths.get("users" + number, "users.json"));
+  }
+}
@@ -19,6 +19,7 @@ public class ParserTest {
     assertEquals(VARIABLES, cli.getOptionValue("variables"));
     assertEquals(OUTPUT, cli.getOptionValue("output"));
     assertFalse(cli.hasOption("combine"));
+    assertFalse(cli.hasOption("workers"));
   }
 
   @Test
@@ -30,6 +31,19 @@ public class ParserTest {
     assertTrue(cli.hasOption("combine"));
   }
 
+  @Test
+  public void parserParseValidInputWithWorkers() {
+    CommandLine cli = PARSER.parse("-t", TEMPLATE, "-v", VARIABLES, "-o", OUTPUT, "-w", "4");
+    assertEquals("4", cli.getOptionValue("workers"));
+  }
+
+  @Test
+  public void parserParseDaemonWithoutRenderOptions() {
+    CommandLine cli = PARSER.parse("--daemon", "--daemon-port", "7000");
+    assertTrue(cli.hasOption("daemon"));
+    assertEquals("7000", cli.getOptionValue("daemon-port"));
+  }
+
   @Test
   public void parserCatchAnException() {
     assertThrows(RuntimeException.class, () -> PARSER.parse("Unknown parameters"));
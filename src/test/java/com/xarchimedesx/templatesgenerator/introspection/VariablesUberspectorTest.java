@@ -0,0 +1,71 @@
+package com.xarchimedesx.templatesgenerator.introspection;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.exception.MethodInvocationException;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.RuntimeInstance;
+import org.apache.velocity.util.introspection.Info;
+import org.apache.velocity.util.introspection.Uberspect;
+import org.apache.velocity.util.introspection.UberspectImpl;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VariablesUberspectorTest {
+
+  private static final String VARIABLES = "{\"users\": [{\"id\": 1, \"personal\": {\"name\": \"John\", \"tags\": [\"a\", \"b\"]}}, " +
+      "{\"id\": 2, \"personal\": {\"name\": \"Jane\", \"tags\": []}}], \"empty\": {}}";
+  private static final String TEMPLATE = "#foreach( $user in $users )$user.id:$user.personal.name:$user.personal.tags.size()" +
+      ":$user.personal.tags.isEmpty():$user.personal.tags.contains('a'):$user.get('id'):$user.containsKey('personal')" +
+      ":$user.class.simpleName;#end$users.get(1).personal.name $users[0].personal.tags[1] $users.get('1').id $empty.isEmpty()";
+  private static final Info INFO = new Info("test", 1, 1);
+
+  @Test
+  public void renderSameAsDefaultIntrospection() throws IOException {
+    String expected = "1:John:2:false:true:1:true:LinkedHashMap;2:Jane:0:true:false:2:true:LinkedHashMap;Jane b 2 true";
+
+    assertEquals(expected, evaluate(UberspectImpl.class, TEMPLATE));
+    assertEquals(expected, evaluate(VariablesUberspector.class, TEMPLATE));
+    assertThrows(MethodInvocationException.class, () -> evaluate(VariablesUberspector.class, "$users.get(2)"));
+  }
+
+  @Test
+  public void resolveParsedVariablesDirectly() throws Exception {
+    RuntimeInstance runtime = new RuntimeInstance();
+    runtime.setProperty(RuntimeConstants.UBERSPECT_CLASSNAME, VariablesUberspector.class.getName());
+    runtime.init();
+    Uberspect uberspector = runtime.getUberspect();
+    Map<String, Object> user = new LinkedHashMap<>();
+    user.put("name", "John");
+
+    assertTrue(uberspector.getPropertyGet(user, "name", INFO) instanceof VariablesUberspector.MapKeyGetter);
+    assertEquals("John", uberspector.getPropertyGet(user, "name", INFO).invoke(user));
+    assertSame(DirectMethod.MAP_GET, uberspector.getMethod(user, "get", new Object[]{"name"}, INFO));
+    assertSame(DirectMethod.LIST_GET, uberspector.getMethod(Arrays.asList(user), "get", new Object[]{0}, INFO));
+    assertFalse(uberspector.getMethod(Arrays.asList(user), "get", new Object[]{"0"}, INFO) instanceof DirectMethod);
+  }
+
+  private static String evaluate(Class<?> uberspectorClass, String template) throws IOException {
+    VelocityEngine engine = new VelocityEngine();
+    engine.setProperty(RuntimeConstants.UBERSPECT_CLASSNAME, uberspectorClass.getName());
+    engine.init();
+    Map<String, Object> variables = new ObjectMapper().readValue(VARIABLES, new TypeReference<Map<String, Object>>() {
+    });
+    StringWriter writer = new StringWriter();
+    engine.evaluate(new VelocityContext(variables), writer, "test", template);
+    return writer.toString();
+  }
+}
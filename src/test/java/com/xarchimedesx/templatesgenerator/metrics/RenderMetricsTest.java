@@ -0,0 +1,62 @@
+package com.xarchimedesx.templatesgenerator.metrics;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RenderMetricsTest {
+
+  @Test
+  public void estimateQuantilesFromBuckets() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 0; i < 99; i++) {
+      histogram.record(TimeUnit.MICROSECONDS.toNanos(3));
+    }
+    histogram.record(TimeUnit.MILLISECONDS.toNanos(10));
+
+    assertEquals(100, histogram.getCount());
+    assertEquals(TimeUnit.MICROSECONDS.toNanos(4), histogram.getQuantileNanos(0.5));
+    assertEquals(TimeUnit.MICROSECONDS.toNanos(4), histogram.getQuantileNanos(0.99));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(10), histogram.getQuantileNanos(1));
+  }
+
+  @Test
+  public void writeJsonReport() throws IOException {
+    RenderMetrics metrics = new RenderMetrics();
+    metrics.record(RenderPhase.PARSE, "yaml", TimeUnit.MILLISECONDS.toNanos(2), 100);
+    metrics.record(RenderPhase.PARSE, "yaml", TimeUnit.MILLISECONDS.toNanos(4), 50);
+    metrics.record(RenderPhase.PARSE, "json", TimeUnit.MILLISECONDS.toNanos(1), 10);
+    StringWriter report = new StringWriter();
+    metrics.writeJsonReport(report);
+    JsonNode phases = new ObjectMapper().readTree(report.toString()).get("phases");
+
+    assertEquals(2, phases.size());
+    assertEquals("json", phases.get(0).get("label").asText());
+    assertEquals(2, phases.get(1).get("count").asLong());
+    assertEquals(150, phases.get(1).get("bytes").asLong());
+    assertEquals(6.0, phases.get(1).get("totalMillis").asDouble());
+    assertEquals(160, metrics.getBytes(RenderPhase.PARSE));
+  }
+
+  @Test
+  public void writePrometheusReport() throws IOException {
+    RenderMetrics metrics = new RenderMetrics();
+    metrics.record(RenderPhase.WRITE, "FileSystemOutputSink", TimeUnit.MICROSECONDS.toNanos(3), 42);
+    StringWriter report = new StringWriter();
+    metrics.writePrometheusReport(report);
+    String text = report.toString();
+
+    assertTrue(text.contains("templates_generator_phase_duration_seconds_bucket{phase=\"write\",label=\"FileSystemOutputSink\",le=\"2.0E-6\"} 0"));
+    assertTrue(text.contains("templates_generator_phase_duration_seconds_bucket{phase=\"write\",label=\"FileSystemOutputSink\",le=\"4.0E-6\"} 1"));
+    assertTrue(text.contains("templates_generator_phase_duration_seconds_bucket{phase=\"write\",label=\"FileSystemOutputSink\",le=\"+Inf\"} 1"));
+    assertTrue(text.contains("templates_generator_phase_duration_seconds_count{phase=\"write\",label=\"FileSystemOutputSink\"} 1"));
+    assertTrue(text.contains("templates_generator_phase_bytes_total{phase=\"write\",label=\"FileSystemOutputSink\"} 42"));
+  }
+}
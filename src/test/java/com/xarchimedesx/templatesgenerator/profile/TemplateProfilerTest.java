@@ -0,0 +1,72 @@
+package com.xarchimedesx.templatesgenerator.profile;
+
+import com.xarchimedesx.templatesgenerator.RenderOptions;
+import com.xarchimedesx.templatesgenerator.TemplatesGenerator;
+import com.xarchimedesx.templatesgenerator.output.InMemoryOutputSink;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TemplateProfilerTest {
+
+  private static final String COMBINED_TEMPLATE = String.join("/", "templates", "combined_template.vm");
+  private static final String VARIABLES_PATHS = String.join(",", String.join(File.separator, "variables", "users"),
+      String.join(File.separator, "variables", "groups.yml"));
+  private static final String OUTPUT_DIR_BASE_PATH = String.join(File.separator, "target", "test-data", "profile");
+
+  @Test
+  public void attributeTimeToTemplatesMacrosAndDirectives() {
+    TemplateProfiler profiler = renderProfiled();
+    CallTreeNode template = getOnlyChild(profiler.getRoot());
+    CallTreeNode saveFile = template.getChild(COMBINED_TEMPLATE + ":5 #saveFile");
+    CallTreeNode usersLoop = saveFile.getChild(COMBINED_TEMPLATE + ":9 #foreach");
+    CallTreeNode groupMacro = usersLoop.getChild("#getGroupForUser");
+
+    assertEquals(COMBINED_TEMPLATE, template.getFrame());
+    assertEquals(1, template.getCallsCount());
+    assertEquals(1, template.getChild(COMBINED_TEMPLATE + ":1 #parse").getChild("templates/macros.vm").getCallsCount());
+    assertEquals(1, template.getChild("#flattenUsers").getCallsCount());
+    assertEquals(1, saveFile.getCallsCount());
+    assertEquals(1, usersLoop.getCallsCount());
+    assertEquals(4, groupMacro.getCallsCount());
+    assertEquals(4, groupMacro.getChild("templates/macros.vm:14 #foreach").getCallsCount());
+    assertTrue(template.getTotalNanos() >= saveFile.getTotalNanos() + template.getSelfNanos());
+  }
+
+  @Test
+  public void writeCollapsedStacks() throws IOException {
+    TemplateProfiler profiler = renderProfiled();
+    StringWriter collapsedStacks = new StringWriter();
+    profiler.writeCollapsedStacks(collapsedStacks);
+    List<String> stacks = Arrays.stream(collapsedStacks.toString().split("\n"))
+        .map(line -> line.substring(0, line.lastIndexOf(' ')))
+        .collect(Collectors.toList());
+
+    assertTrue(stacks.contains(String.join(";", COMBINED_TEMPLATE, COMBINED_TEMPLATE + ":5 #saveFile",
+        COMBINED_TEMPLATE + ":9 #foreach", "#getGroupForUser", "templates/macros.vm:14 #foreach")));
+    assertTrue(stacks.stream().allMatch(stack -> stack.startsWith(COMBINED_TEMPLATE)));
+  }
+
+  private static TemplateProfiler renderProfiled() {
+    TemplateProfiler profiler = new TemplateProfiler();
+    new TemplatesGenerator().render(COMBINED_TEMPLATE, VARIABLES_PATHS, OUTPUT_DIR_BASE_PATH, new RenderOptions()
+        .withCombined(true)
+        .withOutputSink(InMemoryOutputSink::new)
+        .withProfiler(profiler));
+    return profiler;
+  }
+
+  private static CallTreeNode getOnlyChild(CallTreeNode node) {
+    List<CallTreeNode> children = node.getChildren();
+    assertEquals(1, children.size());
+    return children.get(0);
+  }
+}
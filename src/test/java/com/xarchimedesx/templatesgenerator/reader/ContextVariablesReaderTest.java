@@ -4,12 +4,21 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -21,8 +30,11 @@ public class ContextVariablesReaderTest {
   private static final String USERS1_PATH = String.join(File.separator, USERS_DIR_PATH, "users1.yaml");
   private static final String USERS2_PATH = String.join(File.separator, USERS_DIR_PATH, "users2.json");
   private static final String GROUPS_PATH = String.join(File.separator, "variables", "groups.yml");
+  private static final String NONSUPPORTED_PATH = String.join(File.separator, USERS_DIR_PATH, "nonsupported.txt");
   private static final String NONEXISTING_VARIABLES_PATH = "nonexisting.yaml";
   private static final String INVALID_VARIABLES_PATH = String.join(File.separator, "variables", "invalid_variables.yaml");
+  private static final Path SNAPSHOT_CACHE_DIR = Paths.get("target", "variables-cache");
+  private static final Path PARTLY_INVALID_DIR = Paths.get("target", "test-data", "partly-invalid-variables");
   private static final ContextVariablesReader READER = new ContextVariablesReader();
 
   private static List<Pair<String, Map<String, Object>>> expectedUsers1Content;
@@ -198,9 +210,141 @@ public class ContextVariablesReaderTest {
         READER.getVariables(Arrays.asList(USERS_DIR_PATH, GROUPS_PATH), true));
   }
 
+  @Test
+  public void multifileInputStreamed() {
+    List<VariablesFile> variablesFiles = READER.discoverVariablesFiles(Arrays.asList(USERS_DIR_PATH, GROUPS_PATH));
+
+    assertEquals(Arrays.asList("users1", "users2", "groups"),
+        variablesFiles.stream().map(VariablesFile::getName).collect(Collectors.toList()));
+    assertEquals(expectedAllContentNonCombined, READER.streamVariables(variablesFiles).collect(Collectors.toList()));
+  }
+
+  @Test
+  public void readWithSnapshotCache() throws IOException {
+    VariablesSnapshotCache snapshotCache = new VariablesSnapshotCache(SNAPSHOT_CACHE_DIR, Long.MAX_VALUE);
+    snapshotCache.clear();
+    ContextVariablesReader reader = new ContextVariablesReader(VariablesParsers.defaults(), snapshotCache);
+
+    assertEquals(expectedUsers1Content, reader.processPath(USERS1_PATH));
+    assertEquals(1, countSnapshots());
+    assertEquals(expectedUsers1Content, reader.processPath(USERS1_PATH));
+    assertEquals(1, countSnapshots());
+  }
+
+  @Test
+  public void parseVariablesFileOnlyOnSnapshotCacheMiss() throws Exception {
+    VariablesSnapshotCache snapshotCache = new VariablesSnapshotCache(SNAPSHOT_CACHE_DIR, Long.MAX_VALUE);
+    snapshotCache.clear();
+    Path users1Path = Paths.get(getClass().getClassLoader().getResource(USERS1_PATH).toURI());
+    VariablesParser yamlParser = VariablesParsers.defaults().getParser("yaml").get();
+    AtomicInteger parsesCount = new AtomicInteger();
+    VariablesParser countingParser = inputStream -> {
+      parsesCount.incrementAndGet();
+      return yamlParser.parse(inputStream);
+    };
+
+    Map<String, Object> parsedContent = snapshotCache.load(users1Path, countingParser);
+    assertEquals(parsedContent, snapshotCache.load(users1Path, countingParser));
+    assertEquals(1, parsesCount.get());
+  }
+
+  @Test
+  public void returnParsedContentWhenSnapshotCannotBeStored() throws Exception {
+    Path notDirectoryPath = Paths.get("target", "test-data", "variables-cache-file");
+    Files.createDirectories(notDirectoryPath.getParent());
+    Files.write(notDirectoryPath, new byte[0]);
+    VariablesSnapshotCache snapshotCache = new VariablesSnapshotCache(notDirectoryPath, Long.MAX_VALUE);
+    Path users1Path = Paths.get(getClass().getClassLoader().getResource(USERS1_PATH).toURI());
+
+    Map<String, Object> content = snapshotCache.load(users1Path, VariablesParsers.defaults().getParser("yaml").get());
+    assertEquals(expectedUsers1Content, Collections.singletonList(Pair.of("users1", content)));
+  }
+
+  @Test
+  public void readMemoized() {
+    ContextVariablesReader reader = new ContextVariablesReader(VariablesParsers.defaults(), null, true);
+    VariablesFile users1File = reader.discoverVariablesFiles(Collections.singletonList(USERS1_PATH)).get(0);
+
+    Map<String, Object> firstContent = reader.readVariablesFile(users1File).getValue();
+    firstContent.put("setInTemplate", true);
+    @SuppressWarnings("unchecked")
+    List<Map<String, Object>> firstUsers = (List<Map<String, Object>>) firstContent.get("users");
+    firstUsers.get(0).put("setInTemplate", true);
+    firstUsers.add(Collections.singletonMap("addedInTemplate", true));
+    Map<String, Object> secondContent = reader.readVariablesFile(users1File).getValue();
+
+    assertEquals(expectedUsers1Content, Collections.singletonList(Pair.of("users1", secondContent)));
+    assertNotSame(firstContent, secondContent);
+  }
+
+  @Test
+  public void readJsonLazily() {
+    ContextVariablesReader reader = new ContextVariablesReader(VariablesParsers.defaults(), null, false, 0);
+
+    List<Pair<String, Map<String, Object>>> content = reader.processPath(USERS2_PATH);
+    assertEquals(expectedUsers2Content, content);
+    assertInstanceOf(LazyJsonMap.class, content.get(0).getValue());
+  }
+
+  @Test
+  public void readInParallelPreservingOrder() {
+    ContextVariablesReader reader = new ContextVariablesReader(VariablesParsers.defaults(), null, false, -1, 4);
+    List<VariablesFile> variablesFiles = reader.discoverVariablesFiles(Arrays.asList(USERS_DIR_PATH, GROUPS_PATH));
+
+    assertEquals(Arrays.asList("users1", "users2", "groups"),
+        variablesFiles.stream().map(VariablesFile::getName).collect(Collectors.toList()));
+    assertEquals(expectedAllContentNonCombined, reader.streamVariables(variablesFiles).collect(Collectors.toList()));
+    assertEquals(expectedAllContentCombined, reader.getVariables(Arrays.asList(USERS_DIR_PATH, GROUPS_PATH), true));
+  }
+
+  @Test
+  public void aggregateFailuresOfParallelReading() throws IOException {
+    Files.createDirectories(PARTLY_INVALID_DIR.resolve("nested"));
+    Files.write(PARTLY_INVALID_DIR.resolve("a.yaml"), "value: a".getBytes(StandardCharsets.UTF_8));
+    Files.write(PARTLY_INVALID_DIR.resolve("b.yaml"), "value: [b".getBytes(StandardCharsets.UTF_8));
+    Files.write(PARTLY_INVALID_DIR.resolve("c.json"), "{\"value\": ".getBytes(StandardCharsets.UTF_8));
+    Files.write(PARTLY_INVALID_DIR.resolve("nested").resolve("d.yml"), "value: d".getBytes(StandardCharsets.UTF_8));
+    ContextVariablesReader reader = new ContextVariablesReader(VariablesParsers.defaults(), null, false, -1, 4);
+    List<VariablesFile> variablesFiles = reader.discoverVariablesFiles(Collections.singletonList(PARTLY_INVALID_DIR.toString()));
+
+    List<String> readNames = new ArrayList<>();
+    RuntimeException failure = assertThrows(RuntimeException.class,
+        () -> reader.streamVariables(variablesFiles).forEach(var -> readNames.add(var.getKey())));
+    assertEquals(Arrays.asList("a", "b", "c", "d"), variablesFiles.stream().map(VariablesFile::getName).collect(Collectors.toList()));
+    assertEquals(Arrays.asList("a", "d"), readNames);
+    assertEquals(2, failure.getSuppressed().length);
+  }
+
+  @Test
+  public void evictSnapshotsOverSizeLimit() throws IOException {
+    VariablesSnapshotCache snapshotCache = new VariablesSnapshotCache(SNAPSHOT_CACHE_DIR, 0);
+    snapshotCache.clear();
+    ContextVariablesReader reader = new ContextVariablesReader(VariablesParsers.defaults(), snapshotCache);
+
+    assertEquals(expectedDirContent, reader.processPath(USERS_DIR_PATH));
+    assertEquals(0, countSnapshots());
+  }
+
+  @Test
+  public void evictLeastRecentlyUsedSnapshotsBelowSizeLimit() throws IOException {
+    VariablesSnapshotCache unlimitedSnapshotCache = new VariablesSnapshotCache(SNAPSHOT_CACHE_DIR, Long.MAX_VALUE);
+    unlimitedSnapshotCache.clear();
+    new ContextVariablesReader(VariablesParsers.defaults(), unlimitedSnapshotCache).processPath(USERS_DIR_PATH);
+    assertEquals(2, countSnapshots());
+    long snapshotsSize = sizeOfSnapshots();
+
+    VariablesSnapshotCache snapshotCache = new VariablesSnapshotCache(SNAPSHOT_CACHE_DIR, snapshotsSize - 1);
+    snapshotCache.clear();
+    ContextVariablesReader reader = new ContextVariablesReader(VariablesParsers.defaults(), snapshotCache);
+
+    assertEquals(expectedDirContent, reader.processPath(USERS_DIR_PATH));
+    assertEquals(1, countSnapshots());
+    assertTrue(sizeOfSnapshots() < snapshotsSize - 1);
+  }
+
   @Test
   public void extensionFilterSupportedTest() {
-    ContextVariablesReader.SUPPORTED_EXTENSIONS.stream()
+    VariablesParsers.defaults().getSupportedExtensions().stream()
         .map(e -> "file." + e)
         .forEach(f -> assertTrue(READER.extensionFilter(Paths.get(f))));
   }
@@ -209,4 +353,55 @@ public class ContextVariablesReaderTest {
   public void extensionFilterNonSupportedTest() {
     assertFalse(READER.extensionFilter(Paths.get("file.txt")));
   }
+
+  @Test
+  public void readWithCustomParser() {
+    ContextVariablesReader reader = new ContextVariablesReader(VariablesParsers.defaults()
+        .register("txt", is -> Collections.singletonMap("text", new BufferedReader(new InputStreamReader(is)).readLine())));
+
+    assertEquals(Collections.singletonList(Pair.of("nonsupported", Collections.singletonMap("text", "This file should be skipped on reading"))),
+        reader.processPath(NONSUPPORTED_PATH));
+  }
+
+  @Test
+  public void streamRecordsOfArray() {
+    VariablesFile usersFile = READER.discoverRecordsFiles(Collections.singletonList(USERS1_PATH)).get(0);
+    List<Pair<String, Map<String, Object>>> records;
+    try (Stream<Pair<String, Map<String, Object>>> stream = READER.streamRecords(usersFile, "users", "id")) {
+      records = stream.collect(Collectors.toList());
+    }
+
+    assertEquals(Arrays.asList("1", "2"), records.stream().map(Pair::getKey).collect(Collectors.toList()));
+    assertEquals(expectedUsers1Content.get(0).getValue().get("users"), records.stream().map(Pair::getValue).collect(Collectors.toList()));
+    assertThrows(RuntimeException.class, () -> READER.streamRecords(usersFile, "groups", null));
+  }
+
+  @Test
+  public void streamRecordsOfNdjson() throws IOException {
+    Path recordsPath = Paths.get("target", "test-data", "records", "users.ndjson");
+    Files.createDirectories(recordsPath.getParent());
+    Files.write(recordsPath, Arrays.asList("{\"id\": 1, \"name\": \"John\"}", "{\"name\": \"Jane\"}", "", "{\"id\": 3}"));
+    List<VariablesFile> recordsFiles = READER.discoverRecordsFiles(Collections.singletonList(recordsPath.toString()));
+
+    try (Stream<Pair<String, Map<String, Object>>> stream = READER.streamRecords(recordsFiles.get(0), null, "id")) {
+      assertEquals(Arrays.asList("1", "users-2", "3"), stream.map(Pair::getKey).collect(Collectors.toList()));
+    }
+    assertTrue(READER.discoverVariablesFiles(Collections.singletonList(recordsPath.toString())).isEmpty());
+  }
+
+  private static long countSnapshots() throws IOException {
+    try (Stream<Path> snapshots = Files.list(SNAPSHOT_CACHE_DIR)) {
+      return snapshots.count();
+    }
+  }
+
+  private static long sizeOfSnapshots() throws IOException {
+    long size = 0;
+    try (Stream<Path> snapshots = Files.list(SNAPSHOT_CACHE_DIR)) {
+      for (Path snapshot : (Iterable<Path>) snapshots::iterator) {
+        size += Files.size(snapshot);
+      }
+    }
+    return size;
+  }
 }
@@ -0,0 +1,80 @@
+package com.xarchimedesx.templatesgenerator.reader;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class JarIndexTest {
+
+  private static final Path JAR_PATH = Paths.get("target", "test-data", "jar-index", "variables.jar").toAbsolutePath();
+
+  @BeforeAll
+  static void writeJar() throws IOException {
+    JarIndex.clear();
+    Files.createDirectories(JAR_PATH.getParent());
+    try (ZipOutputStream jarStream = new ZipOutputStream(Files.newOutputStream(JAR_PATH))) {
+      writeEntry(jarStream, "variables/users/users2.json", "{\"name\": \"Jane\"}");
+      writeEntry(jarStream, "variables/users/nested/users3.yaml", "name: Jack");
+      writeEntry(jarStream, "variables/users/users1.yaml", "name: John");
+      writeEntry(jarStream, "variables/users.yaml", "name: Outside");
+      writeEntry(jarStream, "variables/users-archive/users0.yaml", "name: Old");
+    }
+  }
+
+  @Test
+  public void findEntriesUnderDirectory() throws IOException {
+    List<Path> entries = JarIndex.findEntries(getEntryUri("variables/users"));
+
+    assertEquals(Arrays.asList("/variables/users/nested/users3.yaml", "/variables/users/users1.yaml", "/variables/users/users2.json"),
+        entries.stream().map(Path::toString).collect(Collectors.toList()));
+  }
+
+  @Test
+  public void findSingleEntryAndReuseFileSystem() throws IOException {
+    Path firstEntry = JarIndex.findEntries(getEntryUri("variables/users.yaml")).get(0);
+    Path secondEntry = JarIndex.findEntries(getEntryUri("variables/users/users1.yaml")).get(0);
+
+    assertEquals("/variables/users.yaml", firstEntry.toString());
+    assertSame(firstEntry.getFileSystem(), secondEntry.getFileSystem());
+  }
+
+  @Test
+  public void readEntriesFromOpenFileSystem() throws IOException {
+    ContextVariablesReader reader = new ContextVariablesReader();
+    List<Pair<String, Map<String, Object>>> variables = JarIndex.findEntries(getEntryUri("variables/users")).stream()
+        .map(entry -> reader.readVariablesFile(new VariablesFile(entry, "jar")))
+        .collect(Collectors.toList());
+
+    assertEquals(Arrays.asList(
+        Pair.of("users3", Collections.singletonMap("name", "Jack")),
+        Pair.of("users1", Collections.singletonMap("name", "John")),
+        Pair.of("users2", Collections.singletonMap("name", "Jane"))), variables);
+  }
+
+  private static URI getEntryUri(String entryName) {
+    return URI.create("jar:" + JAR_PATH.toUri() + "!/" + entryName);
+  }
+
+  private static void writeEntry(ZipOutputStream jarStream, String entryName, String content) throws IOException {
+    jarStream.putNextEntry(new ZipEntry(entryName));
+    jarStream.write(content.getBytes(StandardCharsets.UTF_8));
+    jarStream.closeEntry();
+  }
+}
@@ -0,0 +1,98 @@
+package com.xarchimedesx.templatesgenerator.reader;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LazyJsonMapTest {
+
+  private static final Path JSON_PATH = Paths.get("target", "test-data", "lazy", "variables.json");
+  private static final Path INVALID_JSON_PATH = Paths.get("target", "test-data", "lazy", "array.json");
+  private static final String JSON = "{\"name\": \"lazy\", \"count\": 3, \"empty\": null,"
+      + " \"users\": [{\"id\": 1, \"personal\": {\"name\": \"Kate\"}}, {\"id\": 2}],"
+      + " \"groups\": {\"employees\": [1, 2]}}";
+  // small chunks make values span several mappings
+  private static final long CHUNK_SIZE = 7;
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  @BeforeAll
+  public static void writeFiles() throws IOException {
+    Files.createDirectories(JSON_PATH.getParent());
+    Files.write(JSON_PATH, JSON.getBytes(StandardCharsets.UTF_8));
+    Files.write(INVALID_JSON_PATH, "[1, 2]".getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void readLikeParsedFile() throws IOException {
+    LazyJsonMap variables = LazyJsonMap.open(JSON_PATH, CHUNK_SIZE);
+
+    assertEquals(MAPPER.readValue(JSON, Map.class), variables);
+    assertEquals(Arrays.asList("name", "count", "empty", "users", "groups"), Arrays.asList(variables.keySet().toArray()));
+  }
+
+  @Test
+  public void materializeOnlyDereferencedValues() throws IOException {
+    LazyJsonMap variables = LazyJsonMap.open(JSON_PATH, CHUNK_SIZE);
+
+    assertFalse(variables.isMaterialized("users"));
+    Map<?, ?> firstUser = (Map<?, ?>) ((List<?>) variables.get("users")).get(0);
+    assertEquals(Collections.singletonMap("name", "Kate"), firstUser.get("personal"));
+    assertTrue(variables.isMaterialized("users"));
+    assertFalse(variables.isMaterialized("groups"));
+  }
+
+  @Test
+  public void materializeOnlyDereferencedNestedValues() throws IOException {
+    LazyJsonMap variables = LazyJsonMap.open(JSON_PATH, CHUNK_SIZE);
+
+    LazyJsonList users = (LazyJsonList) variables.get("users");
+    assertFalse(users.isMaterialized(0));
+    LazyJsonObject firstUser = (LazyJsonObject) users.get(0);
+    assertEquals(1, firstUser.get("id"));
+    assertFalse(firstUser.isMaterialized("personal"));
+    assertEquals("Kate", ((Map<?, ?>) firstUser.get("personal")).get("name"));
+    assertTrue(firstUser.isMaterialized("personal"));
+    assertFalse(users.isMaterialized(1));
+    assertSame(firstUser, users.get(0));
+    assertThrows(UnsupportedOperationException.class, () -> firstUser.put("id", 3));
+  }
+
+  @Test
+  public void keepPutValuesInView() throws IOException {
+    LazyJsonMap variables = LazyJsonMap.open(JSON_PATH, CHUNK_SIZE);
+    LazyJsonMap copy = variables.copy();
+
+    assertNull(variables.put("users", "overwritten"));
+    variables.put("added", 1);
+    variables.remove("name");
+
+    assertEquals("overwritten", variables.get("users"));
+    assertFalse(variables.containsKey("name"));
+    assertTrue(variables.containsKey("added"));
+    assertFalse(variables.isMaterialized("users"));
+    assertEquals("lazy", copy.get("name"));
+    assertFalse(copy.containsKey("added"));
+  }
+
+  @Test
+  public void failOnNonObjectRoot() {
+    assertThrows(IOException.class, () -> LazyJsonMap.open(INVALID_JSON_PATH));
+  }
+}
@@ -0,0 +1,90 @@
+package com.xarchimedesx.templatesgenerator.reader;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class VariablesMergerTest {
+
+  @Test
+  public void mergeNested() {
+    Map<String, Object> merged = merge(MergeStrategy.NESTED, file("a", 1), file("a", 2), file("a", 3));
+
+    assertEquals(Arrays.asList(Arrays.asList(1, 2), 3), merged.get("a"));
+  }
+
+  @Test
+  public void mergeDeep() {
+    Map<String, Object> merged = merge(MergeStrategy.DEEP,
+        file("config", map("name", "first", "tags", list("a"), "nested", map("x", 1))),
+        file("config", map("name", "second", "tags", list("b"), "nested", map("y", 2))),
+        file("config", map("tags", list("c"))));
+
+    assertEquals(map("name", "second", "tags", list("a", "b", "c"), "nested", map("x", 1, "y", 2)), merged.get("config"));
+  }
+
+  @Test
+  public void mergeConcat() {
+    Map<String, Object> merged = merge(MergeStrategy.CONCAT,
+        file("users", list(1), "name", "first"),
+        file("users", list(2, 3), "name", "second"));
+
+    assertEquals(list(1, 2, 3), merged.get("users"));
+    assertEquals("second", merged.get("name"));
+  }
+
+  @Test
+  public void mergeLastAndFirstWins() {
+    assertEquals(2, merge(MergeStrategy.LAST_WINS, file("a", 1), file("a", 2)).get("a"));
+    assertEquals(1, merge(MergeStrategy.FIRST_WINS, file("a", 1), file("a", 2)).get("a"));
+  }
+
+  @Test
+  public void mergeDoesNotModifyFilesContent() {
+    List<Object> firstUsers = list(1);
+    Map<String, Object> firstNested = map("x", 1);
+    merge(MergeStrategy.DEEP, file("users", firstUsers, "nested", firstNested), file("users", list(2), "nested", map("y", 2)));
+
+    assertEquals(list(1), firstUsers);
+    assertEquals(map("x", 1), firstNested);
+  }
+
+  @Test
+  public void mergeManyFilesIntoFlatList() {
+    VariablesMerger merger = new VariablesMerger(MergeStrategy.CONCAT);
+    for (int i = 0; i < 1000; i++) {
+      merger.merge(file("users", Collections.singletonList(i)));
+    }
+
+    assertEquals(1000, ((List<?>) merger.getMerged().get("users")).size());
+  }
+
+  @SafeVarargs
+  private static Map<String, Object> merge(MergeStrategy strategy, Map<String, Object>... files) {
+    VariablesMerger merger = new VariablesMerger(strategy);
+    Arrays.stream(files).forEach(merger::merge);
+    return merger.getMerged();
+  }
+
+  private static Map<String, Object> file(Object... keysAndValues) {
+    return map(keysAndValues);
+  }
+
+  private static Map<String, Object> map(Object... keysAndValues) {
+    Map<String, Object> map = new HashMap<>();
+    for (int i = 0; i < keysAndValues.length; i += 2) {
+      map.put((String) keysAndValues[i], keysAndValues[i + 1]);
+    }
+    return map;
+  }
+
+  private static List<Object> list(Object... values) {
+    return Arrays.asList(values);
+  }
+}
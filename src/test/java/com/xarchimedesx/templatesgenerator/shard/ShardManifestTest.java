@@ -0,0 +1,62 @@
+package com.xarchimedesx.templatesgenerator.shard;
+
+import com.xarchimedesx.templatesgenerator.RenderOptions;
+import com.xarchimedesx.templatesgenerator.TemplatesGenerator;
+import com.xarchimedesx.templatesgenerator.exception.RenderingException;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShardManifestTest {
+
+  private static final String TEMPLATE_PATH = String.join(File.separator, "templates", "template.vm");
+  private static final String USERS_DIR_PATH = String.join(File.separator, "variables", "users");
+  private static final Path SHARDS_DIR = Paths.get("target", "test-data", "shards");
+  private static final String OUTPUT_DIR_BASE_PATH = SHARDS_DIR.resolve("output").toString();
+
+  @Test
+  public void renderShardsIntoSameOutputTree() throws IOException {
+    TemplatesGenerator generator = new TemplatesGenerator();
+    for (int index = 0; index < 2; index++) {
+      generator.render(TEMPLATE_PATH, USERS_DIR_PATH, OUTPUT_DIR_BASE_PATH, new RenderOptions()
+          .withShard(index, 2)
+          .withShardManifest(SHARDS_DIR.resolve("shard" + index + ".json")));
+    }
+    ShardManifest mergedManifest = TemplatesGenerator.mergeShardManifests(
+        Arrays.asList(SHARDS_DIR.resolve("shard0.json"), SHARDS_DIR.resolve("shard1.json")), SHARDS_DIR.resolve("merged.json"));
+
+    String outputDir = OUTPUT_DIR_BASE_PATH.replace(File.separatorChar, '/');
+    assertEquals(Arrays.asList(outputDir + "/users1/users.json", outputDir + "/users2/users.json"), mergedManifest.getOutputFiles());
+    assertEquals(2, mergedManifest.getVariablesFiles().size());
+    assertEquals(mergedManifest.getOutputFiles(), ShardManifest.read(SHARDS_DIR.resolve("merged.json")).getOutputFiles());
+    assertTrue(Files.exists(Paths.get(OUTPUT_DIR_BASE_PATH, "users1", "users.json")));
+    assertTrue(Files.exists(Paths.get(OUTPUT_DIR_BASE_PATH, "users2", "users.json")));
+  }
+
+  @Test
+  public void failOnCollisionsAndMissingShards() {
+    ShardManifest shard0 = new ShardManifest(3, Collections.singleton(0), Collections.singletonList("a.yaml"),
+        Arrays.asList("out/a.json", "out/common.json"));
+    ShardManifest shard1 = new ShardManifest(3, Collections.singleton(1), Collections.singletonList("b.yaml"),
+        Arrays.asList("out/b.json", "out/common.json"));
+    ShardManifest shard2 = new ShardManifest(3, Collections.singleton(2), Collections.singletonList("c.yaml"),
+        Collections.singletonList("out/c.json"));
+
+    assertEquals(Arrays.asList("out/a.json", "out/c.json"), ShardManifest.merge(Arrays.asList(
+        new ShardManifest(3, Collections.singleton(0), Collections.emptyList(), Collections.singletonList("out/a.json")),
+        shard2,
+        new ShardManifest(3, Collections.singleton(1), Collections.emptyList(), Collections.emptyList()))).getOutputFiles());
+    assertThrows(RenderingException.class, () -> ShardManifest.merge(Arrays.asList(shard0, shard1, shard2)));
+    assertThrows(RenderingException.class, () -> ShardManifest.merge(Arrays.asList(shard0, shard2)));
+  }
+}
@@ -0,0 +1,70 @@
+package com.xarchimedesx.templatesgenerator.shard;
+
+import com.xarchimedesx.templatesgenerator.reader.ContextVariablesReader;
+import com.xarchimedesx.templatesgenerator.reader.VariablesFile;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShardTest {
+
+  private static final Path VARIABLES_DIR = Paths.get("target", "test-data", "shard-variables");
+  private static final int FILES_COUNT = 40;
+  private static List<VariablesFile> variablesFiles;
+
+  @BeforeAll
+  static void writeVariablesFiles() throws IOException {
+    Files.createDirectories(VARIABLES_DIR);
+    for (int i = 0; i < FILES_COUNT; i++) {
+      Files.write(VARIABLES_DIR.resolve(String.format("file%02d.yaml", i)), ("number: " + i).getBytes(StandardCharsets.UTF_8));
+    }
+    variablesFiles = new ContextVariablesReader().discoverVariablesFiles(Collections.singletonList(VARIABLES_DIR.toString()));
+  }
+
+  @Test
+  public void parseShard() {
+    Shard shard = Shard.parse("2/4");
+
+    assertEquals(2, shard.getIndex());
+    assertEquals(4, shard.getCount());
+    assertThrows(IllegalArgumentException.class, () -> Shard.parse("4/4"));
+    assertThrows(IllegalArgumentException.class, () -> Shard.parse("1"));
+  }
+
+  @Test
+  public void splitFilesIntoDisjointShards() {
+    Set<String> selectedFiles = new HashSet<>();
+    int selectedCount = 0;
+    for (int index = 0; index < 4; index++) {
+      List<VariablesFile> shardFiles = new Shard(index, 4).select(variablesFiles);
+      assertTrue(!shardFiles.isEmpty() && shardFiles.size() < FILES_COUNT);
+      shardFiles.forEach(file -> selectedFiles.add(file.toString()));
+      selectedCount += shardFiles.size();
+    }
+
+    assertEquals(FILES_COUNT, selectedCount);
+    assertEquals(FILES_COUNT, selectedFiles.size());
+  }
+
+  @Test
+  public void assignFilesByRelativePath() {
+    VariablesFile variablesFile = variablesFiles.get(0);
+
+    assertEquals("target/test-data/shard-variables/file00.yaml", Shard.getKey(variablesFile));
+    assertEquals(new Shard(0, 4).select(variablesFiles), new Shard(0, 4).select(new ArrayList<>(variablesFiles)));
+  }
+}
@@ -0,0 +1,86 @@
+package com.xarchimedesx.templatesgenerator.template;
+
+import com.xarchimedesx.templatesgenerator.TemplatesGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TemplatesCacheTest {
+
+  private static final String USERS1_PATH = String.join(File.separator, "variables", "users", "users1.yaml");
+  private static final String TEMPLATES_DIR_PATH = String.join(File.separator, "target", "test-data", "templates-cache");
+  private static final String TEMPLATE_PATH = String.join(File.separator, TEMPLATES_DIR_PATH, "template.vm");
+  private static final String INVALID_TEMPLATE_PATH = String.join(File.separator, TEMPLATES_DIR_PATH, "invalid_template.vm");
+  private static final String OUTPUT_DIR_BASE_PATH = String.join(File.separator, TEMPLATES_DIR_PATH, "output");
+  private static final Path RENDERED_PATH = Paths.get(OUTPUT_DIR_BASE_PATH, "version.txt");
+  private static final int LARGE_SET_TEMPLATES_COUNT = 120;
+
+  @BeforeEach
+  public void writeTemplates() throws IOException {
+    Files.createDirectories(Paths.get(TEMPLATES_DIR_PATH));
+    writeTemplate(1);
+    Files.write(Paths.get(INVALID_TEMPLATE_PATH), "#if(".getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void reuseParsedTemplate() {
+    TemplatesGenerator generator = new TemplatesGenerator();
+    generator.render(TEMPLATE_PATH, USERS1_PATH, OUTPUT_DIR_BASE_PATH, false);
+    generator.render(TEMPLATE_PATH, USERS1_PATH, OUTPUT_DIR_BASE_PATH, false);
+
+    TemplatesCache cache = generator.getTemplatesCache();
+    assertEquals(1, cache.getMissesCount());
+    assertEquals(1, cache.getHitsCount());
+  }
+
+  @Test
+  public void reloadModifiedTemplate() throws IOException {
+    TemplatesGenerator generator = new TemplatesGenerator();
+    generator.render(TEMPLATE_PATH, USERS1_PATH, OUTPUT_DIR_BASE_PATH, false);
+    writeTemplate(2);
+    generator.render(TEMPLATE_PATH, USERS1_PATH, OUTPUT_DIR_BASE_PATH, false);
+
+    assertEquals("version 2", new String(Files.readAllBytes(RENDERED_PATH), StandardCharsets.UTF_8));
+    assertEquals(2, generator.getTemplatesCache().getMissesCount());
+  }
+
+  @Test
+  public void prewarmTemplatesDirectory() {
+    TemplatesGenerator generator = new TemplatesGenerator();
+
+    assertEquals(1, generator.prewarm(TEMPLATES_DIR_PATH, 2));
+    generator.render(TEMPLATE_PATH, USERS1_PATH, OUTPUT_DIR_BASE_PATH, false);
+    assertEquals(1, generator.getTemplatesCache().getHitsCount());
+  }
+
+  @Test
+  public void keepAllPrewarmedTemplatesOfLargeSet() throws IOException {
+    Path largeSetDir = Paths.get("target", "test-data", "templates-cache-large-set");
+    Files.createDirectories(largeSetDir);
+    // more than 89 templates, which Velocity caches by default
+    for (int i = 0; i < LARGE_SET_TEMPLATES_COUNT; i++) {
+      Files.write(largeSetDir.resolve("template" + i + ".vm"), ("template " + i).getBytes(StandardCharsets.UTF_8));
+    }
+    TemplatesGenerator generator = new TemplatesGenerator();
+
+    assertEquals(LARGE_SET_TEMPLATES_COUNT, generator.prewarm(largeSetDir.toString(), 4));
+    assertEquals(LARGE_SET_TEMPLATES_COUNT, generator.getTemplatesCache().getSize());
+  }
+
+  private void writeTemplate(int version) throws IOException {
+    Path templatePath = Paths.get(TEMPLATE_PATH);
+    Files.write(templatePath, ("#saveFile( \"${outputDirBasePath}/version.txt\" )version " + version + "#end")
+        .getBytes(StandardCharsets.UTF_8));
+    // file systems with coarse timestamps would not tell rewritten template from the cached one otherwise
+    Files.setLastModifiedTime(templatePath, FileTime.fromMillis(System.currentTimeMillis() + version * 1000L));
+  }
+}
@@ -0,0 +1,33 @@
+package com.xarchimedesx.templatesgenerator.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs benchmarks with regular JMH command-line options, writing results as JSON to target/jmh-results.json
+ * unless another format or file is given, so that results of different runs can be compared by tools.
+ */
+public class BenchmarksRunner {
+
+  private static final String DEFAULT_RESULTS_PATH = "target/jmh-results.json";
+
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions cli = new CommandLineOptions(args);
+    if (cli.shouldHelp() || cli.shouldList()) {
+      org.openjdk.jmh.Main.main(args);
+      return;
+    }
+
+    ChainedOptionsBuilder options = new OptionsBuilder().parent(cli);
+    if (!cli.getResultFormat().hasValue()) {
+      options.resultFormat(ResultFormatType.JSON);
+    }
+    if (!cli.getResult().hasValue()) {
+      options.result(DEFAULT_RESULTS_PATH);
+    }
+    new Runner(options.build()).run();
+  }
+}
@@ -0,0 +1,59 @@
+package com.xarchimedesx.templatesgenerator.benchmarks;
+
+import com.xarchimedesx.templatesgenerator.reader.ContextVariablesReader;
+import com.xarchimedesx.templatesgenerator.reader.MergeStrategy;
+import com.xarchimedesx.templatesgenerator.reader.VariablesParsers;
+import org.apache.commons.lang3.tuple.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merging of variables files in combined mode. Files are memoized by the reader after the first read,
+ * so the measured time is the merge itself rather than parsing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmarks.properties")
+public class CombinedMergeBenchmark {
+
+  @Param({"NESTED", "DEEP", "CONCAT", "LAST_WINS"})
+  private MergeStrategy mergeStrategy;
+
+  @Param({"10", "100", "1000"})
+  private int filesCount;
+
+  @Param({"1KB"})
+  private String fileSize;
+
+  private final ContextVariablesReader reader = new ContextVariablesReader(VariablesParsers.defaults(), null, true);
+  private List<String> variablesPaths;
+
+  @Setup
+  public void generateDataset() throws IOException {
+    variablesPaths = Collections.singletonList(SyntheticDatasets.usersDirectory("json", fileSize, filesCount).toString());
+    reader.getCombinedVariables(variablesPaths, mergeStrategy);
+  }
+
+  @Benchmark
+  public Pair<String, Map<String, Object>> mergeVariables() {
+    return reader.getCombinedVariables(variablesPaths, mergeStrategy);
+  }
+}
@@ -0,0 +1,112 @@
+package com.xarchimedesx.templatesgenerator.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xarchimedesx.templatesgenerator.RenderOptions;
+import com.xarchimedesx.templatesgenerator.TemplatesGenerator;
+import com.xarchimedesx.templatesgenerator.output.ArchiveOutputSink;
+import com.xarchimedesx.templatesgenerator.output.DiscardOutputSink;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of #saveFile directive writing {@value #FILES_COUNT} files per rendering to different output sinks.
+ * Scores are per saved file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmarks.properties")
+public class SaveFileBenchmark {
+
+  private static final int FILES_COUNT = 1000;
+  private static final Path DATA_DIR = Paths.get("target", "benchmark-data", "save-file");
+  private static final String TEMPLATE = "#foreach( $file in $files )\n"
+      + "#saveFile( \"${outputDirBasePath}/${file}.txt\" )$payload#end\n"
+      + "#end\n";
+
+  @Param({"files", "write-behind", "skip-unchanged", "archive", "discard"})
+  private String sink;
+
+  @Param({"1KB", "64KB"})
+  private String fileSize;
+
+  private final TemplatesGenerator generator = new TemplatesGenerator();
+  private Path templatePath;
+  private Path variablesPath;
+  private Path outputPath;
+  private RenderOptions options;
+
+  @Setup
+  public void generateDataset() throws IOException {
+    Path dir = DATA_DIR.resolve(sink + "-" + fileSize);
+    Files.createDirectories(dir);
+    templatePath = Files.write(dir.resolve("save_files.vm"), TEMPLATE.getBytes(StandardCharsets.UTF_8));
+
+    List<String> files = new ArrayList<>();
+    for (int i = 0; i < FILES_COUNT; i++) {
+      files.add(String.format("file%05d", i));
+    }
+    char[] payload = new char[(int) SyntheticDatasets.parseSize(fileSize)];
+    Arrays.fill(payload, 'x');
+    Map<String, Object> variables = new LinkedHashMap<>();
+    variables.put("files", files);
+    variables.put("payload", new String(payload));
+    variablesPath = dir.resolve("files.json");
+    new ObjectMapper().writeValue(variablesPath.toFile(), variables);
+
+    outputPath = dir.resolve("output");
+    options = createOptions();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(FILES_COUNT)
+  public void saveFiles() {
+    generator.render(templatePath.toString(), variablesPath.toString(), outputPath.toString(), options);
+  }
+
+  private RenderOptions createOptions() {
+    switch (sink) {
+      case "write-behind":
+        return new RenderOptions().withWriteBehind(64, 2);
+      case "skip-unchanged":
+        return new RenderOptions().withSkipUnchanged(true);
+      case "archive":
+        return new RenderOptions().withOutputSink(() -> {
+          try {
+            return new ArchiveOutputSink(outputPath.resolveSibling("output.zip"), outputPath);
+          } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+          }
+        });
+      case "discard":
+        return new RenderOptions().withOutputSink(DiscardOutputSink::new);
+      default:
+        return new RenderOptions();
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package com.xarchimedesx.templatesgenerator.benchmarks;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates variables files with users of the same structure as test variables files, of given format and size.
+ * Generated files are kept under target/benchmark-data and reused by next runs, as big ones take long to generate.
+ */
+final class SyntheticDatasets {
+
+  private static final Path DATA_DIR = Paths.get("target", "benchmark-data");
+  private static final String[] NAMES = {"John", "Jane", "Kate", "Mark", "Anna", "Paul", "Emma", "Alex"};
+  private static final String[] SURNAMES = {"Doe", "Smith", "Brown", "Taylor", "Wilson", "Evans"};
+  private static final int FLUSH_EVERY_USERS = 64;
+  private static final Map<String, Long> SIZE_UNITS = new HashMap<>();
+
+  static {
+    SIZE_UNITS.put("KB", 1024L);
+    SIZE_UNITS.put("MB", 1024L * 1024);
+    SIZE_UNITS.put("GB", 1024L * 1024 * 1024);
+  }
+
+  private SyntheticDatasets() {
+  }
+
+  /**
+   * @param size Size with KB, MB or GB unit, e.g. "16MB".
+   */
+  static long parseSize(String size) {
+    String unit = size.substring(size.length() - 2).toUpperCase(Locale.ROOT);
+    return Long.parseLong(size.substring(0, size.length() - 2).trim()) * SIZE_UNITS.get(unit);
+  }
+
+  /**
+   * @return Directory with {@code filesCount} users files of given format ("json" or "yaml"), each of about given size.
+   */
+  static Path usersDirectory(String format, String fileSize, int filesCount) throws IOException {
+    Path dir = DATA_DIR.resolve(String.format("users-%s-%s-%d", format, fileSize, filesCount));
+    long fileBytes = parseSize(fileSize);
+    Files.createDirectories(dir);
+    for (int i = 0; i < filesCount; i++) {
+      Path file = dir.resolve(String.format("users%05d.%s", i, format));
+      if (!Files.exists(file)) {
+        writeUsersFile(file, format, fileBytes, i);
+      }
+    }
+    return dir;
+  }
+
+  /**
+   * @return Users in the form parsed variables files have.
+   */
+  static List<Map<String, Object>> users(int usersCount) {
+    Random random = new Random(usersCount);
+    List<Map<String, Object>> users = new ArrayList<>(usersCount);
+    for (int id = 1; id <= usersCount; id++) {
+      Map<String, Object> personal = new LinkedHashMap<>();
+      personal.put("age", 18 + random.nextInt(60));
+      personal.put("name", NAMES[random.nextInt(NAMES.length)]);
+      personal.put("surname", SURNAMES[random.nextInt(SURNAMES.length)]);
+      Map<String, Object> user = new LinkedHashMap<>();
+      user.put("id", id);
+      user.put("group_id", 1 + random.nextInt(2));
+      user.put("personal", personal);
+      users.add(user);
+    }
+    return users;
+  }
+
+  private static void writeUsersFile(Path file, String format, long fileBytes, int seed) throws IOException {
+    JsonFactory factory = format.equals("json") ? new JsonFactory() : new YAMLFactory();
+    Random random = new Random(seed);
+    Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+    try (CountingOutputStream out = new CountingOutputStream(Files.newOutputStream(tempFile));
+         JsonGenerator generator = factory.createGenerator(out)) {
+      generator.writeStartObject();
+      generator.writeArrayFieldStart("users");
+      for (int id = 1; out.count < fileBytes; id++) {
+        generator.writeStartObject();
+        generator.writeNumberField("id", id);
+        generator.writeNumberField("group_id", 1 + random.nextInt(2));
+        generator.writeObjectFieldStart("personal");
+        generator.writeNumberField("age", 18 + random.nextInt(60));
+        generator.writeStringField("name", NAMES[random.nextInt(NAMES.length)]);
+        generator.writeStringField("surname", SURNAMES[random.nextInt(SURNAMES.length)]);
+        generator.writeEndObject();
+        generator.writeEndObject();
+        if (id % FLUSH_EVERY_USERS == 0 || fileBytes < 64 * 1024) {
+          generator.flush();
+        }
+      }
+      generator.writeEndArray();
+      generator.writeEndObject();
+    }
+    // renamed only when complete, so an interrupted generation is not reused
+    Files.move(tempFile, file);
+  }
+
+  private static class CountingOutputStream extends FilterOutputStream {
+    private long count;
+
+    private CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      out.write(bytes, offset, length);
+      count += length;
+    }
+  }
+}
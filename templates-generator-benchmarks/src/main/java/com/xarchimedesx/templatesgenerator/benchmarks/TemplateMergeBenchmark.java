@@ -0,0 +1,94 @@
+package com.xarchimedesx.templatesgenerator.benchmarks;
+
+import com.xarchimedesx.templatesgenerator.directive.SaveFileDirective;
+import com.xarchimedesx.templatesgenerator.introspection.VariablesUberspector;
+import com.xarchimedesx.templatesgenerator.output.DiscardOutputSink;
+import com.xarchimedesx.templatesgenerator.output.OutputSink;
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.app.event.implement.IncludeRelativePath;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.resource.loader.ClasspathResourceLoader;
+import org.apache.velocity.util.introspection.UberspectImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merging of test templates with a context of generated users, with rendered files discarded,
+ * so the measured time is template evaluation alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmarks.properties")
+public class TemplateMergeBenchmark {
+
+  @Param({"templates/template.vm", "templates/combined_template.vm"})
+  private String templatePath;
+
+  @Param({"10", "1000", "100000"})
+  private int usersCount;
+
+  // Velocity's reflective introspection or the one resolving parsed variables directly
+  @Param({"default", "variables"})
+  private String uberspector;
+
+  private Template template;
+  private Map<String, Object> variables;
+
+  @Setup
+  public void initializeTemplate() {
+    VelocityEngine engine = new VelocityEngine();
+    engine.setProperty(RuntimeConstants.CUSTOM_DIRECTIVES, SaveFileDirective.class.getName());
+    engine.setProperty(RuntimeConstants.RESOURCE_LOADERS, "classpath");
+    engine.setProperty("resource.loader.classpath.class", ClasspathResourceLoader.class.getName());
+    engine.setProperty(RuntimeConstants.EVENTHANDLER_INCLUDE, IncludeRelativePath.class.getName());
+    engine.setProperty(RuntimeConstants.UBERSPECT_CLASSNAME, "variables".equals(uberspector)
+        ? VariablesUberspector.class.getName()
+        : UberspectImpl.class.getName());
+    engine.init();
+    template = engine.getTemplate(templatePath);
+
+    variables = new LinkedHashMap<>();
+    variables.put("users", SyntheticDatasets.users(usersCount));
+    variables.put("groups", Arrays.asList(group(1, "employees"), group(2, "customers")));
+  }
+
+  @Benchmark
+  public void mergeTemplate() throws IOException {
+    OutputSink outputSink = new DiscardOutputSink();
+    // templates set their own variables, so every merge gets a fresh context
+    VelocityContext context = new VelocityContext(new LinkedHashMap<>(variables));
+    context.put("outputDirBasePath", "output");
+    context.put(OutputSink.CONTEXT_KEY, outputSink);
+    try (Writer writer = outputSink.openMainWriter()) {
+      template.merge(context, writer);
+    }
+  }
+
+  private static Map<String, Object> group(int id, String name) {
+    Map<String, Object> group = new LinkedHashMap<>();
+    group.put("id", id);
+    group.put("name", name);
+    return group;
+  }
+}
@@ -0,0 +1,55 @@
+package com.xarchimedesx.templatesgenerator.benchmarks;
+
+import com.xarchimedesx.templatesgenerator.reader.ContextVariablesReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reading of a variables directory, as done per rendering in non-combined mode.
+ * Sizes up to 1GB are supported, e.g. {@code -p fileSize=1GB -p filesCount=1}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmarks.properties")
+public class VariablesReadBenchmark {
+
+  @Param({"json", "yaml"})
+  private String format;
+
+  @Param({"1KB", "1MB", "16MB"})
+  private String fileSize;
+
+  @Param({"1", "10"})
+  private int filesCount;
+
+  private final ContextVariablesReader reader = new ContextVariablesReader();
+  private List<String> variablesPaths;
+
+  @Setup
+  public void generateDataset() throws IOException {
+    variablesPaths = Collections.singletonList(SyntheticDatasets.usersDirectory(format, fileSize, filesCount).toString());
+  }
+
+  @Benchmark
+  public void readVariables(Blackhole blackhole) {
+    reader.streamVariables(reader.discoverVariablesFiles(variablesPaths))
+        .forEach(blackhole::consume);
+  }
+}
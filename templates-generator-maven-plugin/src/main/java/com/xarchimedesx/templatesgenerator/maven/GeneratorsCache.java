@@ -0,0 +1,38 @@
+package com.xarchimedesx.templatesgenerator.maven;
+
+import com.xarchimedesx.templatesgenerator.TemplatesGenerator;
+import com.xarchimedesx.templatesgenerator.reader.ContextVariablesReader;
+import com.xarchimedesx.templatesgenerator.template.TemplatesCache;
+
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Generators shared by all executions of the plugin within a build.
+ * <p>
+ * Maven loads the plugin into its own class realm once per build, so the static cache lives as long as the realm:
+ * executions in all modules of a reactor reuse the initialized Velocity engine, VelocityTools and parsed templates,
+ * while builds with another version of the plugin or other plugin dependencies get their own realm and cache.
+ * Generators are thread-safe, so modules built in parallel with {@code -T} share them as well.
+ */
+final class GeneratorsCache {
+
+  private static final ConcurrentMap<Long, TemplatesGenerator> GENERATORS = new ConcurrentHashMap<>();
+
+  private GeneratorsCache() {
+  }
+
+  /**
+   * @param templatesCheckIntervalMillis Interval of checking cached templates for modifications, which is the only
+   *                                     engine setting of the plugin, so generators are cached per interval.
+   * @return Generator created by the first execution asking for it.
+   */
+  static TemplatesGenerator get(long templatesCheckIntervalMillis) {
+    return GENERATORS.computeIfAbsent(templatesCheckIntervalMillis, checkIntervalMillis -> {
+      Properties engineProperties = new Properties();
+      engineProperties.setProperty(TemplatesCache.CHECK_INTERVAL_PROPERTY, String.valueOf(checkIntervalMillis));
+      return new TemplatesGenerator(new ContextVariablesReader(), engineProperties);
+    });
+  }
+}
@@ -0,0 +1,169 @@
+package com.xarchimedesx.templatesgenerator.maven;
+
+import com.xarchimedesx.templatesgenerator.RenderOptions;
+import com.xarchimedesx.templatesgenerator.TemplatesGenerator;
+import com.xarchimedesx.templatesgenerator.reader.MergeStrategy;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.sonatype.plexus.build.incremental.BuildContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Renders a Velocity template with variables files in the Maven process, with the same settings as the CLI.
+ * <p>
+ * The Velocity engine is initialized once per build and shared by executions in all modules, see {@link GeneratorsCache}.
+ * Renderings are skipped when their inputs are unchanged: in incremental builds of IDEs when the build context reports
+ * no changes of the template, templates it includes and variables paths, and in command-line builds per variables file
+ * by the build cache of the execution.
+ */
+@Mojo(name = "render", defaultPhase = LifecyclePhase.GENERATE_RESOURCES, threadSafe = true)
+public class RenderMojo extends AbstractMojo {
+
+  /**
+   * Velocity template path, relative to the project base directory or on the classpath of the plugin.
+   */
+  @Parameter(required = true)
+  private String template;
+
+  /**
+   * Paths to variables files/directories, relative to the project base directory or on the classpath of the plugin.
+   */
+  @Parameter(required = true)
+  private List<String> variables;
+
+  @Parameter(defaultValue = "${project.build.directory}/generated-resources/templates-generator", required = true)
+  private File outputDirectory;
+
+  /**
+   * Whether to combine all variables files inside a single context or to render output per variables file.
+   */
+  @Parameter(defaultValue = "false")
+  private boolean combine;
+
+  /**
+   * How values of the same keys in different variables files are merged in combined mode:
+   * nested, deep, concat, last-wins or first-wins.
+   */
+  @Parameter(defaultValue = "nested")
+  private String mergeStrategy;
+
+  /**
+   * Number of worker threads rendering variables files in non-combined mode.
+   */
+  @Parameter(defaultValue = "1")
+  private int workers;
+
+  /**
+   * Whether to leave existing files untouched when their content equals the rendered one.
+   */
+  @Parameter(defaultValue = "false")
+  private boolean skipUnchanged;
+
+  /**
+   * Whether to render only contexts whose inputs changed since the previous build, using the build cache.
+   */
+  @Parameter(defaultValue = "true")
+  private boolean incremental;
+
+  /**
+   * Path of the build cache. Defaults to {@code ${project.build.directory}/templates-generator/<execution id>.json}.
+   */
+  @Parameter
+  private File buildCache;
+
+  /**
+   * Whether to delete files saved by the previous build, but not by this one, e.g. outputs of removed variables files.
+   * Requires incremental rendering.
+   */
+  @Parameter(defaultValue = "false")
+  private boolean deleteStaleOutputs;
+
+  /**
+   * Interval of checking cached templates for modifications, in milliseconds. Negative value disables checks.
+   */
+  @Parameter(defaultValue = "0")
+  private long templatesCheckInterval;
+
+  @Parameter(property = "templates-generator.skip", defaultValue = "false")
+  private boolean skip;
+
+  @Parameter(defaultValue = "${project.basedir}", readonly = true, required = true)
+  private File basedir;
+
+  @Parameter(defaultValue = "${project.build.directory}", readonly = true, required = true)
+  private File buildDirectory;
+
+  @Parameter(defaultValue = "${mojoExecution}", readonly = true, required = true)
+  private MojoExecution mojoExecution;
+
+  @Component
+  private BuildContext buildContext;
+
+  @Override
+  public void execute() throws MojoExecutionException {
+    if (skip) {
+      getLog().info("Rendering is skipped.");
+      return;
+    }
+    String templatePath = resolveInputPath(template);
+    List<String> variablesPaths = variables.stream()
+        .map(this::resolveInputPath)
+        .collect(Collectors.toList());
+    if (buildContext.isIncremental() && !hasDelta(templatePath, variablesPaths)) {
+      getLog().info("Template and variables files are unchanged, rendering is skipped.");
+      return;
+    }
+
+    RenderOptions options = new RenderOptions()
+        .withCombined(combine)
+        .withMergeStrategy(MergeStrategy.fromName(mergeStrategy))
+        .withWorkersCount(workers)
+        .withSkipUnchanged(skipUnchanged);
+    if (incremental) {
+      File buildCachePath = buildCache != null
+          ? buildCache
+          : new File(buildDirectory, String.join(File.separator, "templates-generator", mojoExecution.getExecutionId() + ".json"));
+      options.withBuildCache(buildCachePath.toPath(), deleteStaleOutputs);
+    } else if (deleteStaleOutputs) {
+      throw new MojoExecutionException("Deleting stale outputs requires incremental rendering, which records outputs of the previous build.");
+    }
+
+    try {
+      GeneratorsCache.get(templatesCheckInterval)
+          .render(templatePath, String.join(",", variablesPaths), outputDirectory.getAbsolutePath(), options);
+    } catch (RuntimeException re) {
+      throw new MojoExecutionException(String.format("Rendering of %s failed: %s", template, re.getMessage()), re);
+    }
+    buildContext.refresh(outputDirectory);
+  }
+
+  // paths not existing under the base directory are left intact to be looked up on classpath
+  private String resolveInputPath(String path) {
+    Path resolvedPath = basedir.toPath().resolve(path.trim());
+    return Files.exists(resolvedPath) ? resolvedPath.toString() : path.trim();
+  }
+
+  private boolean hasDelta(String templatePath, List<String> variablesPaths) throws MojoExecutionException {
+    try {
+      for (Path templateFile : TemplatesGenerator.getTemplateDependencies(templatePath)) {
+        if (buildContext.hasDelta(templateFile.toFile())) {
+          return true;
+        }
+      }
+    } catch (IOException ioe) {
+      throw new MojoExecutionException("Cannot resolve templates included by " + template, ioe);
+    }
+    return variablesPaths.stream().anyMatch(variablesPath -> buildContext.hasDelta(new File(variablesPath)));
+  }
+}
@@ -0,0 +1,109 @@
+package com.xarchimedesx.templatesgenerator.maven;
+
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.descriptor.MojoDescriptor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sonatype.plexus.build.incremental.BuildContext;
+import org.sonatype.plexus.build.incremental.DefaultBuildContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RenderMojoTest {
+
+  private static final Path BASE_DIR = Paths.get("src", "test", "resources");
+  private static final Path BUILD_DIR = Paths.get("target", "test-data", "render-mojo");
+  private static final Path OUTPUT_DIR = BUILD_DIR.resolve("output");
+  private static final FileTime INITIAL_MODIFICATION_TIME = FileTime.fromMillis(0);
+
+  @BeforeEach
+  public void deleteBuildDir() throws IOException {
+    if (Files.exists(BUILD_DIR)) {
+      try (Stream<Path> paths = Files.walk(BUILD_DIR)) {
+        paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+      }
+    }
+  }
+
+  @Test
+  public void renderWithManyWorkers() throws Exception {
+    RenderMojo mojo = newMojo(new DefaultBuildContext());
+    setField(mojo, "workers", 2);
+    setField(mojo, "incremental", false);
+    mojo.execute();
+
+    for (String usersName : new String[]{"users1", "users2"}) {
+      assertEquals(Arrays.asList("John Doe", "Jane Doe"), Files.readAllLines(getRenderedPath(usersName), StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  public void skipRenderingOfUnchangedInputsInIncrementalBuilds() throws Exception {
+    newMojo(new DefaultBuildContext()).execute();
+    for (String usersName : new String[]{"users1", "users2"}) {
+      Files.setLastModifiedTime(getRenderedPath(usersName), INITIAL_MODIFICATION_TIME);
+    }
+
+    // command-line build, inputs are checked by the build cache
+    newMojo(new DefaultBuildContext()).execute();
+    // IDE build without changes of the inputs
+    newMojo(new DefaultBuildContext() {
+      @Override
+      public boolean isIncremental() {
+        return true;
+      }
+
+      @Override
+      public boolean hasDelta(File file) {
+        return false;
+      }
+    }).execute();
+
+    for (String usersName : new String[]{"users1", "users2"}) {
+      assertEquals(INITIAL_MODIFICATION_TIME, Files.getLastModifiedTime(getRenderedPath(usersName)));
+    }
+  }
+
+  private static RenderMojo newMojo(BuildContext buildContext) throws MojoExecutionException {
+    RenderMojo mojo = new RenderMojo();
+    setField(mojo, "template", "templates/users.vm");
+    setField(mojo, "variables", Arrays.asList("variables/users1.yaml", "variables/users2.yaml"));
+    setField(mojo, "outputDirectory", OUTPUT_DIR.toFile());
+    setField(mojo, "mergeStrategy", "nested");
+    setField(mojo, "workers", 1);
+    setField(mojo, "incremental", true);
+    setField(mojo, "basedir", BASE_DIR.toAbsolutePath().toFile());
+    setField(mojo, "buildDirectory", BUILD_DIR.toFile());
+    setField(mojo, "mojoExecution", new MojoExecution(new MojoDescriptor(), "test"));
+    setField(mojo, "buildContext", buildContext);
+    return mojo;
+  }
+
+  // parameters are injected by Maven into private fields, so they are set the same way here
+  private static void setField(RenderMojo mojo, String name, Object value) throws MojoExecutionException {
+    try {
+      Field field = RenderMojo.class.getDeclaredField(name);
+      field.setAccessible(true);
+      field.set(mojo, value);
+    } catch (ReflectiveOperationException roe) {
+      throw new MojoExecutionException("Cannot set parameter " + name, roe);
+    }
+  }
+
+  private static Path getRenderedPath(String usersName) {
+    return OUTPUT_DIR.resolve(Paths.get(usersName, "users.txt"));
+  }
+}